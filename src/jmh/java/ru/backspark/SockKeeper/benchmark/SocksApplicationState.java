@@ -0,0 +1,89 @@
+package ru.backspark.SockKeeper.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.backspark.SockKeeper.SockKeeperApplication;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Контекст приложения без веб-слоя поверх PostgreSQL.
+ * <p>
+ * По умолчанию база запускается в контейнере, как в тестах. С -Djmh.datasource.url (и jmh.datasource.username,
+ * jmh.datasource.password) используется уже запущенная база; таблица socks в ней очищается перед замером.
+ * Кэш чтения и индекс сумм выключены, чтобы замеры шли до базы; включаются через -Dsocks.cache.enabled=true
+ * и -Dsocks.quantity-index.enabled=true.
+ */
+@State(Scope.Benchmark)
+public class SocksApplicationState {
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext context;
+    private SocksService socksService;
+    private SocksRepository socksRepository;
+
+    @Setup(Level.Trial)
+    public void start() {
+        Map<String, Object> properties = new HashMap<>();
+        String url = System.getProperty("jmh.datasource.url");
+        if (url != null) {
+            properties.put("spring.datasource.url", url);
+            properties.put("spring.datasource.username", System.getProperty("jmh.datasource.username", "postgres"));
+            properties.put("spring.datasource.password", System.getProperty("jmh.datasource.password", "postgres"));
+        } else {
+            postgres = new PostgreSQLContainer<>("postgres:15.0")
+                    .withDatabaseName("socks_benchmark")
+                    .withUsername("benchmark")
+                    .withPassword("benchmark");
+            postgres.start();
+            properties.put("spring.datasource.url", postgres.getJdbcUrl());
+            properties.put("spring.datasource.username", postgres.getUsername());
+            properties.put("spring.datasource.password", postgres.getPassword());
+        }
+        properties.put("socks.cache.enabled", "false");
+        properties.put("socks.quantity-index.enabled", "false");
+        properties.put("logging.level.root", "WARN");
+
+        context = new SpringApplicationBuilder(SockKeeperApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(properties)
+                .run();
+        socksService = context.getBean(SocksService.class);
+        socksRepository = context.getBean(SocksRepository.class);
+        clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        }
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    public SocksService getSocksService() {
+        return socksService;
+    }
+
+    /**
+     * Очищает склад и кэш, чтобы каждый замер начинался с одинакового состояния.
+     */
+    public void clear() {
+        socksRepository.deleteAllInBatch();
+        context.getBean(SocksCache.class).invalidateAll();
+    }
+}
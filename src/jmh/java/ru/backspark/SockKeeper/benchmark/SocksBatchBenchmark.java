@@ -0,0 +1,52 @@
+package ru.backspark.SockKeeper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.service.SocksService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Синхронная загрузка партии целиком: сохранение файла, разбор, свертка по парам и запись в базу.
+ * Каждый вызов добавляет к тем же парам, поэтому размер таблицы между вызовами не растет.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SocksBatchBenchmark {
+
+    private static final int COLORS = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    public int lines;
+
+    private SocksService socksService;
+    private MockMultipartFile file;
+
+    @Setup(Level.Trial)
+    public void setUp(SocksApplicationState application) {
+        application.clear();
+        socksService = application.getSocksService();
+        file = new MockMultipartFile("file", "socks.csv", "text/csv", SocksBenchmarkData.csv(lines, COLORS, 7));
+    }
+
+    @Benchmark
+    public SocksBatchRsDto processSocksBatch() {
+        return socksService.processSocksBatch(file);
+    }
+}
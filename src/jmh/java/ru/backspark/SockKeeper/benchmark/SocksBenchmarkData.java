@@ -0,0 +1,36 @@
+package ru.backspark.SockKeeper.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированные наборы данных для замеров: одинаковые между запусками, чтобы результаты можно было сравнивать.
+ */
+final class SocksBenchmarkData {
+
+    static final int COTTON_PART_VALUES = 101;
+
+    private SocksBenchmarkData() {
+    }
+
+    static String color(int index) {
+        return String.format("color-%03d", index);
+    }
+
+    /**
+     * CSV партии из lines строк по colors цветам в формате загрузки "цвет,процент хлопка,количество".
+     */
+    static byte[] csv(int lines, int colors, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder content = new StringBuilder(lines * 16);
+        for (int i = 0; i < lines; i++) {
+            content.append(color(random.nextInt(colors)))
+                    .append(',')
+                    .append(random.nextInt(COTTON_PART_VALUES))
+                    .append(',')
+                    .append(1 + random.nextInt(100))
+                    .append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.backspark.SockKeeper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
+import ru.backspark.SockKeeper.service.SocksService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Первая страница списка носков для каждого сочетания фильтра и сортировки.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SocksReadBenchmark {
+
+    private static final int COLORS = 100;
+
+    @Param({"none", "color", "minCottonPart", "maxCottonPart", "cottonPartRange", "colorAndCottonPartRange"})
+    public String filter;
+
+    @Param({"none", "color", "cottonPart"})
+    public String sortBy;
+
+    private SocksService socksService;
+    private String color;
+    private Integer minCottonPart;
+    private Integer maxCottonPart;
+    private String sort;
+
+    @Setup(Level.Trial)
+    public void setUp(SocksApplicationState application) {
+        application.clear();
+        socksService = application.getSocksService();
+        // Почти все 100 * 101 пар: около 10 тысяч записей
+        byte[] content = SocksBenchmarkData.csv(100_000, COLORS, 42);
+        socksService.processSocksBatch(new MockMultipartFile("file", "socks.csv", "text/csv", content));
+
+        color = filter.equals("color") || filter.equals("colorAndCottonPartRange") ? SocksBenchmarkData.color(42) : null;
+        minCottonPart = filter.equals("minCottonPart") || filter.contains("Range") ? 30 : null;
+        maxCottonPart = filter.equals("maxCottonPart") || filter.contains("Range") ? 70 : null;
+        sort = sortBy.equals("none") ? null : sortBy;
+    }
+
+    @Benchmark
+    public SocksPageRsDto getSocks() {
+        return socksService.getSocks(color, minCottonPart, maxCottonPart, sort, null, null);
+    }
+}
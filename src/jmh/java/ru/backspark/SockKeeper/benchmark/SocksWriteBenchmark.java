@@ -0,0 +1,81 @@
+package ru.backspark.SockKeeper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.backspark.SockKeeper.service.SocksService;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Приход и отпуск одной пары на запрос. Число пар задает, насколько часто параллельные потоки (-t)
+ * попадают в одну строку таблицы.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SocksWriteBenchmark {
+
+    // Запас, который отпуски не успеют исчерпать за время замера
+    private static final int INITIAL_QUANTITY = 1_000_000_000;
+
+    @Param({"10", "1000"})
+    public int pairs;
+
+    private SocksService socksService;
+
+    @Setup(Level.Trial)
+    public void setUp(SocksApplicationState application) {
+        application.clear();
+        socksService = application.getSocksService();
+        for (int pair = 0; pair < pairs; pair++) {
+            socksService.registerIncome(color(pair), cottonPart(pair), INITIAL_QUANTITY);
+        }
+    }
+
+    @Benchmark
+    public void registerIncome(Cursor cursor) {
+        int pair = cursor.next(pairs);
+        socksService.registerIncome(color(pair), cottonPart(pair), 1);
+    }
+
+    @Benchmark
+    public void registerOutcome(Cursor cursor) {
+        int pair = cursor.next(pairs);
+        socksService.registerOutcome(color(pair), cottonPart(pair), 1);
+    }
+
+    private static String color(int pair) {
+        return SocksBenchmarkData.color(pair / SocksBenchmarkData.COTTON_PART_VALUES);
+    }
+
+    private static int cottonPart(int pair) {
+        return pair % SocksBenchmarkData.COTTON_PART_VALUES;
+    }
+
+    /**
+     * Свой генератор у каждого потока, чтобы выбор пары не был общей точкой синхронизации.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ru.backspark.SockKeeper.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки по открытой модели: запросы уходят по расписанию с заданной частотой независимо от того,
+ * ответил ли сервис на предыдущие. Задержка считается от запланированного момента отправки, поэтому отставание
+ * генератора не прячет очередь на стороне сервиса.
+ * <p>
+ * Смесь запросов: доля incomeShare — приход одной штуки (POST /api/socks/income), остальное — подсчет
+ * по паре (GET /api/socks/count).
+ */
+class SocksLoadClient {
+
+    private static final String[] COLORS = {"red", "blue", "green", "black", "white"};
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+    private static final int MAX_IN_FLIGHT = 20000;
+
+    private final String baseUrl;
+    private final int pairs;
+    private final double incomeShare;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+
+    SocksLoadClient(String baseUrl, int pairs, double incomeShare) {
+        this.baseUrl = baseUrl;
+        this.pairs = pairs;
+        this.incomeShare = incomeShare;
+    }
+
+    /**
+     * Заводит все пары, чтобы подсчет и приход шли по существующим строкам.
+     */
+    void seed() {
+        for (int pair = 0; pair < pairs; pair++) {
+            try {
+                HttpResponse<Void> response = httpClient.send(income(pair, 1000), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Не удалось завести пару " + pair + ": HTTP " + response.statusCode());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось завести пару " + pair, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Заведение пар прервано", e);
+            }
+        }
+    }
+
+    /**
+     * Подает нагрузку rps запросов в секунду в течение duration и ждет ответов на все отправленные запросы.
+     */
+    SocksLoadStep run(double rps, Duration duration) {
+        int total = (int) Math.max(1, Math.round(rps * duration.toNanos() / 1e9));
+        long interval = (long) (1e9 / rps);
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        LongAdder errors = new LongAdder();
+        AtomicInteger inFlight = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(total);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long scheduled = start + i * interval;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.incrementAndGet() > MAX_IN_FLIGHT) {
+                // Сервис безнадежно отстал: не копим соединения, а считаем запрос неудачным
+                inFlight.decrementAndGet();
+                errors.increment();
+                done.countDown();
+                continue;
+            }
+
+            int pair = random.nextInt(pairs);
+            HttpRequest request = random.nextDouble() < incomeShare ? income(pair, 1) : count(pair);
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long latency = System.nanoTime() - scheduled;
+                if (failure != null || response.statusCode() != 200) {
+                    errors.increment();
+                } else {
+                    latencies[completed.getAndIncrement()] = latency;
+                }
+                inFlight.decrementAndGet();
+                done.countDown();
+            });
+        }
+        long sendNanos = System.nanoTime() - start;
+
+        try {
+            done.await(REQUEST_TIMEOUT.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new SocksLoadStep(rps, total, total / (sendNanos / 1e9), latencies, completed.get(), errors.intValue());
+    }
+
+    private HttpRequest income(int pair, int quantity) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/socks/income?color=" + color(pair)
+                        + "&cottonPart=" + cottonPart(pair) + "&quantity=" + quantity))
+                .timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private HttpRequest count(int pair) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/socks/count?color=" + color(pair)
+                        + "&operation=equal&cottonPart=" + cottonPart(pair)))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+    }
+
+    private static String color(int pair) {
+        return COLORS[pair % COLORS.length];
+    }
+
+    private static int cottonPart(int pair) {
+        return (pair / COLORS.length) % 101;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.backspark.SockKeeper.load;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Итог одной ступени нагрузки.
+ */
+class SocksLoadStep {
+
+    private static final double MAX_ERROR_SHARE = 0.01;
+    private static final double MIN_SEND_RATE_SHARE = 0.95;
+
+    private final double offeredRps;
+    private final int sent;
+    private final double sentRps;
+    private final int completed;
+    private final int errors;
+    private final long p50Nanos;
+    private final long p99Nanos;
+
+    SocksLoadStep(double offeredRps, int sent, double sentRps, long[] latencies, int completed, int errors) {
+        this.offeredRps = offeredRps;
+        this.sent = sent;
+        this.sentRps = sentRps;
+        this.completed = completed;
+        this.errors = errors;
+
+        long[] sorted = Arrays.copyOf(latencies, completed);
+        Arrays.sort(sorted);
+        this.p50Nanos = percentile(sorted, 0.50);
+        this.p99Nanos = percentile(sorted, 0.99);
+    }
+
+    /**
+     * Ступень выдержана, если ответы пришли на все запросы, ошибок меньше 1%, p99 не выше maxP99, а генератор
+     * успел отправить запросы с заданной частотой (иначе ограничивает клиент, а не сервис).
+     */
+    boolean isSustained(Duration maxP99) {
+        return completed + errors == sent
+                && errors < sent * MAX_ERROR_SHARE
+                && p99Nanos <= maxP99.toNanos()
+                && sentRps >= offeredRps * MIN_SEND_RATE_SHARE;
+    }
+
+    double getOfferedRps() {
+        return offeredRps;
+    }
+
+    double getP50Millis() {
+        return p50Nanos / 1e6;
+    }
+
+    double getP99Millis() {
+        return p99Nanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "RPS %8.0f (отправлено %8.0f/с): ответов %d из %d, ошибок %d, p50 %.1f мс, p99 %.1f мс",
+                offeredRps, sentRps, completed, sent, errors, getP50Millis(), getP99Millis());
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Long.MAX_VALUE;
+        }
+        int index = (int) Math.ceil(sorted.length * quantile) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
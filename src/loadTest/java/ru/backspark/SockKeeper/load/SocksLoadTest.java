@@ -0,0 +1,130 @@
+package ru.backspark.SockKeeper.load;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.backspark.SockKeeper.SockKeeperApplication;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Нагрузочный тест: наибольший RPS, который сервис выдерживает с платформенными и с виртуальными потоками.
+ * <p>
+ * Для каждого режима поднимается приложение на случайном порту поверх одной и той же базы: platform — настройки
+ * по умолчанию, virtual — профиль virtual-threads. Частота запросов растет ступенями в load.growth раз, пока ступень
+ * выдерживается (см. {@link SocksLoadStep#isSustained}). Кэш чтения и индекс сумм выключены, чтобы каждый запрос
+ * шел в базу.
+ * <p>
+ * Параметры (-D): load.datasource.url, load.datasource.username, load.datasource.password — своя база вместо
+ * контейнера; load.modes (platform,virtual), load.pairs (500), load.start-rps (100), load.growth (1.25),
+ * load.warmup (10s), load.step (10s), load.max-p99 (200ms), load.income-share (0.2).
+ */
+public final class SocksLoadTest {
+
+    private SocksLoadTest() {
+    }
+
+    public static void main(String[] args) {
+        List<String> modes = List.of(System.getProperty("load.modes", "platform,virtual").split(","));
+        Duration maxP99 = duration("load.max-p99", "200ms");
+
+        PostgreSQLContainer<?> postgres = null;
+        Map<String, Object> properties = new HashMap<>();
+        String url = System.getProperty("load.datasource.url");
+        if (url != null) {
+            properties.put("spring.datasource.url", url);
+            properties.put("spring.datasource.username", System.getProperty("load.datasource.username", "postgres"));
+            properties.put("spring.datasource.password", System.getProperty("load.datasource.password", "postgres"));
+        } else {
+            postgres = new PostgreSQLContainer<>("postgres:15.0")
+                    .withDatabaseName("socks_load")
+                    .withUsername("load")
+                    .withPassword("load");
+            postgres.start();
+            properties.put("spring.datasource.url", postgres.getJdbcUrl());
+            properties.put("spring.datasource.username", postgres.getUsername());
+            properties.put("spring.datasource.password", postgres.getPassword());
+        }
+        properties.put("server.port", "0");
+        properties.put("socks.cache.enabled", "false");
+        properties.put("socks.quantity-index.enabled", "false");
+        properties.put("logging.level.root", "WARN");
+
+        Map<String, SocksLoadStep> results = new HashMap<>();
+        try {
+            for (String mode : modes) {
+                if (mode.equals("virtual") && Runtime.version().feature() < 21) {
+                    System.out.println("Режим virtual пропущен: нужна Java 21 (./gradlew loadTest -PjavaVersion=21)");
+                    continue;
+                }
+                results.put(mode, measure(mode, properties, maxP99));
+            }
+        } finally {
+            if (postgres != null) {
+                postgres.stop();
+            }
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-10s %14s %10s %10s%n", "Режим", "Макс. RPS", "p50, мс", "p99, мс");
+        for (String mode : modes) {
+            SocksLoadStep best = results.get(mode);
+            if (best == null) {
+                System.out.printf(Locale.ROOT, "%-10s %14s%n", mode, results.containsKey(mode) ? "< start-rps" : "-");
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-10s %14.0f %10.1f %10.1f%n",
+                    mode, best.getOfferedRps(), best.getP50Millis(), best.getP99Millis());
+        }
+        // Потоки HTTP-клиента и контейнера не должны задерживать завершение задачи Gradle
+        System.exit(0);
+    }
+
+    private static SocksLoadStep measure(String mode, Map<String, Object> properties, Duration maxP99) {
+        int pairs = Integer.getInteger("load.pairs", 500);
+        double rps = Double.parseDouble(System.getProperty("load.start-rps", "100"));
+        double growth = Double.parseDouble(System.getProperty("load.growth", "1.25"));
+        double incomeShare = Double.parseDouble(System.getProperty("load.income-share", "0.2"));
+        Duration warmup = duration("load.warmup", "10s");
+        Duration step = duration("load.step", "10s");
+
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(SockKeeperApplication.class)
+                .logStartupInfo(false)
+                .properties(properties);
+        if (mode.equals("virtual")) {
+            builder.profiles("virtual-threads");
+        }
+
+        System.out.println();
+        System.out.println("Режим " + mode);
+        try (ConfigurableApplicationContext context = builder.run()) {
+            context.getBean(SocksRepository.class).deleteAllInBatch();
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            SocksLoadClient client = new SocksLoadClient("http://localhost:" + port, pairs, incomeShare);
+            client.seed();
+            client.run(rps, warmup);
+
+            SocksLoadStep best = null;
+            while (true) {
+                SocksLoadStep result = client.run(rps, step);
+                System.out.println(result);
+                if (!result.isSustained(maxP99)) {
+                    return best;
+                }
+                best = result;
+                rps *= growth;
+            }
+        }
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+}
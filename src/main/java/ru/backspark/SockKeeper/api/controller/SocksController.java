@@ -1,19 +1,41 @@
 package ru.backspark.SockKeeper.api.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.backspark.SockKeeper.api.spec.SocksApi;
+import ru.backspark.SockKeeper.dto.SocksBatchJobRsDto;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
 import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.model.SocksExportFormat;
+import ru.backspark.SockKeeper.service.SocksBatchJobService;
 import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
 
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
+@Profile("!reactive")
 @RequiredArgsConstructor
 public class SocksController implements SocksApi {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final SocksService socksService;
+    private final SocksBatchJobService socksBatchJobService;
+    private final SocksInventoryVersion inventoryVersion;
 
     @Override
     public void registerIncome(String color, Integer cottonPart, Integer quantity) {
@@ -26,8 +48,46 @@ public class SocksController implements SocksApi {
     }
 
     @Override
-    public List<SocksRsDto> getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy) {
-        return socksService.getSocks(color, minCottonPart, maxCottonPart, sortBy);
+    public ResponseEntity<SocksMovementsRsDto> registerMovements(List<SocksMovementRqDto> movements) {
+        SocksMovementsRsDto result = socksService.registerMovements(movements);
+        return ResponseEntity.status(result.getApplied() ? HttpStatus.OK : HttpStatus.CONFLICT).body(result);
+    }
+
+    @Override
+    public ResponseEntity<List<SocksRsDto>> getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy,
+                                                     Integer limit, String cursor, String ifNoneMatch) {
+        // Версия берется до чтения: ответ может быть новее своего ETag, но не старее
+        String eTag = socksETag(inventoryVersion.current(), color, minCottonPart, maxCottonPart, sortBy, limit, cursor);
+        if (ifNoneMatch != null && matches(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        SocksPageRsDto page = socksService.getSocks(color, minCottonPart, maxCottonPart, sortBy, limit, cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @Override
+    public Long countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                           Integer cottonPart, Integer cottonPartTo, OffsetDateTime asOf) {
+        if (asOf != null) {
+            return socksService.countSocks(color, minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo, asOf);
+        }
+        return socksService.countSocks(color, minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportSocks(String color, Integer minCottonPart, Integer maxCottonPart,
+                                                             String format) {
+        // Формат разбирается до начала потока, чтобы ошибка вернулась обычным ответом 400
+        SocksExportFormat exportFormat = SocksExportFormat.fromParam(format);
+        StreamingResponseBody body = out -> socksService.exportSocks(color, minCottonPart, maxCottonPart, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
     }
 
     @Override
@@ -36,7 +96,47 @@ public class SocksController implements SocksApi {
     }
 
     @Override
-    public void uploadSocksBatch(MultipartFile file) {
-        socksService.processSocksBatch(file);
+    public SocksBatchRsDto uploadSocksBatch(MultipartFile file) {
+        return socksService.processSocksBatch(file);
+    }
+
+    @Override
+    public SocksBatchJobRsDto submitSocksBatch(MultipartFile file) {
+        return socksBatchJobService.submitBatch(file);
+    }
+
+    @Override
+    public SocksBatchJobRsDto getSocksBatchJob(UUID jobId) {
+        return socksBatchJobService.getJob(jobId);
+    }
+
+    /**
+     * Сильный ETag списка: экземпляр и версия склада плюс хэш параметров запроса.
+     */
+    private String socksETag(long version, String color, Integer minCottonPart, Integer maxCottonPart, String sortBy,
+                             Integer limit, String cursor) {
+        String parameters = color + '\u0000' + minCottonPart + '\u0000' + maxCottonPart + '\u0000' + sortBy
+                + '\u0000' + limit + '\u0000' + cursor;
+        return "\"" + inventoryVersion.instanceId() + '-' + version + '-'
+                + DigestUtils.md5DigestAsHex(parameters.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Совпадает ли If-None-Match с ETag. Для If-None-Match теги сравниваются без учета признака W/.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
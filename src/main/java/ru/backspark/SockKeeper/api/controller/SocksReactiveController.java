@@ -0,0 +1,44 @@
+package ru.backspark.SockKeeper.api.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.backspark.SockKeeper.api.spec.SocksReactiveApi;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.service.reactive.SocksReactiveService;
+
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+public class SocksReactiveController implements SocksReactiveApi {
+
+    private final SocksReactiveService socksReactiveService;
+
+    @Override
+    public Mono<Void> registerIncome(String color, Integer cottonPart, Integer quantity) {
+        return socksReactiveService.registerIncome(color, cottonPart, quantity);
+    }
+
+    @Override
+    public Mono<Void> registerOutcome(String color, Integer cottonPart, Integer quantity) {
+        return socksReactiveService.registerOutcome(color, cottonPart, quantity);
+    }
+
+    @Override
+    public Flux<SocksRsDto> getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy) {
+        return socksReactiveService.getSocks(color, minCottonPart, maxCottonPart, sortBy);
+    }
+
+    @Override
+    public Mono<Long> countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                                 Integer cottonPart, Integer cottonPartTo) {
+        return socksReactiveService.countSocks(color, minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+    }
+
+    @Override
+    public Mono<SocksRsDto> updateSocks(Long id, String color, Integer cottonPart, Integer quantity) {
+        return socksReactiveService.updateSocks(id, color, cottonPart, quantity);
+    }
+}
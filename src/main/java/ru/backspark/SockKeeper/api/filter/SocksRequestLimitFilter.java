@@ -0,0 +1,132 @@
+package ru.backspark.SockKeeper.api.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.backspark.SockKeeper.error.ErrorResponse;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничивает число одновременно обрабатываемых запросов к API.
+ * <p>
+ * В виртуальных потоках каждый запрос получает свой поток, и тысячи запросов сразу встали бы в очередь пула
+ * соединений, где порядок не гарантирован и ожидание заканчивается ошибкой по connection-timeout. Справедливый
+ * семафор пропускает запросы строго по очереди и отвечает 503, если очередь не дошла за requestQueueTimeout.
+ * Асинхронный запрос (потоковая выгрузка) держит разрешение до завершения ответа.
+ */
+@Slf4j
+public class SocksRequestLimitFilter extends OncePerRequestFilter {
+
+    private static final String API_PREFIX = "/api/";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final Semaphore permits;
+    private final long queueTimeoutNanos;
+    private final ObjectMapper objectMapper;
+
+    public SocksRequestLimitFilter(int maxConcurrentRequests, Duration queueTimeout, ObjectMapper objectMapper) {
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Количество запросов, ожидающих своей очереди.
+     */
+    public int getQueueLength() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Actuator и Swagger не ограничиваем: проверки состояния должны отвечать и под нагрузкой
+        return !request.getRequestURI().startsWith(request.getContextPath() + API_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            log.warn("Запрос не дождался очереди: {} {}", request.getMethod(), request.getRequestURI());
+            reject(response);
+            return;
+        }
+
+        boolean releaseOnComplete = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseListener());
+                releaseOnComplete = true;
+            }
+        } finally {
+            if (!releaseOnComplete) {
+                permits.release();
+            }
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse("Сервис перегружен. Повторите попытку позже."));
+    }
+
+    /**
+     * onComplete вызывается при любом завершении асинхронного запроса, в том числе после ошибки и тайм-аута.
+     */
+    private final class ReleaseListener implements AsyncListener {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -2,22 +2,37 @@ package ru.backspark.SockKeeper.api.spec;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.backspark.SockKeeper.dto.SocksBatchJobRsDto;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
 import ru.backspark.SockKeeper.dto.SocksRsDto;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @Tag(name = "Socks API", description = "API для управления складом носков")
 public interface SocksApi {
@@ -53,6 +68,26 @@ public interface SocksApi {
             @RequestParam @Min(1) @Parameter(description = "Количество носков", example = "50") Integer quantity
     );
 
+    @Operation(
+            summary = "Регистрация списка приходов и отпусков",
+            description = """
+                    Применяет список строк `{"type": "income" | "outcome", "color", "cottonPart", "quantity"}` одной транзакцией.
+                    Сначала применяются все приходы, затем все отпуски, поэтому отпуск может использовать носки,
+                    пришедшие в том же списке.
+                                    
+                    Список применяется целиком или никак. Если хотя бы одному отпуску не хватает носков, склад не меняется,
+                    возвращается 409 и результат по каждой строке: `INSUFFICIENT` и доступное количество, `NOT_FOUND`
+                    или `NOT_APPLIED` для строк, которые сами по себе были бы выполнены.
+                    """,
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Список применен", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SocksMovementsRsDto.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content),
+                    @ApiResponse(responseCode = "409", description = "Список отклонен: не хватает носков", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SocksMovementsRsDto.class)))
+            }
+    )
+    @PostMapping("/api/socks/movements")
+    ResponseEntity<SocksMovementsRsDto> registerMovements(@RequestBody List<SocksMovementRqDto> movements);
+
     @Operation(
             summary = "Получение общего количества носков",
             description = """
@@ -69,20 +104,86 @@ public interface SocksApi {
                     - `minCottonPart` (опционально): Минимальное значение процента содержания хлопка. Пример: 30.
                     - `maxCottonPart` (опционально): Максимальное значение процента содержания хлопка. Пример: 70.
                     - `sortBy` (опционально): Поле для сортировки результата. Доступные значения: color, cottonPart.
+                    - `limit` (опционально): Размер страницы, по умолчанию 100, не больше 1000.
+                    - `cursor` (опционально): Значение заголовка `X-Next-Cursor` из предыдущего ответа.
                                     
-                    Если параметры фильтрации не указаны, метод вернет полный список носков.
+                    Результат выдается страницами. Если есть следующая страница, ответ содержит заголовок `X-Next-Cursor`;
+                    его нужно передать в `cursor` вместе с теми же фильтрами и сортировкой.
+
+                    Ответ содержит заголовок `ETag`. Если передать его в `If-None-Match` с теми же параметрами,
+                    а склад с тех пор не менялся, сервис ответит `304` без тела и без обращения к базе.
                     """,
             responses = {
                     @ApiResponse(responseCode = "200", description = "Операция успешна", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SocksRsDto.class))),
+                    @ApiResponse(responseCode = "304", description = "Склад не менялся с ответа с указанным ETag", content = @Content),
                     @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content)
             }
     )
     @GetMapping("/api/socks")
-    List<SocksRsDto> getSocks(
+    ResponseEntity<List<SocksRsDto>> getSocks(
             @RequestParam(required = false) @Parameter(description = "Цвет носков", example = "red") String color,
             @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Минимальный процент содержания хлопка", example = "30") Integer minCottonPart,
             @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Максимальный процент содержания хлопка", example = "70") Integer maxCottonPart,
-            @RequestParam(required = false) @Parameter(description = "Поле для сортировки (color, cottonPart)", example = "color") String sortBy
+            @RequestParam(required = false) @Parameter(description = "Поле для сортировки (color, cottonPart)", example = "color") String sortBy,
+            @RequestParam(required = false) @Min(1) @Max(1000) @Parameter(description = "Размер страницы", example = "100") Integer limit,
+            @RequestParam(required = false) @Parameter(description = "Курсор следующей страницы из заголовка X-Next-Cursor") String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) @Parameter(description = "ETag из предыдущего ответа с теми же параметрами") String ifNoneMatch
+    );
+
+    @Operation(
+            summary = "Подсчет количества носков",
+            description = """
+                    Возвращает суммарное количество носков, подходящих под фильтры, одним числом.
+                    Сумма считается в базе данных, записи не загружаются.
+                                    
+                    Параметры:
+                    - `color`, `minCottonPart`, `maxCottonPart` (опционально): те же фильтры, что у получения списка носков.
+                    - `operation` (опционально): сравнение процента хлопка с `cottonPart` — `moreThan`, `lessThan`, `equal`
+                      или `between` (от `cottonPart` до `cottonPartTo` включительно).
+                    - `asOf` (опционально): момент времени в ISO-8601; количество восстанавливается по журналу движений.
+                      Журнал ведется с момента обновления схемы: для более ранних моментов возвращается количество на начало журнала.
+                    """,
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Long.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content)
+            }
+    )
+    @GetMapping("/api/socks/count")
+    Long countSocks(
+            @RequestParam(required = false) @Parameter(description = "Цвет носков", example = "red") String color,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Минимальный процент содержания хлопка", example = "30") Integer minCottonPart,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Максимальный процент содержания хлопка", example = "70") Integer maxCottonPart,
+            @RequestParam(required = false) @Parameter(description = "Операция сравнения (moreThan, lessThan, equal, between)", example = "moreThan") String operation,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Процент хлопка для операции сравнения", example = "50") Integer cottonPart,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Верхняя граница для операции between", example = "80") Integer cottonPartTo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) @Parameter(description = "Момент, на который считается количество", example = "2026-10-01T00:00:00Z") OffsetDateTime asOf
+    );
+
+    @Operation(
+            summary = "Выгрузка всего склада",
+            description = """
+                    Отдает все записи, подходящие под фильтры, одним потоковым ответом без постраничной разбивки.
+                    Записи читаются из базы порциями и сразу пишутся в ответ, поэтому объем выгрузки не ограничен памятью сервиса.
+                                    
+                    Параметры:
+                    - `color`, `minCottonPart`, `maxCottonPart` (опционально): те же фильтры, что у получения списка носков.
+                    - `format` (опционально): `ndjson` (по умолчанию) — один JSON-объект на строку,
+                      `csv` — строки `color,cottonPart,quantity` в формате загрузки партий.
+                    """,
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна", content = {
+                            @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = SocksRsDto.class)),
+                            @Content(mediaType = "text/csv")
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content)
+            }
+    )
+    @GetMapping("/api/socks/export")
+    ResponseEntity<StreamingResponseBody> exportSocks(
+            @RequestParam(required = false) @Parameter(description = "Цвет носков", example = "red") String color,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Минимальный процент содержания хлопка", example = "30") Integer minCottonPart,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Максимальный процент содержания хлопка", example = "70") Integer maxCottonPart,
+            @RequestParam(required = false) @Parameter(description = "Формат выгрузки (ndjson, csv)", example = "ndjson") String format
     );
 
     @Operation(
@@ -104,13 +205,49 @@ public interface SocksApi {
 
     @Operation(
             summary = "Загрузка партий носков из файла",
-            description = "Позволяет загрузить партии носков через CSV-файл. В файле должны быть указаны цвет, процент хлопка и количество.",
+            description = """
+                    Позволяет загрузить партии носков через CSV-файл. В файле должны быть указаны цвет, процент хлопка и количество.
+                    Строки с одинаковыми цветом и процентом хлопка суммируются и добавляются к существующим остаткам.
+                    В ответе возвращается число прочитанных строк, различных пар, созданных и обновленных записей.
+                    """,
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Файл успешно обработан"),
+                    @ApiResponse(responseCode = "200", description = "Файл успешно обработан", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SocksBatchRsDto.class))),
                     @ApiResponse(responseCode = "400", description = "Ошибка при обработке файла", content = @Content)
             }
     )
     @PostMapping("/api/socks/batch")
-    void uploadSocksBatch(
+    SocksBatchRsDto uploadSocksBatch(
             @RequestParam("file") @Parameter(description = "CSV файл с партией носков", example = "новогодняя партия.csv") MultipartFile file);
+
+    @Operation(
+            summary = "Асинхронная загрузка партий носков из файла",
+            description = """
+                    Сохраняет CSV-файл на диск и сразу возвращает идентификатор задачи загрузки.
+                    Файл обрабатывается в фоне, каждая порция фиксируется в отдельной транзакции.
+                    При ошибке уже записанные порции остаются на складе, ход загрузки виден в статусе задачи.
+                    Без параметра async=true (в том числе при async=false) файл загружается синхронно.
+                    """,
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Задача поставлена в очередь", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SocksBatchJobRsDto.class))),
+                    @ApiResponse(responseCode = "500", description = "Ошибка при сохранении файла", content = @Content),
+                    @ApiResponse(responseCode = "503", description = "Очередь загрузок заполнена", content = @Content)
+            }
+    )
+    @Parameter(name = "async", in = ParameterIn.QUERY, required = true, description = "Асинхронный режим загрузки", example = "true")
+    @PostMapping(value = "/api/socks/batch", params = "async=true")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    SocksBatchJobRsDto submitSocksBatch(
+            @RequestParam("file") @Parameter(description = "CSV файл с партией носков", example = "новогодняя партия.csv") MultipartFile file);
+
+    @Operation(
+            summary = "Статус асинхронной загрузки",
+            description = "Возвращает состояние задачи загрузки: количество обработанных строк, скорость и ошибку, если она возникла.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SocksBatchJobRsDto.class))),
+                    @ApiResponse(responseCode = "404", description = "Задача с указанным идентификатором не найдена", content = @Content)
+            }
+    )
+    @GetMapping("/api/socks/batch/{jobId}")
+    SocksBatchJobRsDto getSocksBatchJob(
+            @PathVariable("jobId") @Parameter(description = "Идентификатор задачи загрузки") UUID jobId);
 }
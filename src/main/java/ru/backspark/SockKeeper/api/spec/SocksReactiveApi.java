@@ -0,0 +1,120 @@
+package ru.backspark.SockKeeper.api.spec;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+@Tag(name = "Socks Reactive API", description = "Неблокирующий API склада носков (профиль reactive)")
+public interface SocksReactiveApi {
+
+    @Operation(
+            summary = "Регистрация прихода носков",
+            description = "Добавляет указанное количество носков на склад. Если носки с такими параметрами уже есть, увеличивает их количество.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content)
+            }
+    )
+    @PostMapping("/api/socks/income")
+    Mono<Void> registerIncome(
+            @RequestParam @NotBlank @Parameter(description = "Цвет носков", example = "red") String color,
+            @RequestParam @Min(0) @Max(100) @Parameter(description = "Процентное содержание хлопка", example = "50") Integer cottonPart,
+            @RequestParam @Min(1) @Parameter(description = "Количество носков", example = "100") Integer quantity
+    );
+
+    @Operation(
+            summary = "Регистрация отпуска носков",
+            description = "Уменьшает количество носков на складе. Если недостаточно носков с указанными параметрами, возвращает ошибку.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна"),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content),
+                    @ApiResponse(responseCode = "404", description = "Носки с указанными параметрами не найдены", content = @Content)
+            }
+    )
+    @PostMapping("/api/socks/outcome")
+    Mono<Void> registerOutcome(
+            @RequestParam @NotBlank @Parameter(description = "Цвет носков", example = "red") String color,
+            @RequestParam @Min(0) @Max(100) @Parameter(description = "Процентное содержание хлопка", example = "50") Integer cottonPart,
+            @RequestParam @Min(1) @Parameter(description = "Количество носков", example = "50") Integer quantity
+    );
+
+    @Operation(
+            summary = "Потоковое получение носков",
+            description = """
+                    Отдает все записи, подходящие под фильтры, одним потоком без постраничной разбивки.
+                    Записи читаются из базы порциями по мере того, как клиент их принимает: медленный клиент
+                    замедляет чтение, а не накапливает записи в памяти сервиса.
+                                    
+                    Параметры:
+                    - `color`, `minCottonPart`, `maxCottonPart` (опционально): фильтры по цвету и диапазону процента хлопка.
+                    - `sortBy` (опционально): `color` или `cottonPart`, по умолчанию — по идентификатору.
+                                    
+                    Формат: JSON-массив (`application/json`) или один объект на строку (`application/x-ndjson`).
+                    """,
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = SocksRsDto.class)),
+                            @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = SocksRsDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content)
+            }
+    )
+    @GetMapping(value = "/api/socks", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    Flux<SocksRsDto> getSocks(
+            @RequestParam(required = false) @Parameter(description = "Цвет носков", example = "red") String color,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Минимальный процент содержания хлопка", example = "30") Integer minCottonPart,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Максимальный процент содержания хлопка", example = "70") Integer maxCottonPart,
+            @RequestParam(required = false) @Parameter(description = "Поле для сортировки (color, cottonPart)", example = "color") String sortBy
+    );
+
+    @Operation(
+            summary = "Подсчет количества носков",
+            description = "Возвращает суммарное количество носков, подходящих под фильтры, одним числом. Параметры те же, что у блокирующего API.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Long.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content)
+            }
+    )
+    @GetMapping("/api/socks/count")
+    Mono<Long> countSocks(
+            @RequestParam(required = false) @Parameter(description = "Цвет носков", example = "red") String color,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Минимальный процент содержания хлопка", example = "30") Integer minCottonPart,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Максимальный процент содержания хлопка", example = "70") Integer maxCottonPart,
+            @RequestParam(required = false) @Parameter(description = "Операция сравнения (moreThan, lessThan, equal, between)", example = "moreThan") String operation,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Процент хлопка для операции сравнения", example = "50") Integer cottonPart,
+            @RequestParam(required = false) @Min(0) @Max(100) @Parameter(description = "Верхняя граница для операции between", example = "80") Integer cottonPartTo
+    );
+
+    @Operation(
+            summary = "Обновление данных носков",
+            description = "Позволяет обновить параметры носков по их идентификатору.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Операция успешна", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SocksRsDto.class))),
+                    @ApiResponse(responseCode = "400", description = "Некорректный запрос", content = @Content),
+                    @ApiResponse(responseCode = "404", description = "Носки с указанным идентификатором не найдены", content = @Content)
+            }
+    )
+    @PutMapping("/api/socks/{id}")
+    Mono<SocksRsDto> updateSocks(
+            @PathVariable("id") @Parameter(description = "Идентификатор носков", example = "14") Long id,
+            @RequestParam @NotBlank @Parameter(description = "Цвет носков", example = "blue") String color,
+            @RequestParam @Min(0) @Max(100) @Parameter(description = "Процентное содержание хлопка", example = "70") Integer cottonPart,
+            @RequestParam @Min(1) @Parameter(description = "Количество носков", example = "30") Integer quantity
+    );
+}
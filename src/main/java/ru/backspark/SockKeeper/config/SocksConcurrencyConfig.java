@@ -0,0 +1,34 @@
+package ru.backspark.SockKeeper.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.backspark.SockKeeper.api.filter.SocksRequestLimitFilter;
+import ru.backspark.SockKeeper.service.lock.SocksKeyLocks;
+
+@Configuration
+public class SocksConcurrencyConfig {
+
+    @Bean
+    public SocksKeyLocks socksKeyLocks(SocksProperties socksProperties) {
+        return new SocksKeyLocks(socksProperties.getLockStripes());
+    }
+
+    @Bean
+    @ConditionalOnExpression("${socks.threads.max-concurrent-requests:0} > 0")
+    public FilterRegistrationBean<SocksRequestLimitFilter> socksRequestLimitFilter(SocksProperties socksProperties,
+                                                                                   ObjectMapper objectMapper,
+                                                                                   MeterRegistry meterRegistry) {
+        SocksProperties.Threads threads = socksProperties.getThreads();
+        SocksRequestLimitFilter filter = new SocksRequestLimitFilter(
+                threads.getMaxConcurrentRequests(), threads.getRequestQueueTimeout(), objectMapper);
+        Gauge.builder("socks.requests.queued", filter, SocksRequestLimitFilter::getQueueLength)
+                .description("Запросы к API, ожидающие своей очереди")
+                .register(meterRegistry);
+        return new FilterRegistrationBean<>(filter);
+    }
+}
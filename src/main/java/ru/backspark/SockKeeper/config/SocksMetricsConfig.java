@@ -0,0 +1,20 @@
+package ru.backspark.SockKeeper.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SocksMetricsConfig {
+
+    /**
+     * Включает @Timed на сервисах: таймер socks.service с тегами class, method и exception.
+     * Время запросов API (http.server.requests), запросов репозитория (spring.data.repository.invocations)
+     * и состояние пула соединений (hikaricp.connections.*) Spring Boot снимает сам.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,331 @@
+package ru.backspark.SockKeeper.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "socks")
+public class SocksProperties {
+
+    /**
+     * Где хранятся остатки: database — в таблице socks, memory — в памяти сервиса с журналом на диске.
+     */
+    private String engine = "database";
+
+    /**
+     * Число полос блокировок, через которые сервис по очереди пропускает изменения одной пары
+     * (цвет, процент хлопка) до обращения к базе.
+     */
+    private int lockStripes = 256;
+
+    private final Batch batch = new Batch();
+
+    private final Page page = new Page();
+
+    private final Export export = new Export();
+
+    private final Cache cache = new Cache();
+
+    private final Memory memory = new Memory();
+
+    private final Coalescing coalescing = new Coalescing();
+
+    private final Movements movements = new Movements();
+
+    private final Threads threads = new Threads();
+
+    private final Ledger ledger = new Ledger();
+
+    private final ReadReplicas readReplicas = new ReadReplicas();
+
+    private final QuantityIndex quantityIndex = new QuantityIndex();
+
+    private final Coherence coherence = new Coherence();
+
+    private final Colors colors = new Colors();
+
+    @Data
+    public static class Batch {
+        /**
+         * Максимальное количество различных пар (цвет, процент хлопка), суммы по которым копятся в памяти
+         * перед записью в базу одним запросом.
+         */
+        private int chunkSize = 10000;
+
+        /**
+         * Количество потоков параллельного разбора CSV. 0 — по числу доступных процессоров.
+         */
+        private int parserThreads = 0;
+
+        private final Jobs jobs = new Jobs();
+    }
+
+    @Data
+    public static class Page {
+        /**
+         * Размер страницы GET /api/socks, если limit не указан.
+         */
+        private int defaultLimit = 100;
+
+        /**
+         * Наибольший допустимый limit: ответ ограничен независимо от размера склада.
+         */
+        private int maxLimit = 1000;
+    }
+
+    @Data
+    public static class Export {
+        /**
+         * Сколько строк драйвер читает из курсора за раз при выгрузке; с той же периодичностью сбрасывается ответ.
+         */
+        private int fetchSize = 1000;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * Кэшировать ли остатки и результаты запросов в памяти сервиса.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Наибольшее число пар (цвет, процент хлопка) с кэшированным количеством.
+         */
+        private long maxQuantities = 100000;
+
+        /**
+         * Наибольшее число кэшированных результатов запросов.
+         */
+        private long maxQueries = 10000;
+
+        /**
+         * Срок жизни записи. Изменения на этом узле сбрасывают кэш сразу, срок ограничивает отставание
+         * от изменений, сделанных в обход сервиса.
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Threads {
+        /**
+         * Обрабатывать запросы Tomcat, асинхронные запросы MVC и разбор партий в виртуальных потоках.
+         * Требует Java 21.
+         */
+        private boolean virtual = false;
+
+        /**
+         * Сколько запросов к API обрабатывается одновременно; остальные ждут в порядке поступления.
+         * 0 — без ограничения.
+         */
+        private int maxConcurrentRequests = 0;
+
+        /**
+         * Сколько запрос ждет своей очереди, прежде чем получить 503.
+         */
+        private Duration requestQueueTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Ledger {
+        /**
+         * На сколько месяцев вперед заранее создаются секции журнала движений.
+         */
+        private int partitionsAhead = 2;
+
+        /**
+         * Как часто проверять, что секции журнала созданы.
+         */
+        private Duration maintenanceInterval = Duration.ofHours(6);
+    }
+
+    @Data
+    public static class Coherence {
+        /**
+         * Сообщать другим экземплярам об изменениях остатков через LISTEN/NOTIFY PostgreSQL и применять
+         * их изменения к своему кэшу, индексу сумм и версии склада. Действует при socks.engine=database.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Канал уведомлений: имя в нижнем регистре из латинских букв, цифр и подчеркиваний.
+         */
+        private String channel = "socks_changes";
+
+        /**
+         * Пауза перед повторным подключением слушателя после потери соединения.
+         */
+        private Duration reconnectDelay = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Colors {
+        /**
+         * Наибольшее число запомненных названий цветов, которых нет в справочнике.
+         */
+        private long unknownMaxSize = 10000;
+
+        /**
+         * Сколько помнить, что цвета нет в справочнике. Добавление цвета на этом узле забывает отсутствие сразу,
+         * срок ограничивает, как долго не виден цвет, добавленный другим экземпляром или напрямую в базе.
+         */
+        private Duration unknownTtl = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class QuantityIndex {
+        /**
+         * Считать количество в диапазоне процента хлопка по индексу сумм в памяти, а не запросом к базе.
+         * Действует при socks.engine=database.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Как часто перестраивать индекс из базы, чтобы учесть изменения других экземпляров и сделанные
+         * в обход сервиса.
+         */
+        private Duration rebuildInterval = Duration.ofMinutes(10);
+
+        /**
+         * Сколько построение ждет блокировки таблицы socks для снимка. Пока оно ждет и держит блокировку,
+         * изменения остатков стоят, поэтому при большем ожидании построение откладывается.
+         */
+        private Duration lockTimeout = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class ReadReplicas {
+        /**
+         * Реплики, на которые направляются транзакции только для чтения. Пусто — все запросы идут
+         * в основную базу spring.datasource.
+         */
+        private List<Replica> pools = new ArrayList<>();
+
+        /**
+         * Наибольшее отставание репликации, при котором реплика принимает чтение. Отстающие реплики пропускаются;
+         * если подходящих нет, чтение идет в основную базу.
+         */
+        private Duration maxLag = Duration.ofSeconds(5);
+
+        /**
+         * Сколько реплика может ничего не получать от основной базы и принимать чтение. Основная база без изменений
+         * шлет реплике сообщения раз в wal_sender_timeout / 2, поэтому значение должно быть больше этого интервала.
+         * Для проверки пользователю реплики нужна роль pg_read_all_stats (или pg_monitor).
+         */
+        private Duration receiverTimeout = Duration.ofSeconds(60);
+
+        /**
+         * Как часто измерять отставание реплик.
+         */
+        private Duration checkInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Replica {
+        /**
+         * JDBC URL реплики.
+         */
+        private String url;
+
+        /**
+         * Пользователь и пароль; по умолчанию те же, что у основной базы.
+         */
+        private String username;
+
+        private String password;
+
+        /**
+         * Наибольшее число соединений с репликой.
+         */
+        private int maximumPoolSize = 10;
+    }
+
+    @Data
+    public static class Movements {
+        /**
+         * Наибольшее число строк в одном списке движений.
+         */
+        private int maxLines = 10000;
+    }
+
+    @Data
+    public static class Coalescing {
+        /**
+         * Собирать приходы и отпуски из разных запросов в группы и записывать каждую группу одной транзакцией.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Сколько ждать новых операций после первой операции группы.
+         */
+        private Duration maxDelay = Duration.ofMillis(2);
+
+        /**
+         * Наибольшее число операций в группе; набранная группа записывается, не дожидаясь maxDelay.
+         */
+        private int maxOperations = 1000;
+
+        /**
+         * Сколько операций может ждать своей группы; сверх этого вызывающие потоки ждут места в очереди.
+         */
+        private int queueCapacity = 10000;
+    }
+
+    @Data
+    public static class Memory {
+        /**
+         * Каталог журнала изменений и снимков.
+         */
+        private String dir = "data/socks";
+
+        /**
+         * Отвечать на изменение только после того, как оно зафиксировано в журнале на диске.
+         * Если выключено, изменение подтверждается сразу и может потеряться при сбое вместе с последними
+         * миллисекундами журнала.
+         */
+        private boolean syncWrites = true;
+
+        /**
+         * Число полос блокировок по паре (цвет, процент хлопка).
+         */
+        private int lockStripes = 256;
+
+        /**
+         * Как часто сохранять снимок состояния и удалять прочитанный в него журнал.
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+
+        /**
+         * Как часто переносить изменения в таблицу socks.
+         */
+        private Duration databaseSyncInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Jobs {
+        /**
+         * Количество потоков, обрабатывающих асинхронные загрузки. Держим небольшим, чтобы не отнимать
+         * соединения у интерактивных запросов.
+         */
+        private int threads = 1;
+
+        /**
+         * Сколько задач может ждать в очереди; сверх этого новые загрузки отклоняются.
+         */
+        private int queueCapacity = 8;
+
+        /**
+         * Каталог для временного хранения загруженных файлов, синхронных и асинхронных. По умолчанию используется
+         * java.io.tmpdir.
+         */
+        private String spoolDir;
+
+        /**
+         * Сколько хранить сведения о завершенных задачах.
+         */
+        private Duration retention = Duration.ofHours(1);
+    }
+}
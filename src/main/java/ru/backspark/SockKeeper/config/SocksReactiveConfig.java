@@ -0,0 +1,24 @@
+package ru.backspark.SockKeeper.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Профиль reactive: WebFlux на Netty и R2DBC вместо Tomcat и JDBC для API склада.
+ * <p>
+ * Из R2DBC включена только фабрика соединений (spring.r2dbc.*). Менеджер транзакций R2DBC не подключается,
+ * чтобы не вытеснить JPA-менеджер, которым пользуются блокирующие компоненты; неблокирующие изменения
+ * выполняются одиночными атомарными запросами.
+ */
+@Configuration
+@Profile("reactive")
+public class SocksReactiveConfig {
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+}
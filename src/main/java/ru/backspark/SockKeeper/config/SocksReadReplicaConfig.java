@@ -0,0 +1,80 @@
+package ru.backspark.SockKeeper.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseDataSource;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение с реплик: включается, когда задана хотя бы одна реплика в socks.read-replicas.pools.
+ * <p>
+ * Основная база по-прежнему настраивается через spring.datasource. Приложение получает источник соединений,
+ * который отправляет транзакции readOnly на реплики, а изменения, миграции и запросы вне транзакций —
+ * в основную базу.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "socks.read-replicas.pools[0]", name = "url")
+public class SocksReadReplicaConfig {
+
+    @Bean
+    @LiquibaseDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public SocksRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                    DataSourceProperties properties,
+                                                    SocksProperties socksProperties) {
+        SocksProperties.ReadReplicas readReplicas = socksProperties.getReadReplicas();
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < readReplicas.getPools().size(); i++) {
+            SocksProperties.Replica replica = readReplicas.getPools().get(i);
+            // Пул не открывает соединений до первого обращения: недоступная реплика не мешает старту
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("socks-replica-" + i);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setDriverClassName(properties.determineDriverClassName());
+            dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : properties.determineUsername());
+            dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : properties.determinePassword());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.add(dataSource);
+        }
+        return new SocksRoutingDataSource(primaryDataSource, replicas,
+                readReplicas.getMaxLag(), readReplicas.getReceiverTimeout(), readReplicas.getCheckInterval());
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(SocksRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Отставание реплик: socks.datasource.replica.lag с тегом replica.
+     */
+    @Bean
+    public MeterBinder replicaLagMetrics(SocksRoutingDataSource routingDataSource) {
+        return registry -> {
+            for (String key : routingDataSource.replicaKeys()) {
+                Gauge.builder("socks.datasource.replica.lag", routingDataSource, ds -> ds.lagSeconds(key))
+                        .baseUnit("seconds")
+                        .tag("replica", key)
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,207 @@
+package ru.backspark.SockKeeper.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник соединений, который направляет транзакции только для чтения на реплики, а все остальное —
+ * в основную базу.
+ * <p>
+ * Реплика выбирается по кругу среди тех, чье отставание репликации не больше maxLag. Отставание измеряется в фоне;
+ * реплика, которую не удалось опросить или которая дольше receiverTimeout ничего не получала от основной базы,
+ * считается недоступной: отключенная реплика применила все полученное, но отставание ее неизвестно. Пока ни одна реплика не подходит (в том числе
+ * до первого измерения), чтение идет в основную базу.
+ * <p>
+ * Источник выбирается при получении соединения, поэтому его оборачивают в LazyConnectionDataSourceProxy:
+ * настоящее соединение берется при первом запросе транзакции, когда признак readOnly уже выставлен.
+ */
+@Slf4j
+public class SocksRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    // Основная база не отстает. NULL — отставание неизвестно: у реплики нет потока WAL (приемника нет, он не в
+    // состоянии streaming или давно ничего не получал) или она еще ничего не применила. Иначе реплика, применившая
+    // все полученное, не отстает
+    private static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN r.status IS DISTINCT FROM 'streaming'
+                    OR r.last_msg_receipt_time IS NULL
+                    OR r.last_msg_receipt_time < now() - ? * INTERVAL '1 millisecond' THEN NULL
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint
+            END
+            FROM (SELECT 1) AS one LEFT JOIN pg_stat_wal_receiver r ON TRUE
+            """;
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final long receiverTimeoutMillis;
+    private final Duration checkInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService lagChecker;
+
+    public SocksRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources,
+                                  Duration maxLag, Duration receiverTimeout, Duration checkInterval) {
+        this.maxLagMillis = maxLag.toMillis();
+        this.receiverTimeoutMillis = receiverTimeout.toMillis();
+        this.checkInterval = checkInterval;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+            replicas.add(replica);
+            targets.put(replica.key, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @PostConstruct
+    public void start() {
+        lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "socks-replica-lag");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Чтение направляется на реплики: {}, допустимое отставание {} мс", replicas.size(), maxLagMillis);
+    }
+
+    /**
+     * Останавливает измерение отставания и закрывает пулы реплик. Пул основной базы принадлежит контексту.
+     */
+    @PreDestroy
+    public void stop() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Не удалось закрыть пул {}: {}", replica.key, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        Replica replica = nextAvailable();
+        return replica != null ? replica.key : PRIMARY;
+    }
+
+    /**
+     * Следующая по кругу реплика, принимающая чтение, для соединений в обход транзакций Spring; null — такой нет.
+     */
+    public DataSource availableReplica() {
+        Replica replica = nextAvailable();
+        return replica != null ? replica.dataSource : null;
+    }
+
+    /**
+     * Измеряет отставание каждой реплики и отмечает, какие из них принимают чтение.
+     */
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            long lagMillis = measureLag(replica);
+            boolean available = lagMillis >= 0 && lagMillis <= maxLagMillis;
+            if (available != replica.available) {
+                if (available) {
+                    log.info("Реплика {} принимает чтение, отставание {} мс", replica.key, lagMillis);
+                } else {
+                    log.warn("Реплика {} исключена из чтения, отставание {} мс", replica.key,
+                            lagMillis >= 0 ? lagMillis : "неизвестно");
+                }
+            }
+            replica.lagMillis = lagMillis;
+            replica.available = available;
+        }
+    }
+
+    /**
+     * Отставание реплики в секундах по последнему измерению; NaN — реплика недоступна.
+     */
+    public double lagSeconds(String key) {
+        for (Replica replica : replicas) {
+            if (replica.key.equals(key)) {
+                return replica.lagMillis >= 0 ? replica.lagMillis / 1000.0 : Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    public List<String> replicaKeys() {
+        return replicas.stream().map(replica -> replica.key).toList();
+    }
+
+    private Replica nextAvailable() {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    // -1 — отставание неизвестно: реплика недоступна, не получает WAL или еще ничего не применила
+    private long measureLag(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(LAG_SQL)) {
+            statement.setLong(1, receiverTimeoutMillis);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return -1;
+                }
+                long lagMillis = resultSet.getLong(1);
+                return resultSet.wasNull() ? -1 : lagMillis;
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Не удалось измерить отставание реплики {}: {}", replica.key, e.getMessage());
+            return -1;
+        }
+    }
+
+    private static final class Replica {
+        private final String key;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile long lagMillis = -1;
+
+        private Replica(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.backspark.SockKeeper.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фабрики потоков сервиса.
+ * <p>
+ * Сборка по умолчанию идет на Java 17, поэтому виртуальные потоки создаются через отражение: на Java 21 режим
+ * работает, на более ранних версиях включение режима останавливает запуск с понятной ошибкой.
+ */
+public final class SocksThreads {
+
+    private SocksThreads() {
+    }
+
+    /**
+     * Фабрика потоков с именами namePrefix1, namePrefix2 и т.д. Платформенные потоки создаются демонами,
+     * виртуальные демоны всегда.
+     */
+    public static ThreadFactory threadFactory(String namePrefix, boolean virtual) {
+        if (virtual) {
+            return virtualThreadFactory(namePrefix);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Executor, запускающий каждую задачу в новом виртуальном потоке.
+     */
+    public static Executor virtualThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = virtualThreadFactory(namePrefix);
+        return task -> threadFactory.newThread(task).start();
+    }
+
+    private static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            // Thread.ofVirtual().name(namePrefix, 1).factory()
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IllegalStateException("Виртуальные потоки доступны начиная с Java 21, текущая версия: "
+                    + Runtime.version().feature(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось создать фабрику виртуальных потоков.", e);
+        }
+    }
+}
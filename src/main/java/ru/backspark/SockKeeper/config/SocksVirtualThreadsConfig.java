@@ -0,0 +1,36 @@
+package ru.backspark.SockKeeper.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Режим виртуальных потоков (socks.threads.virtual=true, профиль virtual-threads).
+ * <p>
+ * Spring Boot 2.7 не умеет включать виртуальные потоки сам, поэтому Tomcat получает executor, запускающий каждый
+ * запрос в своем виртуальном потоке, а асинхронные запросы MVC (потоковая выгрузка) — такой же executor вместо
+ * пула applicationTaskExecutor. Блокирующий JDBC больше не ограничен числом потоков, поэтому очередь к базе
+ * ограничивает socks.threads.max-concurrent-requests вместе с размером пула Hikari.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "socks.threads", name = "virtual", havingValue = "true")
+@Slf4j
+public class SocksVirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+        log.info("Запросы обрабатываются в виртуальных потоках");
+        return protocolHandler -> protocolHandler.setExecutor(SocksThreads.virtualThreadPerTaskExecutor("socks-http-"));
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(SocksThreads.virtualThreadPerTaskExecutor("socks-async-"));
+    }
+}
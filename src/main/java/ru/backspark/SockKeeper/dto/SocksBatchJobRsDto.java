@@ -0,0 +1,29 @@
+package ru.backspark.SockKeeper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.backspark.SockKeeper.model.SocksBatchJobStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SocksBatchJobRsDto {
+    private UUID jobId;
+    private String fileName;
+    private SocksBatchJobStatus status;
+    private Long linesRead;
+    private Long distinctKeys;
+    private Long inserted;
+    private Long updated;
+    private Double linesPerSecond;
+    private String error;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,17 @@
+package ru.backspark.SockKeeper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SocksBatchRsDto {
+    private Long linesRead;
+    private Long distinctKeys;
+    private Long inserted;
+    private Long updated;
+}
@@ -0,0 +1,28 @@
+package ru.backspark.SockKeeper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.backspark.SockKeeper.model.SocksMovementStatus;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SocksMovementLineRsDto {
+    private Integer line;
+    private String type;
+    private String color;
+    private Integer cottonPart;
+    private Integer quantity;
+    private SocksMovementStatus status;
+    /**
+     * Количество пары после применения списка; только для примененного списка.
+     */
+    private Integer remaining;
+    /**
+     * Сколько носков пары было доступно для отпуска с учетом приходов списка; только для отклоненного отпуска.
+     */
+    private Integer available;
+}
@@ -0,0 +1,17 @@
+package ru.backspark.SockKeeper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SocksMovementRqDto {
+    private String type;
+    private String color;
+    private Integer cottonPart;
+    private Integer quantity;
+}
@@ -0,0 +1,17 @@
+package ru.backspark.SockKeeper.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SocksMovementsRsDto {
+    private Boolean applied;
+    private List<SocksMovementLineRsDto> lines;
+}
@@ -5,12 +5,16 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.backspark.SockKeeper.error.exception.BatchJobNotFoundException;
+import ru.backspark.SockKeeper.error.exception.BatchJobRejectedException;
 import ru.backspark.SockKeeper.error.exception.FileProcessingException;
 import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
 import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
 import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
 
 @RestControllerAdvice(assignableTypes = {
+        BatchJobNotFoundException.class,
+        BatchJobRejectedException.class,
         FileProcessingException.class,
         InsufficientSocksInWarehouseException.class,
         InvalidDataFormatException.class,
@@ -42,4 +46,16 @@ public class ErrorHandler {
         return new ErrorResponse(e.getMessage());
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ErrorResponse handlerBatchJobNotFoundException(final BatchJobNotFoundException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handlerBatchJobRejectedException(final BatchJobRejectedException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
 }
@@ -0,0 +1,37 @@
+package ru.backspark.SockKeeper.error;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.backspark.SockKeeper.api.controller.SocksReactiveController;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
+
+/**
+ * Коды ответов неблокирующего API; совпадают с {@link ErrorHandler}.
+ */
+@RestControllerAdvice(assignableTypes = SocksReactiveController.class)
+@Profile("reactive")
+public class SocksReactiveErrorHandler {
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public ErrorResponse handlerSocksNotFoundInWarehouse(final SocksNotFoundInWarehouse e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handlerInvalidDataFormatException(final InvalidDataFormatException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handlerInsufficientSocksInWarehouseException(final InsufficientSocksInWarehouseException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+}
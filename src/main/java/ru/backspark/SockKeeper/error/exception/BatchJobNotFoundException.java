@@ -0,0 +1,7 @@
+package ru.backspark.SockKeeper.error.exception;
+
+public class BatchJobNotFoundException extends RuntimeException {
+    public BatchJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.backspark.SockKeeper.error.exception;
+
+public class BatchJobRejectedException extends RuntimeException {
+    public BatchJobRejectedException(String message) {
+        super(message);
+    }
+}
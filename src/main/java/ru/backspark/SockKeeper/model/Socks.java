@@ -3,20 +3,35 @@ package ru.backspark.SockKeeper.model;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import ru.backspark.SockKeeper.repository.SocksColorConverter;
+import ru.backspark.SockKeeper.repository.SocksColorListener;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.FetchType;
+import javax.persistence.ForeignKey;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.PositiveOrZero;
 
 @Entity
-@Table(name = "socks")
+@Table(name = "socks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_socks_color_cotton_part", columnNames = {"color_id", "cotton_part"}),
+        indexes = @Index(name = "idx_socks_cotton_part", columnList = "cotton_part"))
+@EntityListeners(SocksColorListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,9 +42,24 @@ public class Socks {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false)
+    /**
+     * Название цвета; в таблице хранится идентификатор из справочника colors.
+     */
+    @Column(name = "color_id", nullable = false)
+    @Convert(converter = SocksColorConverter.class)
     private String color;
 
+    /**
+     * Та же запись справочника как связь: нужна только для сортировки по названию цвета в запросах,
+     * поэтому не записывается и не загружается без обращения.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "color_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_socks_color"))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private SocksColor colorEntry;
+
     @Column(name = "cotton_part", nullable = false)
     @Min(0)
     @Max(100)
@@ -0,0 +1,72 @@
+package ru.backspark.SockKeeper.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Суммы количеств загружаемой партии по парам (цвет, процент хлопка).
+ * Процент хлопка принимает только 101 значение, поэтому для каждого цвета хранится плотный массив long[101]
+ * без упаковки чисел в объекты.
+ */
+public class SocksBatchAggregate {
+
+    public static final int COTTON_PART_VALUES = 101;
+
+    private final Map<String, long[]> quantitiesByColor = new HashMap<>();
+    private int distinctKeys;
+
+    /**
+     * Добавляет положительное количество к паре и возвращает накопленную по ней сумму.
+     */
+    public long add(String color, int cottonPart, long quantity) {
+        long[] quantities = quantitiesByColor.computeIfAbsent(color, c -> new long[COTTON_PART_VALUES]);
+        if (quantities[cottonPart] == 0) {
+            distinctKeys++;
+        }
+        return quantities[cottonPart] += quantity;
+    }
+
+    /**
+     * Переносит все суммы другого агрегата в текущий.
+     */
+    public void addAll(SocksBatchAggregate other) {
+        other.quantitiesByColor.forEach((color, quantities) -> {
+            for (int cottonPart = 0; cottonPart < COTTON_PART_VALUES; cottonPart++) {
+                if (quantities[cottonPart] != 0) {
+                    add(color, cottonPart, quantities[cottonPart]);
+                }
+            }
+        });
+    }
+
+    public int distinctKeys() {
+        return distinctKeys;
+    }
+
+    public boolean isEmpty() {
+        return distinctKeys == 0;
+    }
+
+    public void clear() {
+        quantitiesByColor.clear();
+        distinctKeys = 0;
+    }
+
+    /**
+     * Обходит непустые пары в порядке цветов карты и возрастания процента хлопка.
+     */
+    public void forEach(Visitor visitor) {
+        quantitiesByColor.forEach((color, quantities) -> {
+            for (int cottonPart = 0; cottonPart < COTTON_PART_VALUES; cottonPart++) {
+                if (quantities[cottonPart] != 0) {
+                    visitor.visit(color, cottonPart, quantities[cottonPart]);
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(String color, int cottonPart, long quantity);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.backspark.SockKeeper.model;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Асинхронная задача загрузки партии из файла, сохраненного на диск.
+ */
+@Getter
+public class SocksBatchJob {
+
+    private final UUID id = UUID.randomUUID();
+    private final String fileName;
+    private final Path spoolFile;
+    private final SocksBatchProgress progress = new SocksBatchProgress();
+    private final Instant createdAt = Instant.now();
+
+    private volatile SocksBatchJobStatus status = SocksBatchJobStatus.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public SocksBatchJob(String fileName, Path spoolFile) {
+        this.fileName = fileName;
+        this.spoolFile = spoolFile;
+    }
+
+    public void start() {
+        startedAt = Instant.now();
+        status = SocksBatchJobStatus.RUNNING;
+    }
+
+    public void complete() {
+        finishedAt = Instant.now();
+        status = SocksBatchJobStatus.COMPLETED;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = SocksBatchJobStatus.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == SocksBatchJobStatus.COMPLETED || status == SocksBatchJobStatus.FAILED;
+    }
+}
@@ -0,0 +1,8 @@
+package ru.backspark.SockKeeper.model;
+
+public enum SocksBatchJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,62 @@
+package ru.backspark.SockKeeper.model;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики хода загрузки партии. Пишутся потоком загрузки и читаются конкурентно при опросе статуса задачи.
+ * <p>
+ * Партия пишется порциями, и одна пара (цвет, процент хлопка) может попасть в несколько порций. Счетчики пар
+ * относятся ко всей партии: пара считается один раз, а созданная одной порцией и увеличенная следующей —
+ * только созданной.
+ */
+public class SocksBatchProgress {
+
+    private final AtomicLong linesRead = new AtomicLong();
+    private final AtomicLong distinctKeys = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    // Пары, уже записанные предыдущими порциями; меняется только потоком загрузки
+    private final Map<String, BitSet> writtenKeys = new HashMap<>();
+
+    public void addLinesRead(long lines) {
+        linesRead.addAndGet(lines);
+    }
+
+    /**
+     * Учитывает записанную порцию: result — итог ее записи, порция — пары, которые в нее вошли.
+     */
+    public void addWritten(SocksBatchAggregate aggregate, SocksUpsertResult result) {
+        long[] newKeys = new long[1];
+        aggregate.forEach((color, cottonPart, quantity) -> {
+            BitSet cottonParts = writtenKeys.computeIfAbsent(color, c -> new BitSet(SocksBatchAggregate.COTTON_PART_VALUES));
+            if (!cottonParts.get(cottonPart)) {
+                cottonParts.set(cottonPart);
+                newKeys[0]++;
+            }
+        });
+        // Увеличенные считаются от числа пар: пара, созданная предыдущей порцией, увеличенной не становится
+        inserted.addAndGet(result.inserted());
+        distinctKeys.addAndGet(newKeys[0]);
+    }
+
+    public long getLinesRead() {
+        return linesRead.get();
+    }
+
+    public long getDistinctKeys() {
+        return distinctKeys.get();
+    }
+
+    public long getInserted() {
+        return inserted.get();
+    }
+
+    /**
+     * Сколько существовавших до загрузки пар увеличено.
+     */
+    public long getUpdated() {
+        return Math.max(0, distinctKeys.get() - inserted.get());
+    }
+}
@@ -0,0 +1,32 @@
+package ru.backspark.SockKeeper.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Запись справочника цветов. Записи только добавляются, поэтому идентификатор цвета не меняется.
+ */
+@Entity
+@Table(name = "colors",
+        uniqueConstraints = @UniqueConstraint(name = "uk_colors_name", columnNames = "name"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SocksColor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false, length = 50)
+    private String name;
+}
@@ -0,0 +1,50 @@
+package ru.backspark.SockKeeper.model;
+
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+/**
+ * Включающий диапазон процента хлопка, к которому сводятся фильтры и операция сравнения подсчета.
+ */
+public record SocksCottonPartRange(int min, int max) {
+
+    public static SocksCottonPartRange resolve(Integer minCottonPart, Integer maxCottonPart, String operation,
+                                               Integer cottonPart, Integer cottonPartTo) {
+        int min = minCottonPart != null ? minCottonPart : 0;
+        int max = maxCottonPart != null ? maxCottonPart : SocksBatchAggregate.COTTON_PART_VALUES - 1;
+        SocksCountOperation countOperation = SocksCountOperation.fromParam(operation);
+        if (countOperation == null) {
+            return new SocksCottonPartRange(min, max);
+        }
+        if (cottonPart == null) {
+            throw new InvalidDataFormatException("Для параметра operation необходимо указать cottonPart.");
+        }
+        validate(cottonPart);
+        switch (countOperation) {
+            case MORE_THAN -> min = Math.max(min, cottonPart + 1);
+            case LESS_THAN -> max = Math.min(max, cottonPart - 1);
+            case EQUAL -> {
+                min = Math.max(min, cottonPart);
+                max = Math.min(max, cottonPart);
+            }
+            case BETWEEN -> {
+                if (cottonPartTo == null) {
+                    throw new InvalidDataFormatException("Для операции between необходимо указать cottonPartTo.");
+                }
+                validate(cottonPartTo);
+                min = Math.max(min, cottonPart);
+                max = Math.min(max, cottonPartTo);
+            }
+        }
+        return new SocksCottonPartRange(min, max);
+    }
+
+    public boolean isEmpty() {
+        return min > max;
+    }
+
+    private static void validate(int cottonPart) {
+        if (cottonPart < 0 || cottonPart > 100) {
+            throw new InvalidDataFormatException("Процент хлопка должен быть в диапазоне 0-100.");
+        }
+    }
+}
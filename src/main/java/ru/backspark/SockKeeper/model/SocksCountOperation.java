@@ -0,0 +1,26 @@
+package ru.backspark.SockKeeper.model;
+
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+/**
+ * Операция сравнения процента хлопка при подсчете количества носков.
+ */
+public enum SocksCountOperation {
+    MORE_THAN,
+    LESS_THAN,
+    EQUAL,
+    BETWEEN;
+
+    public static SocksCountOperation fromParam(String operation) {
+        if (operation == null || operation.isBlank()) {
+            return null;
+        }
+        return switch (operation) {
+            case "moreThan" -> MORE_THAN;
+            case "lessThan" -> LESS_THAN;
+            case "equal" -> EQUAL;
+            case "between" -> BETWEEN;
+            default -> throw new InvalidDataFormatException("Недопустимое значение для параметра operation. Доступные значения: moreThan, lessThan, equal, between.");
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package ru.backspark.SockKeeper.model;
+
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция последней выданной записи. Для клиента это непрозрачная строка: порядок сортировки
+ * и значения ключа упакованы в base64url.
+ */
+public record SocksCursor(SocksSortOrder order, String color, int cottonPart, long id) {
+
+    private static final String SEPARATOR = "\n";
+
+    public static SocksCursor after(SocksSortOrder order, Socks socks) {
+        return new SocksCursor(order, socks.getColor(), socks.getCottonPart(), socks.getId());
+    }
+
+    public String encode() {
+        // Цвет последним: он может содержать любые символы, кроме перевода строки
+        String raw = order.name() + SEPARATOR + id + SEPARATOR + cottonPart + SEPARATOR + color;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SocksCursor decode(String cursor, SocksSortOrder expectedOrder) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 4);
+            SocksSortOrder order = SocksSortOrder.valueOf(parts[0]);
+            if (order != expectedOrder) {
+                throw new InvalidDataFormatException("Курсор получен для другого порядка сортировки.");
+            }
+            return new SocksCursor(order, parts[3], Integer.parseInt(parts[2]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidDataFormatException("Некорректное значение параметра cursor.");
+        }
+    }
+}
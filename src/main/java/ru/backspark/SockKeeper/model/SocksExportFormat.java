@@ -0,0 +1,35 @@
+package ru.backspark.SockKeeper.model;
+
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+public enum SocksExportFormat {
+    /**
+     * Один JSON-объект на строку.
+     */
+    NDJSON("application/x-ndjson"),
+    /**
+     * Строки "цвет,процент хлопка,количество" — тот же формат, что принимает загрузка партий.
+     */
+    CSV("text/csv");
+
+    private final String contentType;
+
+    SocksExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static SocksExportFormat fromParam(String format) {
+        if (format == null || format.isBlank()) {
+            return NDJSON;
+        }
+        return switch (format) {
+            case "ndjson" -> NDJSON;
+            case "csv" -> CSV;
+            default -> throw new InvalidDataFormatException("Недопустимое значение для параметра format. Доступные значения: ndjson, csv.");
+        };
+    }
+}
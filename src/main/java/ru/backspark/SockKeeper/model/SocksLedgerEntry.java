@@ -0,0 +1,47 @@
+package ru.backspark.SockKeeper.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Запись журнала движений: изменение количества пары на delta. Журнал только дополняется;
+ * записи пишет триггер на socks (миграция v0.0.5), читает {@link ru.backspark.SockKeeper.repository.SocksLedgerRepository}.
+ * <p>
+ * В базе таблица секционирована по created_at помесячно (миграция v0.0.4), поэтому первичный ключ включает время.
+ */
+@Entity
+@Table(name = "socks_movements",
+        indexes = @Index(name = "idx_socks_movements_created_at", columnList = "created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SocksLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "color_id", nullable = false)
+    private Integer colorId;
+
+    @Column(name = "cotton_part", nullable = false)
+    private Integer cottonPart;
+
+    @Column(nullable = false)
+    private Long delta;
+
+    @Column(name = "created_at", nullable = false, columnDefinition = "timestamp with time zone default clock_timestamp()")
+    private Instant createdAt;
+}
@@ -0,0 +1,23 @@
+package ru.backspark.SockKeeper.model;
+
+/**
+ * Результат строки списка движений.
+ */
+public enum SocksMovementStatus {
+    /**
+     * Строка применена вместе со всем списком.
+     */
+    APPLIED,
+    /**
+     * Строка корректна, но список не применен из-за других строк.
+     */
+    NOT_APPLIED,
+    /**
+     * Отпуск отклонен: носков пары не хватает даже с учетом приходов из того же списка.
+     */
+    INSUFFICIENT,
+    /**
+     * Отпуск отклонен: пары нет на складе и в приходах списка.
+     */
+    NOT_FOUND
+}
@@ -0,0 +1,22 @@
+package ru.backspark.SockKeeper.model;
+
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+/**
+ * Вид строки списка движений: приход или отпуск.
+ */
+public enum SocksMovementType {
+    INCOME,
+    OUTCOME;
+
+    public static SocksMovementType fromParam(String type) {
+        if (type == null || type.isBlank()) {
+            throw new InvalidDataFormatException("Не указан вид движения. Доступные значения: income, outcome.");
+        }
+        return switch (type) {
+            case "income" -> INCOME;
+            case "outcome" -> OUTCOME;
+            default -> throw new InvalidDataFormatException("Недопустимое значение для параметра type. Доступные значения: income, outcome.");
+        };
+    }
+}
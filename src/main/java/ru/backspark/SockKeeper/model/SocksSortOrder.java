@@ -0,0 +1,51 @@
+package ru.backspark.SockKeeper.model;
+
+import org.springframework.data.domain.Sort;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+import java.util.List;
+
+/**
+ * Порядок выдачи носков. Каждый порядок заканчивается идентификатором, поэтому он полный
+ * и подходит для постраничной выдачи по ключу (keyset). Цвет упорядочивается по названию из справочника,
+ * а не по идентификатору.
+ */
+public enum SocksSortOrder {
+    ID(List.of("id")),
+    COLOR(List.of("color", "cottonPart", "id")),
+    COTTON_PART(List.of("cottonPart", "color", "id"));
+
+    private final List<String> keys;
+    private final Sort sort;
+
+    SocksSortOrder(List<String> keys) {
+        this.keys = keys;
+        this.sort = Sort.by(keys.stream().map(SocksSortOrder::property).toArray(String[]::new));
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * Свойство сущности, по которому сортируется ключ.
+     */
+    public static String property(String key) {
+        return "color".equals(key) ? "colorEntry.name" : key;
+    }
+
+    public static SocksSortOrder fromParam(String sortBy) {
+        if (sortBy == null || sortBy.isBlank()) {
+            return ID;
+        }
+        return switch (sortBy) {
+            case "color" -> COLOR;
+            case "cottonPart" -> COTTON_PART;
+            default -> throw new InvalidDataFormatException("Недопустимое значение для параметра sortBy. Доступные значения: color, cottonPart.");
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package ru.backspark.SockKeeper.model;
+
+/**
+ * Итог группового добавления: сколько записей создано и сколько существующих увеличено.
+ */
+public record SocksUpsertResult(int inserted, int updated) {
+}
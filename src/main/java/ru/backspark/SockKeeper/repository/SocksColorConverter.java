@@ -0,0 +1,31 @@
+package ru.backspark.SockKeeper.repository;
+
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Переводит название цвета в идентификатор справочника и обратно. Экземпляр создает Spring,
+ * поэтому справочник передается в конструктор.
+ * <p>
+ * Через конвертер проходят и параметры запросов, поэтому неизвестный цвет не создается, а получает
+ * {@link SocksColorDictionary#UNKNOWN_ID}: условие по нему ничего не находит. Цвет новой или измененной записи
+ * заранее добавляет в справочник {@link SocksColorListener}.
+ */
+@Converter
+@RequiredArgsConstructor
+public class SocksColorConverter implements AttributeConverter<String, Integer> {
+
+    private final SocksColorDictionary colorDictionary;
+
+    @Override
+    public Integer convertToDatabaseColumn(String color) {
+        return color != null ? colorDictionary.idOf(color) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id != null ? colorDictionary.nameOf(id) : null;
+    }
+}
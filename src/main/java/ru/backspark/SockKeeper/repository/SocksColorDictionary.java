@@ -0,0 +1,322 @@
+package ru.backspark.SockKeeper.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.backspark.SockKeeper.config.SocksProperties;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Справочник цветов в памяти: название ↔ идентификатор из таблицы colors.
+ * <p>
+ * Таблица socks хранит цвет идентификатором color_id, а приложение принимает и отдает названия. Справочник целиком
+ * читается при старте; цвета из него не удаляются, поэтому прочитанная пара не устаревает. Цвет, которого нет
+ * в памяти (создан другим экземпляром приложения или напрямую в базе), дочитывается из базы при первом обращении.
+ * <p>
+ * Отсутствие цвета тоже запоминается, чтобы повторные запросы на чтение с неизвестным цветом не шли в базу.
+ * Добавление цвета через справочник забывает его отсутствие сразу, уведомление другого экземпляра об изменении
+ * пары — при его получении; цвет, созданный напрямую в базе, становится виден не позже чем через unknownTtl.
+ * Изменения остатков запомненному отсутствию не доверяют: в транзакции на запись цвет, которого нет в памяти,
+ * всегда ищется в базе.
+ */
+@Component
+@Slf4j
+public class SocksColorDictionary {
+
+    /**
+     * Идентификатор цвета, которого нет в справочнике: не совпадает ни с одной записью socks.
+     */
+    public static final int UNKNOWN_ID = -1;
+
+    private static final String SELECT_ALL_SQL = "SELECT id, name FROM colors";
+
+    private static final String SELECT_BY_ID_SQL = "SELECT id, name FROM colors WHERE id = ?";
+
+    private static final String SELECT_BY_NAMES_SQL = "SELECT id, name FROM colors WHERE name = ANY(?::varchar[])";
+
+    // Названия приходят отсортированными: одновременные транзакции занимают ключи уникального индекса в одном порядке
+    private static final String INSERT_SQL = """
+            INSERT INTO colors (name)
+            SELECT unnest(?::varchar[])
+            ON CONFLICT (name) DO NOTHING
+            RETURNING id, name
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> unknown;
+
+    public SocksColorDictionary(JdbcTemplate jdbcTemplate, SocksProperties socksProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        SocksProperties.Colors properties = socksProperties.getColors();
+        this.unknown = Caffeine.newBuilder()
+                .maximumSize(properties.getUnknownMaxSize())
+                .expireAfterWrite(properties.getUnknownTtl())
+                .build();
+    }
+
+    /**
+     * Читает справочник целиком. Вызывается после старта, когда схема уже создана миграциями.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        jdbcTemplate.query(SELECT_ALL_SQL, (RowCallbackHandler) this::remember);
+        log.info("Загружен справочник цветов: {}", ids.size());
+    }
+
+    /**
+     * Идентификатор цвета или {@link #UNKNOWN_ID}, если такого цвета нет. Цвет не создается:
+     * метод используется для условий запросов.
+     */
+    public int idOf(String color) {
+        return idOf(color, trustsUnknown());
+    }
+
+    /**
+     * Как {@link #idOf(String)}, но без запомненного отсутствия: для изменений остатков вне транзакции JDBC.
+     */
+    public int currentIdOf(String color) {
+        return idOf(color, false);
+    }
+
+    /**
+     * Забывает запомненное отсутствие цвета: другой экземпляр сообщил об изменении пары с этим цветом,
+     * и цвет мог быть только что создан.
+     */
+    public void forgetUnknown(String color) {
+        unknown.invalidate(color);
+    }
+
+    private int idOf(String color, boolean trustUnknown) {
+        Integer id = knownId(color);
+        if (id == null && (!trustUnknown || unknown.getIfPresent(color) == null)) {
+            lookup(new String[]{color});
+            id = knownId(color);
+            if (id == null) {
+                unknown.put(color, Boolean.TRUE);
+            }
+        }
+        return id != null ? id : UNKNOWN_ID;
+    }
+
+    /**
+     * Идентификаторы цветов для условий запросов, параллельные colors. Отсутствующим цветам соответствует
+     * {@link #UNKNOWN_ID}.
+     */
+    public Integer[] idsOf(String[] colors) {
+        Set<String> missing = missing(colors, new LinkedHashSet<>());
+        if (trustsUnknown()) {
+            missing.removeIf(color -> unknown.getIfPresent(color) != null);
+        }
+        if (!missing.isEmpty()) {
+            lookup(missing.toArray(new String[0]));
+            for (String color : missing) {
+                if (knownId(color) == null) {
+                    unknown.put(color, Boolean.TRUE);
+                }
+            }
+        }
+        Integer[] result = new Integer[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            Integer id = knownId(colors[i]);
+            result[i] = id != null ? id : UNKNOWN_ID;
+        }
+        return result;
+    }
+
+    /**
+     * Идентификатор цвета из памяти без обращения к базе; null, если цвет еще не прочитан.
+     */
+    public Integer cachedId(String color) {
+        return knownId(color);
+    }
+
+    /**
+     * Название цвета по идентификатору из записи socks.
+     */
+    public String nameOf(int id) {
+        String name = names.get(id);
+        if (name == null) {
+            name = pendingName(id);
+        }
+        if (name == null) {
+            jdbcTemplate.query(SELECT_BY_ID_SQL, (RowCallbackHandler) this::remember, id);
+            name = names.get(id);
+            if (name == null) {
+                throw new IllegalStateException("Цвет с идентификатором " + id + " не найден в справочнике.");
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Идентификатор цвета; отсутствующий цвет добавляется в справочник.
+     */
+    public int register(String color) {
+        return register(new String[]{color})[0];
+    }
+
+    /**
+     * Идентификаторы цветов, параллельные colors; отсутствующие цвета добавляются в справочник.
+     * <p>
+     * Новые цвета записываются в текущей транзакции, на ее же соединении: второе соединение из пула на время
+     * транзакции не нужно. Созданный цвет виден остальным после фиксации и пропадает при откате вместе с записями,
+     * которые на него ссылаются. Одновременная транзакция с тем же новым цветом ждет фиксации первой и получает
+     * ее идентификатор. Запомненное отсутствие цвета здесь не учитывается: цвет ищется в базе и при необходимости
+     * создается.
+     */
+    public Integer[] register(String[] colors) {
+        Set<String> missing = missing(colors, new TreeSet<>());
+        if (!missing.isEmpty()) {
+            insert(missing.toArray(new String[0]));
+        }
+        Integer[] result = new Integer[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            result[i] = knownId(colors[i]);
+        }
+        return result;
+    }
+
+    private Set<String> missing(String[] colors, Set<String> missing) {
+        for (String color : colors) {
+            if (knownId(color) == null) {
+                missing.add(color);
+            }
+        }
+        return missing;
+    }
+
+    private void lookup(String[] colors) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_BY_NAMES_SQL);
+            ps.setArray(1, con.createArrayOf("varchar", colors));
+            return ps;
+        }, (RowCallbackHandler) this::remember);
+    }
+
+    private void insert(String[] colors) {
+        Map<String, Integer> created = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_SQL);
+            ps.setArray(1, con.createArrayOf("varchar", colors));
+            return ps;
+        }, (RowCallbackHandler) rs -> created.put(rs.getString("name"), rs.getInt("id")));
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            pendingColors().putAll(created);
+        } else {
+            created.forEach(this::remember);
+        }
+        // Отдельный запрос видит и цвета, одновременно вставленные другими: ON CONFLICT дождался их фиксации
+        if (created.size() < colors.length) {
+            lookup(colors);
+        }
+        log.debug("Добавлены цвета в справочник: {}", created.size());
+    }
+
+    /**
+     * Запомненному отсутствию доверяют только чтения: вне транзакции и в транзакции только для чтения.
+     */
+    private static boolean trustsUnknown() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private Integer knownId(String color) {
+        Integer id = ids.get(color);
+        if (id == null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            Map<String, Integer> pending = currentPendingColors();
+            if (pending != null) {
+                id = pending.get(color);
+            }
+        }
+        return id;
+    }
+
+    private String pendingName(int id) {
+        Map<String, Integer> pending = TransactionSynchronizationManager.isActualTransactionActive()
+                ? currentPendingColors() : null;
+        if (pending != null) {
+            for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                if (entry.getValue() == id) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> currentPendingColors() {
+        return (Map<String, Integer>) TransactionSynchronizationManager.getResource(this);
+    }
+
+    /**
+     * Цвета, созданные текущей транзакцией: до фиксации они видны только ей, поэтому в общий справочник
+     * попадают после фиксации.
+     */
+    private Map<String, Integer> pendingColors() {
+        Map<String, Integer> pending = currentPendingColors();
+        if (pending == null) {
+            Map<String, Integer> created = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                // Вложенная транзакция REQUIRES_NEW не видит незафиксированных цветов внешней
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(SocksColorDictionary.this);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(SocksColorDictionary.this, created);
+                }
+
+                @Override
+                public void afterCommit() {
+                    created.forEach(SocksColorDictionary.this::remember);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SocksColorDictionary.this);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+
+    private void remember(ResultSet rs) throws SQLException {
+        String name = rs.getString("name");
+        Map<String, Integer> pending = TransactionSynchronizationManager.isActualTransactionActive()
+                ? currentPendingColors() : null;
+        // Свой еще не зафиксированный цвет транзакция видит в базе, но запоминать его рано
+        if (pending == null || !pending.containsKey(name)) {
+            remember(name, rs.getInt("id"));
+        }
+    }
+
+    private void remember(String name, int id) {
+        names.put(id, name);
+        ids.put(name, id);
+        unknown.invalidate(name);
+    }
+}
@@ -0,0 +1,25 @@
+package ru.backspark.SockKeeper.repository;
+
+import lombok.RequiredArgsConstructor;
+import ru.backspark.SockKeeper.model.Socks;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Добавляет цвет записи в справочник перед вставкой или обновлением, чтобы {@link SocksColorConverter}
+ * записал существующий идентификатор.
+ */
+@RequiredArgsConstructor
+public class SocksColorListener {
+
+    private final SocksColorDictionary colorDictionary;
+
+    @PrePersist
+    @PreUpdate
+    public void registerColor(Socks socks) {
+        if (socks.getColor() != null) {
+            colorDictionary.register(socks.getColor());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.backspark.SockKeeper.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Журнал движений socks_movements: каждое изменение количества пары добавляется строкой, строки не меняются.
+ * <p>
+ * Строки пишет отложенный триггер на socks (миграция v0.0.5) при фиксации транзакции, поэтому в журнал попадают
+ * изменения всех писателей, а время строки — момент перед фиксацией.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SocksLedgerRepository {
+
+    private static final String IS_PARTITIONED_SQL = """
+            SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('socks_movements'))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SocksColorDictionary colorDictionary;
+
+    /**
+     * Количество носков с процентом хлопка в диапазоне [minCottonPart, maxCottonPart] на момент asOf;
+     * color == null — любого цвета.
+     * <p>
+     * Остаток в socks и журнал фиксируются вместе, поэтому прошлое количество — это текущее за вычетом
+     * движений после asOf. Читается только хвост журнала: старые секции отсекаются по created_at. Оба подзапроса
+     * выполняются одним запросом и видят один снимок данных.
+     */
+    public long sumQuantityAsOf(String color, int minCottonPart, int maxCottonPart, Instant asOf) {
+        String colorCondition = color != null ? " AND color_id = ?" : "";
+        String sql = "SELECT"
+                + " (SELECT COALESCE(SUM(quantity), 0) FROM socks"
+                + " WHERE cotton_part BETWEEN ? AND ?" + colorCondition + ")"
+                + " - (SELECT COALESCE(SUM(delta), 0) FROM socks_movements"
+                + " WHERE created_at > ? AND cotton_part BETWEEN ? AND ?" + colorCondition + ")";
+
+        List<Object> args = new ArrayList<>();
+        int colorId = color != null ? colorDictionary.idOf(color) : SocksColorDictionary.UNKNOWN_ID;
+        args.add(minCottonPart);
+        args.add(maxCottonPart);
+        if (color != null) {
+            args.add(colorId);
+        }
+        args.add(Timestamp.from(asOf));
+        args.add(minCottonPart);
+        args.add(maxCottonPart);
+        if (color != null) {
+            args.add(colorId);
+        }
+        Long result = jdbcTemplate.queryForObject(sql, Long.class, args.toArray());
+        return result != null ? result : 0;
+    }
+
+    /**
+     * Секционирована ли таблица журнала. Схема тестов создается Hibernate без секций.
+     */
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Boolean.class));
+    }
+
+    /**
+     * Создает секцию журнала за месяц month (границы по UTC), если ее еще нет.
+     */
+    public void createPartition(YearMonth month) {
+        Instant from = month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        Instant to = month.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        // Имя и границы собираются из чисел, поэтому подстановка в текст запроса безопасна
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS socks_movements_p%04d_%02d PARTITION OF socks_movements"
+                        + " FOR VALUES FROM ('%s') TO ('%s')",
+                month.getYear(), month.getMonthValue(), from, to));
+    }
+}
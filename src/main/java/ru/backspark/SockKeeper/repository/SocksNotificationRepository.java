@@ -0,0 +1,62 @@
+package ru.backspark.SockKeeper.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+
+/**
+ * Уведомления PostgreSQL (NOTIFY) об изменении остатков для других экземпляров приложения.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SocksNotificationRepository {
+
+    // Пары делятся на уведомления по MAX_PAIRS_PER_NOTIFICATION, и каждое отправляется своим pg_notify в одном запросе.
+    // Полезная нагрузка — {"instance": экземпляр-отправитель, "pairs": [[цвет, процент хлопка, количество], ...]}
+    // с количествами, которые видит транзакция; пара без записи получает 0
+    private static final String NOTIFY_SQL = """
+            SELECT pg_notify(?, json_build_object('instance', ?::text,
+                    'pairs', json_agg(json_build_array(c.name, k.cotton_part, COALESCE(s.quantity, 0))))::text)
+            FROM unnest(?::int[], ?::int[]) WITH ORDINALITY AS k(color_id, cotton_part, n)
+            JOIN colors c ON c.id = k.color_id
+            LEFT JOIN socks s ON s.color_id = k.color_id AND s.cotton_part = k.cotton_part
+            GROUP BY (k.n - 1) / ?
+            """;
+
+    // Полезная нагрузка уведомления ограничена 8000 байт: столько пар помещается даже с длинными названиями цветов
+    private static final int MAX_PAIRS_PER_NOTIFICATION = 25;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final SocksColorDictionary colorDictionary;
+
+    /**
+     * Отправляет в канал channel текущие количества перечисленных пар от имени экземпляра instanceId одним запросом.
+     * Массивы параллельны.
+     * <p>
+     * Вызывается внутри изменяющей транзакции: PostgreSQL доставляет уведомления только после ее фиксации
+     * и в порядке фиксации транзакций. Измененные строки заблокированы транзакцией, поэтому прочитанные
+     * количества совпадают с зафиксированными. Вне транзакции уведомление уходит сразу с уже зафиксированными
+     * количествами; более позднее изменение пары пришлет свое уведомление.
+     */
+    public void notifyQuantities(String channel, String instanceId, String[] colors, Integer[] cottonParts) {
+        // Изменения сущностей должны попасть в базу до чтения количеств
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+        }
+        Integer[] colorIds = colorDictionary.idsOf(colors);
+        jdbcTemplate.execute(con -> {
+            PreparedStatement ps = con.prepareStatement(NOTIFY_SQL);
+            ps.setString(1, channel);
+            ps.setString(2, instanceId);
+            ps.setArray(3, con.createArrayOf("int4", colorIds));
+            ps.setArray(4, con.createArrayOf("int4", cottonParts));
+            ps.setInt(5, MAX_PAIRS_PER_NOTIFICATION);
+            return ps;
+        }, (PreparedStatement ps) -> ps.execute());
+    }
+}
@@ -2,14 +2,40 @@ package ru.backspark.SockKeeper.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.backspark.SockKeeper.model.Socks;
 
 import java.util.Optional;
 
 @Repository
-public interface SocksRepository extends JpaRepository<Socks, Long>, JpaSpecificationExecutor<Socks> {
+public interface SocksRepository extends JpaRepository<Socks, Long>, JpaSpecificationExecutor<Socks>, SocksRepositoryCustom {
 
     Optional<Socks> findByColorAndCottonPart(String color, Integer cottonPart);
 
+    boolean existsByColorAndCottonPart(String color, Integer cottonPart);
+
+    /**
+     * Суммарное количество носков цвета color с процентом хлопка в диапазоне [minCottonPart, maxCottonPart].
+     * Считается в базе по индексу uk_socks_color_cotton_part без загрузки записей; цвет сравнивается по идентификатору.
+     */
+    @Query("""
+            SELECT COALESCE(SUM(s.quantity), 0) FROM Socks s
+            WHERE s.color = :color AND s.cottonPart BETWEEN :minCottonPart AND :maxCottonPart
+            """)
+    long sumQuantityByColor(@Param("color") String color,
+                            @Param("minCottonPart") Integer minCottonPart,
+                            @Param("maxCottonPart") Integer maxCottonPart);
+
+    /**
+     * Суммарное количество носков любого цвета с процентом хлопка в диапазоне [minCottonPart, maxCottonPart].
+     */
+    @Query("""
+            SELECT COALESCE(SUM(s.quantity), 0) FROM Socks s
+            WHERE s.cottonPart BETWEEN :minCottonPart AND :maxCottonPart
+            """)
+    long sumQuantity(@Param("minCottonPart") Integer minCottonPart,
+                     @Param("maxCottonPart") Integer maxCottonPart);
+
 }
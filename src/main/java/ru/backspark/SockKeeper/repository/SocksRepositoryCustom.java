@@ -0,0 +1,75 @@
+package ru.backspark.SockKeeper.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.model.SocksUpsertResult;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface SocksRepositoryCustom {
+
+    /**
+     * Атомарно увеличивает количество носков или создает новую запись одним запросом.
+     * Опирается на уникальное ограничение uk_socks_color_cotton_part.
+     */
+    int upsertIncome(String color, Integer cottonPart, Integer quantity);
+
+    /**
+     * Уменьшает количество носков только при достаточном остатке.
+     * Возвращает число измененных строк: 0 означает, что записи нет или остатка не хватает.
+     */
+    int decrementIfSufficient(String color, Integer cottonPart, Integer quantity);
+
+    /**
+     * Добавляет суммы агрегата одним set-based запросом: по одной строке на каждую пару (цвет, процент хлопка).
+     */
+    SocksUpsertResult upsertIncomeBatch(SocksBatchAggregate aggregate);
+
+    /**
+     * Возвращает не более limit записей, подходящих под спецификацию, в заданном порядке.
+     * В отличие от findAll(Specification, Pageable) не выполняет запрос общего количества.
+     */
+    List<Socks> findAll(Specification<Socks> spec, Sort sort, int limit);
+
+    /**
+     * Передает подходящие записи в consumer по одной, читая их курсором порциями по fetchSize строк.
+     * Записи не попадают в контекст JPA, поэтому память не зависит от их числа. Требует открытой транзакции:
+     * без нее драйвер PostgreSQL читает весь результат сразу.
+     */
+    void forEach(String color, Integer minCottonPart, Integer maxCottonPart, int fetchSize, Consumer<Socks> consumer);
+
+    /**
+     * Блокирует до конца транзакции и возвращает существующие записи перечисленных пар. Массивы параллельны.
+     */
+    List<Socks> findAllForUpdate(String[] colors, Integer[] cottonParts);
+
+    /**
+     * Прибавляет к количествам пар изменения deltas, создавая недостающие записи, и возвращает записи
+     * с новыми количествами. Массивы параллельны.
+     */
+    List<Socks> addQuantities(String[] colors, Integer[] cottonParts, Integer[] deltas);
+
+    /**
+     * Уменьшает количества пар одним запросом, если их хватает, и возвращает измененные записи.
+     * Пары, которых нет или которым не хватает носков, не меняются и не попадают в результат. Массивы параллельны.
+     */
+    List<Socks> subtractQuantitiesIfSufficient(String[] colors, Integer[] cottonParts, Integer[] quantities);
+
+    /**
+     * Устанавливает абсолютные количества пар, создавая недостающие записи. Массивы параллельны.
+     */
+    void replaceQuantities(String[] colors, Integer[] cottonParts, Integer[] quantities);
+
+    /**
+     * Удаляет записи перечисленных пар. Массивы параллельны.
+     */
+    void deleteByColorAndCottonPart(String[] colors, Integer[] cottonParts);
+
+    /**
+     * Удаляет все записи, кроме перечисленных пар. Массивы параллельны.
+     */
+    void deleteAllExcept(String[] colors, Integer[] cottonParts);
+}
@@ -0,0 +1,283 @@
+package ru.backspark.SockKeeper.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.model.SocksUpsertResult;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+public class SocksRepositoryImpl implements SocksRepositoryCustom {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO socks (color_id, cotton_part, quantity)
+            VALUES (?, ?, ?)
+            ON CONFLICT (color_id, cotton_part) DO UPDATE SET quantity = socks.quantity + EXCLUDED.quantity
+            """;
+
+    private static final String DECREMENT_IF_SUFFICIENT_SQL = """
+            UPDATE socks SET quantity = quantity - ?
+            WHERE color_id = ? AND cotton_part = ? AND quantity >= ?
+            """;
+
+    // xmax = 0 только у строк, вставленных этим запросом; обновленные строки получают xmax текущей транзакции.
+    // Строки вставляются и блокируются в порядке (color_id, cotton_part), как и во всех запросах ниже
+    private static final String UPSERT_INCOME_SQL = """
+            INSERT INTO socks (color_id, cotton_part, quantity)
+            SELECT * FROM unnest(?::int[], ?::int[], ?::int[]) AS p(color_id, cotton_part, quantity)
+            ORDER BY color_id, cotton_part
+            ON CONFLICT (color_id, cotton_part) DO UPDATE SET quantity = socks.quantity + EXCLUDED.quantity
+            RETURNING (xmax = 0) AS inserted
+            """;
+
+    // Порядок блокировки одинаков у всех вызовов, поэтому встречные группы не блокируют друг друга насмерть
+    private static final String FIND_FOR_UPDATE_SQL = """
+            SELECT s.id, s.color_id, s.cotton_part, s.quantity
+            FROM socks s
+            JOIN unnest(?::int[], ?::int[]) AS p(color_id, cotton_part)
+              ON s.color_id = p.color_id AND s.cotton_part = p.cotton_part
+            ORDER BY s.color_id, s.cotton_part
+            FOR UPDATE OF s
+            """;
+
+    private static final String ADD_QUANTITIES_SQL = """
+            INSERT INTO socks (color_id, cotton_part, quantity)
+            SELECT * FROM unnest(?::int[], ?::int[], ?::int[]) AS p(color_id, cotton_part, quantity)
+            ORDER BY color_id, cotton_part
+            ON CONFLICT (color_id, cotton_part) DO UPDATE SET quantity = socks.quantity + EXCLUDED.quantity
+            RETURNING id, color_id, cotton_part, quantity
+            """;
+
+    // Условие в WHERE не дает уйти в минус: пара, которой не хватает носков, просто не попадает в результат.
+    // Порядок, в котором UPDATE блокирует строки, зависит от плана, поэтому строки сначала блокируются по порядку
+    private static final String SUBTRACT_IF_SUFFICIENT_SQL = """
+            WITH locked AS (
+                SELECT s.id, p.quantity
+                FROM socks s
+                JOIN unnest(?::int[], ?::int[], ?::int[]) AS p(color_id, cotton_part, quantity)
+                  ON s.color_id = p.color_id AND s.cotton_part = p.cotton_part
+                ORDER BY s.color_id, s.cotton_part
+                FOR UPDATE OF s
+            )
+            UPDATE socks s SET quantity = s.quantity - l.quantity
+            FROM locked l
+            WHERE s.id = l.id AND s.quantity >= l.quantity
+            RETURNING s.id, s.color_id, s.cotton_part, s.quantity
+            """;
+
+    private static final String REPLACE_QUANTITIES_SQL = """
+            INSERT INTO socks (color_id, cotton_part, quantity)
+            SELECT * FROM unnest(?::int[], ?::int[], ?::int[]) AS p(color_id, cotton_part, quantity)
+            ORDER BY color_id, cotton_part
+            ON CONFLICT (color_id, cotton_part) DO UPDATE SET quantity = EXCLUDED.quantity
+            """;
+
+    private static final String DELETE_PAIRS_SQL = """
+            DELETE FROM socks s
+            USING unnest(?::int[], ?::int[]) AS p(color_id, cotton_part)
+            WHERE s.color_id = p.color_id AND s.cotton_part = p.cotton_part
+            """;
+
+    private static final String DELETE_ALL_EXCEPT_SQL = """
+            DELETE FROM socks s
+            WHERE NOT EXISTS (
+                SELECT 1 FROM unnest(?::int[], ?::int[]) AS p(color_id, cotton_part)
+                WHERE s.color_id = p.color_id AND s.cotton_part = p.cotton_part
+            )
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final SocksColorDictionary colorDictionary;
+
+    // Цвет приходит из базы идентификатором и переводится в название по справочнику в памяти, без соединения таблиц
+    private final RowMapper<Socks> socksRowMapper = (rs, rowNum) -> Socks.builder()
+            .id(rs.getLong("id"))
+            .color(colorDictionary.nameOf(rs.getInt("color_id")))
+            .cottonPart(rs.getInt("cotton_part"))
+            .quantity(rs.getInt("quantity"))
+            .build();
+
+    @Override
+    public int upsertIncome(String color, Integer cottonPart, Integer quantity) {
+        int colorId = colorDictionary.register(color);
+        // Как и @Modifying(flushAutomatically, clearAutomatically): JDBC-запись не должна расходиться с контекстом JPA
+        entityManager.flush();
+        int updated = jdbcTemplate.update(UPSERT_SQL, colorId, cottonPart, quantity);
+        entityManager.clear();
+        return updated;
+    }
+
+    @Override
+    public int decrementIfSufficient(String color, Integer cottonPart, Integer quantity) {
+        int colorId = colorDictionary.idOf(color);
+        entityManager.flush();
+        int updated = jdbcTemplate.update(DECREMENT_IF_SUFFICIENT_SQL, quantity, colorId, cottonPart, quantity);
+        entityManager.clear();
+        return updated;
+    }
+
+    @Override
+    public SocksUpsertResult upsertIncomeBatch(SocksBatchAggregate aggregate) {
+        int size = aggregate.distinctKeys();
+        String[] colors = new String[size];
+        Integer[] cottonParts = new Integer[size];
+        Integer[] quantities = new Integer[size];
+        int[] index = {0};
+        aggregate.forEach((color, cottonPart, quantity) -> {
+            colors[index[0]] = color;
+            cottonParts[index[0]] = cottonPart;
+            quantities[index[0]] = Math.toIntExact(quantity);
+            index[0]++;
+        });
+
+        Integer[] colorIds = colorDictionary.register(colors);
+
+        entityManager.flush();
+        int[] inserted = {0};
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(UPSERT_INCOME_SQL);
+            ps.setArray(1, con.createArrayOf("int4", colorIds));
+            ps.setArray(2, con.createArrayOf("int4", cottonParts));
+            ps.setArray(3, con.createArrayOf("int4", quantities));
+            return ps;
+        }, rs -> {
+            if (rs.getBoolean("inserted")) {
+                inserted[0]++;
+            }
+        });
+        entityManager.clear();
+
+        return new SocksUpsertResult(inserted[0], size - inserted[0]);
+    }
+
+    @Override
+    public List<Socks> findAll(Specification<Socks> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Socks> query = cb.createQuery(Socks.class);
+        Root<Socks> root = query.from(Socks.class);
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public void forEach(String color, Integer minCottonPart, Integer maxCottonPart, int fetchSize, Consumer<Socks> consumer) {
+        StringBuilder sql = new StringBuilder("SELECT id, color_id, cotton_part, quantity FROM socks WHERE TRUE");
+        List<Object> args = new ArrayList<>();
+        if (color != null && !color.isBlank()) {
+            sql.append(" AND color_id = ?");
+            args.add(colorDictionary.idOf(color));
+        }
+        if (minCottonPart != null) {
+            sql.append(" AND cotton_part >= ?");
+            args.add(minCottonPart);
+        }
+        if (maxCottonPart != null) {
+            sql.append(" AND cotton_part <= ?");
+            args.add(maxCottonPart);
+        }
+        sql.append(" ORDER BY id");
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(socksRowMapper.mapRow(rs, 0)));
+    }
+
+    @Override
+    public List<Socks> findAllForUpdate(String[] colors, Integer[] cottonParts) {
+        Integer[] colorIds = colorDictionary.idsOf(colors);
+        entityManager.flush();
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(FIND_FOR_UPDATE_SQL);
+            ps.setArray(1, con.createArrayOf("int4", colorIds));
+            ps.setArray(2, con.createArrayOf("int4", cottonParts));
+            return ps;
+        }, socksRowMapper);
+    }
+
+    @Override
+    public List<Socks> addQuantities(String[] colors, Integer[] cottonParts, Integer[] deltas) {
+        return updatePairs(ADD_QUANTITIES_SQL, colorDictionary.register(colors), cottonParts, deltas);
+    }
+
+    @Override
+    public List<Socks> subtractQuantitiesIfSufficient(String[] colors, Integer[] cottonParts, Integer[] quantities) {
+        return updatePairs(SUBTRACT_IF_SUFFICIENT_SQL, colorDictionary.idsOf(colors), cottonParts, quantities);
+    }
+
+    @Override
+    public void replaceQuantities(String[] colors, Integer[] cottonParts, Integer[] quantities) {
+        Integer[] colorIds = colorDictionary.register(colors);
+        entityManager.flush();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(REPLACE_QUANTITIES_SQL);
+            ps.setArray(1, con.createArrayOf("int4", colorIds));
+            ps.setArray(2, con.createArrayOf("int4", cottonParts));
+            ps.setArray(3, con.createArrayOf("int4", quantities));
+            return ps;
+        });
+        entityManager.clear();
+    }
+
+    @Override
+    public void deleteByColorAndCottonPart(String[] colors, Integer[] cottonParts) {
+        deletePairs(DELETE_PAIRS_SQL, colorDictionary.idsOf(colors), cottonParts);
+    }
+
+    @Override
+    public void deleteAllExcept(String[] colors, Integer[] cottonParts) {
+        deletePairs(DELETE_ALL_EXCEPT_SQL, colorDictionary.idsOf(colors), cottonParts);
+    }
+
+    private List<Socks> updatePairs(String sql, Integer[] colorIds, Integer[] cottonParts, Integer[] quantities) {
+        entityManager.flush();
+        List<Socks> updated = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("int4", colorIds));
+            ps.setArray(2, con.createArrayOf("int4", cottonParts));
+            ps.setArray(3, con.createArrayOf("int4", quantities));
+            return ps;
+        }, socksRowMapper);
+        entityManager.clear();
+        return updated;
+    }
+
+    private void deletePairs(String sql, Integer[] colorIds, Integer[] cottonParts) {
+        entityManager.flush();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("int4", colorIds));
+            ps.setArray(2, con.createArrayOf("int4", cottonParts));
+            return ps;
+        });
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,173 @@
+package ru.backspark.SockKeeper.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.backspark.SockKeeper.config.SocksRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Чтение всех остатков в снимке, граница которого известна приложению: изменения, зафиксированные до снимка,
+ * в прочитанном есть, после — нет.
+ */
+@Repository
+@Slf4j
+public class SocksSnapshotRepository {
+
+    private static final String SCAN_SQL = """
+            SELECT c.name, s.cotton_part, s.quantity
+            FROM socks s JOIN colors c ON c.id = s.color_id
+            """;
+
+    // Код PostgreSQL lock_not_available: блокировку не удалось получить за lock_timeout
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final long REPLAY_POLL_MILLIS = 5;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Optional<SocksRoutingDataSource> routingDataSource;
+
+    public SocksSnapshotRepository(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                   Optional<SocksRoutingDataSource> routingDataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.routingDataSource = routingDataSource;
+    }
+
+    /**
+     * Читает таблицу socks в снимке, взятом в момент barrier, и передает каждую запись visitor.
+     * <p>
+     * На время взятия снимка таблица блокируется в режиме SHARE: начатые изменения дожидаются фиксации, новые ждут
+     * снятия блокировки. Пока она держится, вызывается barrier: все изменения до него уже зафиксированы и попадут
+     * в снимок, все после — будут зафиксированы позже и в снимок не попадут. Сама таблица читается уже без
+     * блокировки, с реплики, если она за время lockTimeout догнала основную базу, иначе с основной базы.
+     * <p>
+     * Возвращает false, ничего не прочитав, если блокировку не удалось получить за lockTimeout или barrier
+     * вернул false: чтобы не задерживать изменения, снимок лучше взять позже.
+     */
+    public boolean scan(Duration lockTimeout, int fetchSize, BooleanSupplier barrier, QuantityVisitor visitor) {
+        Connection snapshot;
+        try (Connection lockConnection = dataSource.getConnection()) {
+            lockConnection.setAutoCommit(false);
+            try {
+                try (Statement statement = lockConnection.createStatement()) {
+                    statement.execute("SET LOCAL lock_timeout = " + lockTimeout.toMillis());
+                    statement.execute("LOCK TABLE socks IN SHARE MODE");
+                }
+                if (!barrier.getAsBoolean()) {
+                    return false;
+                }
+                snapshot = openSnapshot(lockConnection, lockTimeout);
+            } finally {
+                // Транзакция ничего не меняла: откат только снимает блокировку
+                lockConnection.rollback();
+            }
+        } catch (SQLException e) {
+            if (LOCK_NOT_AVAILABLE.equals(e.getSQLState())) {
+                log.debug("Не удалось заблокировать socks за {} мс для снимка остатков", lockTimeout.toMillis());
+                return false;
+            }
+            throw translate(e);
+        }
+
+        try (Connection connection = snapshot;
+             PreparedStatement ps = connection.prepareStatement(SCAN_SQL)) {
+            ps.setFetchSize(fetchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(rs.getString(1), rs.getInt(2), rs.getInt(3));
+                }
+            }
+            connection.rollback();
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+        return true;
+    }
+
+    /**
+     * Начинает на реплике или основной базе транзакцию REPEATABLE READ только для чтения и сразу берет в ней снимок.
+     * Вызывается, пока таблица заблокирована.
+     */
+    private Connection openSnapshot(Connection lockConnection, Duration lockTimeout) throws SQLException {
+        DataSource replica = routingDataSource.map(SocksRoutingDataSource::availableReplica).orElse(null);
+        if (replica != null) {
+            String lsn;
+            try (Statement statement = lockConnection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT pg_current_wal_lsn()::text")) {
+                rs.next();
+                lsn = rs.getString(1);
+            }
+            Connection connection = replica.getConnection();
+            try {
+                if (awaitReplay(connection, lsn, lockTimeout)) {
+                    return beginSnapshot(connection);
+                }
+                log.debug("Реплика не догнала основную базу за {} мс, снимок остатков берется с основной базы",
+                        lockTimeout.toMillis());
+            } catch (SQLException e) {
+                log.debug("Не удалось взять снимок остатков на реплике: {}", e.getMessage());
+            }
+            connection.close();
+        }
+        return beginSnapshot(dataSource.getConnection());
+    }
+
+    private static boolean awaitReplay(Connection connection, String lsn, Duration timeout) throws SQLException {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_last_wal_replay_lsn() >= ?::pg_lsn")) {
+            ps.setString(1, lsn);
+            while (true) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next() && rs.getBoolean(1)) {
+                        return true;
+                    }
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(REPLAY_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    private static Connection beginSnapshot(Connection connection) throws SQLException {
+        try {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            // Снимок транзакции REPEATABLE READ берется первым запросом
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT 1");
+            }
+            return connection;
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private RuntimeException translate(SQLException e) {
+        RuntimeException translated = jdbcTemplate.getExceptionTranslator().translate("Снимок остатков", SCAN_SQL, e);
+        return translated != null ? translated : new IllegalStateException(e);
+    }
+
+    @FunctionalInterface
+    public interface QuantityVisitor {
+        void visit(String color, int cottonPart, int quantity);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.backspark.SockKeeper.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksCursor;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class SocksSpecifications {
+
+    private SocksSpecifications() {
+    }
+
+    public static Specification<Socks> filter(String color, Integer minCottonPart, Integer maxCottonPart) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (color != null && !color.isBlank()) {
+                predicates.add(cb.equal(root.get("color"), color));
+            }
+            if (minCottonPart != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("cottonPart"), minCottonPart));
+            }
+            if (maxCottonPart != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("cottonPart"), maxCottonPart));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Записи строго после курсора в его порядке сортировки:
+     * (k1, k2, k3) > (v1, v2, v3) раскрывается в k1 > v1 OR (k1 = v1 AND (k2 > v2 OR (k2 = v2 AND k3 > v3))).
+     * Цвет сравнивается по названию, как и в {@link ru.backspark.SockKeeper.model.SocksSortOrder#getSort()}.
+     */
+    public static Specification<Socks> after(SocksCursor cursor) {
+        return (root, query, cb) -> {
+            List<String> keys = cursor.order().getKeys();
+            int last = keys.size() - 1;
+            Predicate predicate = greaterThan(root, cb, keys.get(last), cursor);
+            for (int i = last - 1; i >= 0; i--) {
+                String key = keys.get(i);
+                predicate = cb.or(
+                        greaterThan(root, cb, key, cursor),
+                        cb.and(cb.equal(path(root, key), value(key, cursor)), predicate));
+            }
+            return predicate;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate greaterThan(Root<Socks> root, CriteriaBuilder cb, String key, SocksCursor cursor) {
+        return cb.greaterThan((Expression) path(root, key), (Comparable) value(key, cursor));
+    }
+
+    /**
+     * Путь к ключу сортировки. Для цвета это название из справочника; соединение со справочником создается
+     * один раз и переиспользуется в ORDER BY: Spring Data ищет уже созданное соединение того же типа.
+     */
+    private static Path<Object> path(Root<Socks> root, String key) {
+        if (!"color".equals(key)) {
+            return root.get(key);
+        }
+        Join<Socks, ?> colorEntry = root.getJoins().stream()
+                .filter(join -> join.getAttribute().getName().equals("colorEntry") && join.getJoinType() == JoinType.LEFT)
+                .findFirst()
+                .orElseGet(() -> root.join("colorEntry", JoinType.LEFT));
+        return colorEntry.get("name");
+    }
+
+    private static Object value(String key, SocksCursor cursor) {
+        return switch (key) {
+            case "id" -> cursor.id();
+            case "color" -> cursor.color();
+            case "cottonPart" -> cursor.cottonPart();
+            default -> throw new IllegalArgumentException("Неизвестное поле сортировки: " + key);
+        };
+    }
+}
@@ -0,0 +1,246 @@
+package ru.backspark.SockKeeper.repository.reactive;
+
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksSortOrder;
+import ru.backspark.SockKeeper.repository.SocksColorDictionary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Неблокирующий доступ к таблице socks для профиля reactive.
+ * <p>
+ * Приход и отпуск выполняются теми же атомарными запросами, что и в {@link ru.backspark.SockKeeper.repository.SocksRepository}:
+ * каждое изменение — один запрос, поэтому транзакция R2DBC не нужна.
+ * <p>
+ * Цвет переводится в идентификатор по {@link SocksColorDictionary}. Справочник работает через JDBC, поэтому
+ * к нему обращаются на boundedElastic и только когда цвета еще нет в памяти.
+ */
+@Repository
+@Profile("reactive")
+@RequiredArgsConstructor
+public class SocksReactiveRepository {
+
+    private static final String UPSERT_INCOME_SQL = """
+            INSERT INTO socks (color_id, cotton_part, quantity)
+            VALUES (:colorId, :cottonPart, :quantity)
+            ON CONFLICT (color_id, cotton_part) DO UPDATE SET quantity = socks.quantity + EXCLUDED.quantity
+            """;
+
+    private static final String DECREMENT_IF_SUFFICIENT_SQL = """
+            UPDATE socks SET quantity = quantity - :quantity
+            WHERE color_id = :colorId AND cotton_part = :cottonPart AND quantity >= :quantity
+            """;
+
+    private static final String EXISTS_SQL = """
+            SELECT EXISTS (SELECT 1 FROM socks WHERE color_id = :colorId AND cotton_part = :cottonPart) AS found
+            """;
+
+    // Прежняя пара и количество читаются под блокировкой строки в том же запросе: по ним строится событие изменения
+    private static final String UPDATE_SQL = """
+            WITH old AS (
+                SELECT s.id, oc.name AS color, s.cotton_part, s.quantity
+                FROM socks s JOIN colors oc ON oc.id = s.color_id
+                WHERE s.id = :id
+                FOR UPDATE OF s
+            )
+            UPDATE socks s SET color_id = :colorId, cotton_part = :cottonPart, quantity = :quantity
+            FROM colors c, old o
+            WHERE s.id = o.id AND c.id = :colorId
+            RETURNING s.id, c.name AS color, s.cotton_part, s.quantity,
+                      o.color AS old_color, o.cotton_part AS old_cotton_part, o.quantity AS old_quantity
+            """;
+
+    private static final String SUM_SQL = """
+            SELECT COALESCE(SUM(quantity), 0) AS total FROM socks
+            WHERE cotton_part BETWEEN :minCottonPart AND :maxCottonPart
+            """;
+
+    private static final String SUM_BY_COLOR_SQL = """
+            SELECT COALESCE(SUM(quantity), 0) AS total FROM socks
+            WHERE color_id = :colorId AND cotton_part BETWEEN :minCottonPart AND :maxCottonPart
+            """;
+
+    // Цвет упорядочивается по названию, как и в JPA-запросах
+    private static final Map<String, String> COLUMNS = Map.of(
+            "id", "s.id",
+            "color", "c.name",
+            "cottonPart", "s.cotton_part");
+
+    private final DatabaseClient databaseClient;
+    private final SocksColorDictionary colorDictionary;
+
+    /**
+     * Увеличивает количество носков или создает новую запись. Опирается на уникальное ограничение
+     * uk_socks_color_cotton_part.
+     */
+    public Mono<Integer> upsertIncome(String color, int cottonPart, int quantity) {
+        return registerColor(color).flatMap(colorId -> databaseClient.sql(UPSERT_INCOME_SQL)
+                .bind("colorId", colorId)
+                .bind("cottonPart", cottonPart)
+                .bind("quantity", quantity)
+                .fetch()
+                .rowsUpdated());
+    }
+
+    /**
+     * Уменьшает количество носков только при достаточном остатке. 0 означает, что записи нет или остатка не хватает.
+     */
+    public Mono<Integer> decrementIfSufficient(String color, int cottonPart, int quantity) {
+        return currentColorId(color).flatMap(colorId -> databaseClient.sql(DECREMENT_IF_SUFFICIENT_SQL)
+                .bind("colorId", colorId)
+                .bind("cottonPart", cottonPart)
+                .bind("quantity", quantity)
+                .fetch()
+                .rowsUpdated());
+    }
+
+    public Mono<Boolean> existsByColorAndCottonPart(String color, int cottonPart) {
+        return currentColorId(color).flatMap(colorId -> databaseClient.sql(EXISTS_SQL)
+                .bind("colorId", colorId)
+                .bind("cottonPart", cottonPart)
+                .map(row -> row.get("found", Boolean.class))
+                .one());
+    }
+
+    /**
+     * Суммарное количество носков с процентом хлопка в диапазоне [minCottonPart, maxCottonPart];
+     * color == null — любого цвета.
+     */
+    public Mono<Long> sumQuantity(String color, int minCottonPart, int maxCottonPart) {
+        if (color == null) {
+            return databaseClient.sql(SUM_SQL)
+                    .bind("minCottonPart", minCottonPart)
+                    .bind("maxCottonPart", maxCottonPart)
+                    .map(row -> row.get("total", Long.class))
+                    .one();
+        }
+        return colorId(color).flatMap(colorId -> databaseClient.sql(SUM_BY_COLOR_SQL)
+                .bind("colorId", colorId)
+                .bind("minCottonPart", minCottonPart)
+                .bind("maxCottonPart", maxCottonPart)
+                .map(row -> row.get("total", Long.class))
+                .one());
+    }
+
+    /**
+     * Записи, подходящие под фильтры, в порядке order. Драйвер читает курсор порциями по fetchSize строк
+     * и запрашивает следующую порцию, только когда подписчик готов принять записи.
+     */
+    public Flux<Socks> findAll(String color, Integer minCottonPart, Integer maxCottonPart, SocksSortOrder order,
+                               int fetchSize) {
+        if (color != null && !color.isBlank()) {
+            return colorId(color).flatMapMany(colorId ->
+                    findAllByColorId(colorId, minCottonPart, maxCottonPart, order, fetchSize));
+        }
+        return findAllByColorId(null, minCottonPart, maxCottonPart, order, fetchSize);
+    }
+
+    private Flux<Socks> findAllByColorId(Integer colorId, Integer minCottonPart, Integer maxCottonPart,
+                                         SocksSortOrder order, int fetchSize) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT s.id, c.name AS color, s.cotton_part, s.quantity
+                FROM socks s JOIN colors c ON c.id = s.color_id
+                WHERE TRUE""");
+        Map<String, Object> params = new LinkedHashMap<>();
+        if (colorId != null) {
+            sql.append(" AND s.color_id = :colorId");
+            params.put("colorId", colorId);
+        }
+        if (minCottonPart != null) {
+            sql.append(" AND s.cotton_part >= :minCottonPart");
+            params.put("minCottonPart", minCottonPart);
+        }
+        if (maxCottonPart != null) {
+            sql.append(" AND s.cotton_part <= :maxCottonPart");
+            params.put("maxCottonPart", maxCottonPart);
+        }
+        sql.append(" ORDER BY ").append(order.getKeys().stream().map(COLUMNS::get).collect(Collectors.joining(", ")));
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+                .filter(statement -> statement.fetchSize(fetchSize));
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec.map(SocksReactiveRepository::toSocks).all();
+    }
+
+    /**
+     * Переносит запись на другую пару и задает количество одним запросом. Возвращает запись до и после изменения;
+     * пусто, если записи нет.
+     */
+    public Mono<Updated> update(Long id, String color, int cottonPart, int quantity) {
+        return registerColor(color).flatMap(colorId -> databaseClient.sql(UPDATE_SQL)
+                .bind("id", id)
+                .bind("colorId", colorId)
+                .bind("cottonPart", cottonPart)
+                .bind("quantity", quantity)
+                .map(row -> new Updated(
+                        Socks.builder()
+                                .id(row.get("id", Long.class))
+                                .color(row.get("old_color", String.class))
+                                .cottonPart(row.get("old_cotton_part", Integer.class))
+                                .quantity(row.get("old_quantity", Integer.class))
+                                .build(),
+                        toSocks(row)))
+                .one());
+    }
+
+    /**
+     * Идентификатор цвета для условий запроса; неизвестному цвету соответствует
+     * {@link SocksColorDictionary#UNKNOWN_ID}, и запрос ничего не находит.
+     */
+    private Mono<Integer> colorId(String color) {
+        Integer cached = colorDictionary.cachedId(color);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> colorDictionary.idOf(color)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Идентификатор цвета для изменения остатков: запомненному отсутствию цвета не доверяет.
+     */
+    private Mono<Integer> currentColorId(String color) {
+        Integer cached = colorDictionary.cachedId(color);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> colorDictionary.currentIdOf(color)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Идентификатор цвета для записи; отсутствующий цвет добавляется в справочник.
+     */
+    private Mono<Integer> registerColor(String color) {
+        Integer cached = colorDictionary.cachedId(color);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> colorDictionary.register(color)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Socks toSocks(Row row) {
+        return Socks.builder()
+                .id(row.get("id", Long.class))
+                .color(row.get("color", String.class))
+                .cottonPart(row.get("cotton_part", Integer.class))
+                .quantity(row.get("quantity", Integer.class))
+                .build();
+    }
+
+    /**
+     * Запись до обновления (previous) и после него (current).
+     */
+    public record Updated(Socks previous, Socks current) {
+    }
+}
@@ -0,0 +1,13 @@
+package ru.backspark.SockKeeper.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import ru.backspark.SockKeeper.dto.SocksBatchJobRsDto;
+
+import java.util.UUID;
+
+public interface SocksBatchJobService {
+
+    SocksBatchJobRsDto submitBatch(MultipartFile file);
+
+    SocksBatchJobRsDto getJob(UUID jobId);
+}
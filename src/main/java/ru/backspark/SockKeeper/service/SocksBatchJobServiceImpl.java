@@ -0,0 +1,161 @@
+package ru.backspark.SockKeeper.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.config.SocksThreads;
+import ru.backspark.SockKeeper.dto.SocksBatchJobRsDto;
+import ru.backspark.SockKeeper.error.exception.BatchJobNotFoundException;
+import ru.backspark.SockKeeper.error.exception.BatchJobRejectedException;
+import ru.backspark.SockKeeper.error.exception.FileProcessingException;
+import ru.backspark.SockKeeper.model.SocksBatchJob;
+import ru.backspark.SockKeeper.model.SocksBatchProgress;
+import ru.backspark.SockKeeper.service.batch.SocksBatchSpool;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class SocksBatchJobServiceImpl implements SocksBatchJobService {
+
+    private final SocksService socksService;
+    private final SocksBatchSpool socksBatchSpool;
+    private final SocksProperties.Jobs jobsProperties;
+    private final ThreadPoolExecutor executor;
+    private final Map<UUID, SocksBatchJob> jobs = new ConcurrentHashMap<>();
+
+    public SocksBatchJobServiceImpl(SocksService socksService, SocksBatchSpool socksBatchSpool,
+                                    SocksProperties socksProperties) {
+        this.socksService = socksService;
+        this.socksBatchSpool = socksBatchSpool;
+        this.jobsProperties = socksProperties.getBatch().getJobs();
+
+        // Собственный ограниченный пул: длинные загрузки не занимают потоки HTTP и не растут без предела
+        this.executor = new ThreadPoolExecutor(
+                jobsProperties.getThreads(), jobsProperties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobsProperties.getQueueCapacity()),
+                SocksThreads.threadFactory("socks-batch-", socksProperties.getThreads().isVirtual()));
+    }
+
+    @Override
+    public SocksBatchJobRsDto submitBatch(MultipartFile file) {
+        log.debug("Асинхронная загрузка партии носков: имя файла={}", file.getOriginalFilename());
+
+        if (file.isEmpty()) {
+            log.error("Файл пустой");
+            throw new FileProcessingException("Файл не может быть пустым.");
+        }
+
+        evictExpiredJobs();
+
+        SocksBatchJob job = new SocksBatchJob(file.getOriginalFilename(), spool(file));
+        jobs.put(job.getId(), job);
+
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            deleteSpoolFile(job);
+            log.warn("Очередь загрузок заполнена, задача отклонена: имя файла={}", file.getOriginalFilename());
+            throw new BatchJobRejectedException("Слишком много загрузок в очереди. Повторите попытку позже.");
+        }
+
+        log.info("Задача загрузки {} поставлена в очередь: имя файла={}", job.getId(), job.getFileName());
+        return toDto(job);
+    }
+
+    @Override
+    public SocksBatchJobRsDto getJob(UUID jobId) {
+        SocksBatchJob job = jobs.get(jobId);
+        if (job == null) {
+            log.error("Задача загрузки с id={} не найдена", jobId);
+            throw new BatchJobNotFoundException("Задача загрузки с указанным ID не найдена.");
+        }
+        return toDto(job);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(SocksBatchJob job) {
+        job.start();
+        log.info("Задача загрузки {} запущена", job.getId());
+        try {
+            socksService.importSocksBatch(job.getSpoolFile(), job.getProgress());
+            job.complete();
+            log.info("Задача загрузки {} завершена: строк={}", job.getId(), job.getProgress().getLinesRead());
+        } catch (Exception e) {
+            // Уже зафиксированные порции остаются в базе, в статусе задачи видно, сколько строк успело примениться
+            job.fail(e.getMessage());
+            log.error("Задача загрузки {} завершилась ошибкой: {}", job.getId(), e.getMessage());
+        } finally {
+            deleteSpoolFile(job);
+        }
+    }
+
+    private Path spool(MultipartFile file) {
+        try {
+            return socksBatchSpool.save(file);
+        } catch (IOException e) {
+            log.error("Не удалось сохранить файл на диск: {}", e.getMessage(), e);
+            throw new FileProcessingException("Ошибка при сохранении файла: " + e.getMessage(), e);
+        }
+    }
+
+    private void deleteSpoolFile(SocksBatchJob job) {
+        try {
+            Files.deleteIfExists(job.getSpoolFile());
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}: {}", job.getSpoolFile(), e.getMessage());
+        }
+    }
+
+    private void evictExpiredJobs() {
+        Instant threshold = Instant.now().minus(jobsProperties.getRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    private SocksBatchJobRsDto toDto(SocksBatchJob job) {
+        SocksBatchProgress progress = job.getProgress();
+        return SocksBatchJobRsDto.builder()
+                .jobId(job.getId())
+                .fileName(job.getFileName())
+                .status(job.getStatus())
+                .linesRead(progress.getLinesRead())
+                .distinctKeys(progress.getDistinctKeys())
+                .inserted(progress.getInserted())
+                .updated(progress.getUpdated())
+                .linesPerSecond(linesPerSecond(job))
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+
+    private Double linesPerSecond(SocksBatchJob job) {
+        Instant startedAt = job.getStartedAt();
+        if (startedAt == null) {
+            return null;
+        }
+        Instant end = job.getFinishedAt() != null ? job.getFinishedAt() : Instant.now();
+        long millis = Math.max(1, Duration.between(startedAt, end).toMillis());
+        return job.getProgress().getLinesRead() * 1000.0 / millis;
+    }
+}
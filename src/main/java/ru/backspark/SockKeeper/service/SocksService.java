@@ -1,8 +1,18 @@
 package ru.backspark.SockKeeper.service;
 
 import org.springframework.web.multipart.MultipartFile;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
 import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.model.SocksBatchProgress;
+import ru.backspark.SockKeeper.model.SocksExportFormat;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
 import java.util.List;
 
 public interface SocksService {
@@ -11,9 +21,44 @@ public interface SocksService {
 
     void registerOutcome(String color, Integer cottonPart, Integer quantity);
 
-    List<SocksRsDto> getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy);
+    /**
+     * Применяет список приходов и отпусков целиком или никак и возвращает результат по каждой строке.
+     * Если хотя бы одному отпуску не хватает носков, склад не меняется, а в ответе applied = false.
+     */
+    SocksMovementsRsDto registerMovements(List<SocksMovementRqDto> movements);
+
+    /**
+     * Возвращает страницу носков не длиннее limit. Следующая страница запрашивается с курсором nextCursor
+     * из ответа; при отсутствии nextCursor записей больше нет.
+     */
+    SocksPageRsDto getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy,
+                            Integer limit, String cursor);
+
+    /**
+     * Суммарное количество носков по фильтрам; operation сужает диапазон процента хлопка относительно cottonPart.
+     */
+    long countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                    Integer cottonPart, Integer cottonPartTo);
+
+    /**
+     * То же количество на момент asOf, восстановленное по журналу движений.
+     */
+    long countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                    Integer cottonPart, Integer cottonPartTo, OffsetDateTime asOf);
+
+    /**
+     * Пишет все подходящие записи в out по мере чтения из базы, не накапливая их в памяти.
+     */
+    void exportSocks(String color, Integer minCottonPart, Integer maxCottonPart, SocksExportFormat format,
+                     OutputStream out) throws IOException;
 
     SocksRsDto updateSocks(Long id, String color, Integer cottonPart, Integer quantity);
 
-    void processSocksBatch(MultipartFile file);
+    SocksBatchRsDto processSocksBatch(MultipartFile file);
+
+    /**
+     * Загружает партию из файла на диске, фиксируя каждую порцию в отдельной транзакции.
+     * Ход загрузки отражается в progress, чтобы его можно было опрашивать из другого потока.
+     */
+    void importSocksBatch(Path file, SocksBatchProgress progress);
 }
@@ -1,164 +1,417 @@
 package ru.backspark.SockKeeper.service;
 
-import com.opencsv.CSVReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
 import ru.backspark.SockKeeper.dto.SocksRsDto;
 import ru.backspark.SockKeeper.error.exception.FileProcessingException;
 import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
 import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
 import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
 import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.model.SocksBatchProgress;
+import ru.backspark.SockKeeper.model.SocksCottonPartRange;
+import ru.backspark.SockKeeper.model.SocksCursor;
+import ru.backspark.SockKeeper.model.SocksExportFormat;
+import ru.backspark.SockKeeper.model.SocksSortOrder;
+import ru.backspark.SockKeeper.model.SocksUpsertResult;
+import ru.backspark.SockKeeper.repository.SocksLedgerRepository;
 import ru.backspark.SockKeeper.repository.SocksRepository;
-
-import javax.persistence.criteria.Predicate;
-import java.io.InputStreamReader;
+import ru.backspark.SockKeeper.repository.SocksSpecifications;
+import ru.backspark.SockKeeper.service.batch.SocksBatchMetrics;
+import ru.backspark.SockKeeper.service.batch.SocksBatchSpool;
+import ru.backspark.SockKeeper.service.batch.SocksCsvPipeline;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+import ru.backspark.SockKeeper.service.coalescing.SocksWriteCoalescer;
+import ru.backspark.SockKeeper.service.event.SocksChange;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+import ru.backspark.SockKeeper.service.export.SocksExportWriter;
+import ru.backspark.SockKeeper.service.index.SocksQuantityIndex;
+import ru.backspark.SockKeeper.service.lock.SocksKeyLocks;
+import ru.backspark.SockKeeper.service.movement.SocksMovementPlan;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 @Service
+@ConditionalOnProperty(prefix = "socks", name = "engine", havingValue = "database", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
+@Timed("socks.service")
 public class SocksServiceImpl implements SocksService {
 
+    private static final CountQuery COUNT_QUERY = new CountQuery();
+
     private final SocksRepository socksRepository;
+    private final SocksProperties socksProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final SocksCsvPipeline socksCsvPipeline;
+    private final SocksBatchMetrics socksBatchMetrics;
+    private final SocksBatchSpool socksBatchSpool;
+    private final ObjectMapper objectMapper;
+    private final SocksCache socksCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SocksKeyLocks socksKeyLocks;
+    private final Optional<SocksWriteCoalescer> socksWriteCoalescer;
+    private final SocksLedgerRepository socksLedgerRepository;
+    private final Optional<SocksQuantityIndex> socksQuantityIndex;
 
     @Override
-    @Transactional
     public void registerIncome(String color, Integer cottonPart, Integer quantity) {
         log.debug("Регистрация прихода носков: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
 
         validateQuantity(quantity);
         validateCottonPart(cottonPart);
 
-        // Ищем существующую запись с таким цветом и процентом хлопка
-        Socks existingSocks = socksRepository.findByColorAndCottonPart(color, cottonPart)
-                .orElse(null);
-
-        if (existingSocks != null) {
-            // Если запись найдена, увеличиваем количество
-            log.debug("Обновление существующей записи: color={}, cottonPart={}, текущий quantity={}",
-                    color, cottonPart, existingSocks.getQuantity());
-            existingSocks.setQuantity(existingSocks.getQuantity() + quantity);
-            socksRepository.save(existingSocks);
-            log.info("Количество обновлено. Новый quantity={}", existingSocks.getQuantity());
-        } else {
-            // Если записи нет, создаем новую
-            Socks newSocks = Socks.builder()
-                    .color(color)
-                    .cottonPart(cottonPart)
-                    .quantity(quantity)
-                    .build();
-            socksRepository.save(newSocks);
-            log.debug("Создана новая запись: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+        if (socksWriteCoalescer.isPresent()) {
+            await(socksWriteCoalescer.get().income(color, cottonPart, quantity));
+            log.debug("Приход зарегистрирован: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+            return;
         }
+
+        // Увеличиваем количество или создаем запись одним запросом, без чтения сущности
+        inTransactionLocked(color, cottonPart, () -> {
+            socksRepository.upsertIncome(color, cottonPart, quantity);
+            eventPublisher.publishEvent(SocksChangedEvent.of(color, cottonPart, quantity));
+            return null;
+        });
+        log.debug("Приход зарегистрирован: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
     }
 
     @Override
-    @Transactional
     public void registerOutcome(String color, Integer cottonPart, Integer quantity) {
         log.debug("Регистрация отпуска носков: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
 
         validateQuantity(quantity);
         validateCottonPart(cottonPart);
 
-        // Ищем существующую запись с таким цветом и процентом хлопка
-        Socks existingSocks = socksRepository.findByColorAndCottonPart(color, cottonPart)
-                .orElseThrow(() -> {
-                    log.error("Носки с параметрами color={} и cottonPart={} не найдены", color, cottonPart);
-                    return new SocksNotFoundInWarehouse("Носки с указанными параметрами не найдены.");
-                });
-
-        // Проверяем, хватает ли количества для отпуска
-        if (existingSocks.getQuantity() < quantity) {
-            log.error("Недостаточно носков на складе. Запрашиваемое количество={}, доступное количество={}",
-                    quantity, existingSocks.getQuantity());
-            throw new InsufficientSocksInWarehouseException("Недостаточно носков на складе для выполнения операции.");
+        if (socksWriteCoalescer.isPresent()) {
+            await(socksWriteCoalescer.get().outcome(color, cottonPart, quantity));
+        } else {
+            inTransactionLocked(color, cottonPart, () -> {
+                decrement(color, cottonPart, quantity);
+                return null;
+            });
         }
 
-        // Уменьшаем количество носков
-        existingSocks.setQuantity(existingSocks.getQuantity() - quantity);
-        socksRepository.save(existingSocks);
+        log.debug("Успешно выполнен отпуск носков. color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+    }
+
+    @Override
+    public SocksMovementsRsDto registerMovements(List<SocksMovementRqDto> movements) {
+        log.debug("Регистрация списка движений носков: строк={}", movements == null ? 0 : movements.size());
 
-        log.debug("Успешно выполнен отпуск носков. color={}, cottonPart={}, остаток={}",
-                color, cottonPart, existingSocks.getQuantity());
+        SocksMovementPlan plan = SocksMovementPlan.of(movements, socksProperties.getMovements().getMaxLines());
+        SocksMovementsRsDto result = transactionTemplate.execute(status -> applyMovements(plan, status));
+
+        log.debug("Список движений {}: строк={}, пар={}", result.getApplied() ? "применен" : "отклонен",
+                plan.size(), plan.pairCount());
+        return result;
     }
 
+    private SocksMovementsRsDto applyMovements(SocksMovementPlan plan, TransactionStatus status) {
+        long[] remaining = new long[plan.pairCount()];
 
-    @Override
-    @Transactional(readOnly = true)
-    public List<SocksRsDto> getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy) {
-        log.debug("Получение списка носков с фильтрами: color={}, minCottonPart={}, maxCottonPart={}, sortBy={}",
-                color, minCottonPart, maxCottonPart, sortBy);
+        // Существующие строки всех пар блокируются заранее одним запросом в порядке (color_id, cotton_part):
+        // иначе приход одной пары и отпуск другой во встречных списках заблокировали бы строки в разном порядке
+        String[] colors = new String[plan.pairCount()];
+        Integer[] cottonParts = new Integer[plan.pairCount()];
+        for (int pair = 0; pair < plan.pairCount(); pair++) {
+            colors[pair] = plan.color(pair);
+            cottonParts[pair] = plan.cottonPart(pair);
+        }
+        socksRepository.findAllForUpdate(colors, cottonParts);
 
-        // Построение запроса с фильтрацией
-        List<Socks> socksList = socksRepository.findAll((root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
+        // Все приходы одним запросом
+        SocksMovementPlan.Batch incomes = plan.incomes();
+        if (incomes.size() > 0) {
+            for (Socks socks : socksRepository.addQuantities(incomes.colors(), incomes.cottonParts(), incomes.quantities())) {
+                remaining[plan.indexOf(socks.getColor(), socks.getCottonPart())] = socks.getQuantity();
+            }
+        }
 
-            if (color != null && !color.isBlank()) {
-                predicates.add(cb.equal(root.get("color"), color));
+        // Все отпуски одним условным запросом: пара, которой не хватает носков, не попадает в результат
+        SocksMovementPlan.Batch outcomes = plan.outcomes();
+        if (outcomes.size() > 0) {
+            List<Socks> decremented = socksRepository.subtractQuantitiesIfSufficient(
+                    outcomes.colors(), outcomes.cottonParts(), outcomes.quantities());
+            Long[] available = new Long[plan.pairCount()];
+            for (Socks socks : decremented) {
+                int pair = plan.indexOf(socks.getColor(), socks.getCottonPart());
+                remaining[pair] = socks.getQuantity();
+                available[pair] = socks.getQuantity() + plan.outcome(pair);
             }
-            if (minCottonPart != null) {
-                predicates.add(cb.greaterThanOrEqualTo(root.get("cottonPart"), minCottonPart));
+            if (decremented.size() < outcomes.size()) {
+                status.setRollbackOnly();
+                return rejectMovements(plan, outcomes, available);
             }
-            if (maxCottonPart != null) {
-                predicates.add(cb.lessThanOrEqualTo(root.get("cottonPart"), maxCottonPart));
+        }
+
+        List<SocksChange> changes = new ArrayList<>(plan.pairCount());
+        for (int pair = 0; pair < plan.pairCount(); pair++) {
+            changes.add(new SocksChange(plan.color(pair), plan.cottonPart(pair), plan.income(pair) - plan.outcome(pair)));
+        }
+        eventPublisher.publishEvent(new SocksChangedEvent(changes));
+        return plan.applied(remaining);
+    }
+
+    private SocksMovementsRsDto rejectMovements(SocksMovementPlan plan, SocksMovementPlan.Batch outcomes, Long[] available) {
+        // Остатки отклоненных пар читаются только на неуспешном пути; транзакция уже помечена к откату
+        List<String> colors = new ArrayList<>();
+        List<Integer> cottonParts = new ArrayList<>();
+        for (int i = 0; i < outcomes.size(); i++) {
+            if (available[outcomes.pairs()[i]] == null) {
+                colors.add(outcomes.colors()[i]);
+                cottonParts.add(outcomes.cottonParts()[i]);
             }
+        }
+        for (Socks socks : socksRepository.findAllForUpdate(colors.toArray(String[]::new), cottonParts.toArray(Integer[]::new))) {
+            available[plan.indexOf(socks.getColor(), socks.getCottonPart())] = (long) socks.getQuantity();
+        }
 
-            return cb.and(predicates.toArray(new Predicate[0]));
-        });
+        log.error("Список движений отклонен: не хватает носков по {} из {} пар", colors.size(), outcomes.size());
+        return plan.rejected(available);
+    }
 
-        // Сортировка
-        if (sortBy != null && !sortBy.isBlank()) {
-            switch (sortBy) {
-                case "color" -> socksList.sort(Comparator.comparing(Socks::getColor));
-                case "cottonPart" -> socksList.sort(Comparator.comparing(Socks::getCottonPart));
-                default -> {
-                    log.warn("Недопустимое значение для sortBy: {}", sortBy);
-                    throw new InvalidDataFormatException("Недопустимое значение для параметра sortBy. Доступные значения: color, cottonPart.");
-                }
+    /**
+     * Пропускает изменения одной пары по очереди. Поток ждет блокировку до начала транзакции и не занимает
+     * соединение с базой, пока ждет. Внутри чужой транзакции вызов присоединяется к ней и снимает блокировку
+     * раньше ее фиксации: тогда порядок обеспечивают только условные запросы.
+     */
+    private <T> T inTransactionLocked(String color, int cottonPart, Supplier<T> action) {
+        return socksKeyLocks.withLock(color, cottonPart, () -> transactionTemplate.execute(status -> action.get()));
+    }
+
+    /**
+     * Ждет фиксации группы, в которую попала операция, и пробрасывает отказ по этой операции.
+     */
+    private static void await(CompletableFuture<Void> result) {
+        try {
+            result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Socks findSocks(Long id) {
+        return socksRepository.findById(id)
+                .orElseThrow(() -> {
+                    log.error("Носки с id={} не найдены", id);
+                    return new SocksNotFoundInWarehouse("Носки с указанным ID не найдены.");
+                });
+    }
+
+    private void decrement(String color, Integer cottonPart, Integer quantity) {
+        // Уменьшаем остаток одним условным запросом, без чтения сущности
+        if (socksRepository.decrementIfSufficient(color, cottonPart, quantity) == 0) {
+            // Разбираемся в причине отказа только на неуспешном пути
+            if (!socksRepository.existsByColorAndCottonPart(color, cottonPart)) {
+                log.error("Носки с параметрами color={} и cottonPart={} не найдены", color, cottonPart);
+                throw new SocksNotFoundInWarehouse("Носки с указанными параметрами не найдены.");
             }
+            log.error("Недостаточно носков на складе. color={}, cottonPart={}, запрашиваемое количество={}",
+                    color, cottonPart, quantity);
+            throw new InsufficientSocksInWarehouseException("Недостаточно носков на складе для выполнения операции.");
+        }
+        eventPublisher.publishEvent(SocksChangedEvent.of(color, cottonPart, -quantity));
+    }
+
+
+    @Override
+    @Transactional(readOnly = true)
+    public SocksPageRsDto getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy,
+                                   Integer limit, String cursor) {
+        log.debug("Получение списка носков с фильтрами: color={}, minCottonPart={}, maxCottonPart={}, sortBy={}, limit={}, cursor={}",
+                color, minCottonPart, maxCottonPart, sortBy, limit, cursor);
+
+        SocksSortOrder order = SocksSortOrder.fromParam(sortBy);
+        int pageSize = resolveLimit(limit);
+
+        return socksCache.getQuery(color, minCottonPart, maxCottonPart, new PageQuery(order, pageSize, cursor),
+                () -> findPage(color, minCottonPart, maxCottonPart, order, pageSize, cursor));
+    }
+
+    private SocksPageRsDto findPage(String color, Integer minCottonPart, Integer maxCottonPart, SocksSortOrder order,
+                                    int pageSize, String cursor) {
+        // Фильтрация, сортировка и ограничение выполняются в базе; следующая страница начинается строго после курсора
+        Specification<Socks> spec = SocksSpecifications.filter(color, minCottonPart, maxCottonPart);
+        if (cursor != null && !cursor.isBlank()) {
+            spec = spec.and(SocksSpecifications.after(SocksCursor.decode(cursor, order)));
+        }
+
+        // Одна лишняя запись показывает, есть ли следующая страница
+        List<Socks> socksList = socksRepository.findAll(spec, order.getSort(), pageSize + 1);
+        boolean hasMore = socksList.size() > pageSize;
+        if (hasMore) {
+            socksList = socksList.subList(0, pageSize);
         }
 
         List<SocksRsDto> result = socksList.stream()
-                .map(socks -> SocksRsDto.builder()
-                        .id(socks.getId())
-                        .color(socks.getColor())
-                        .cottonPart(socks.getCottonPart())
-                        .quantity(socks.getQuantity())
-                        .build())
+                .map(SocksServiceImpl::toDto)
                 .toList();
 
-        log.debug("Найдено записей: {}", result.size());
-        return result;
+        log.debug("Найдено записей: {}, есть следующая страница: {}", result.size(), hasMore);
+        return SocksPageRsDto.builder()
+                .items(result)
+                .nextCursor(hasMore ? SocksCursor.after(order, socksList.get(socksList.size() - 1)).encode() : null)
+                .build();
     }
 
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
+    public long countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                           Integer cottonPart, Integer cottonPartTo) {
+        log.debug("Подсчет носков: color={}, minCottonPart={}, maxCottonPart={}, operation={}, cottonPart={}, cottonPartTo={}",
+                color, minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+
+        // Все условия сводятся к одному включающему диапазону процента хлопка
+        SocksCottonPartRange range = SocksCottonPartRange.resolve(minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+        if (range.isEmpty()) {
+            log.debug("Пустой диапазон процента хлопка: {}-{}", range.min(), range.max());
+            return 0;
+        }
+
+        int from = range.min();
+        int to = range.max();
+        // Индекс сумм отвечает без запроса к базе; пока он не построен, считает база
+        OptionalLong indexed = socksQuantityIndex
+                .map(index -> index.sum(color == null || color.isBlank() ? null : color, from, to))
+                .orElse(OptionalLong.empty());
+        long count;
+        if (indexed.isPresent()) {
+            count = indexed.getAsLong();
+        } else if (color == null || color.isBlank()) {
+            count = socksCache.getQuery(null, from, to, COUNT_QUERY, () -> socksRepository.sumQuantity(from, to));
+        } else if (from == to) {
+            // Количество одной пары берется из кэша остатков
+            count = socksCache.getQuantity(color, from, () -> socksRepository.sumQuantityByColor(color, from, to));
+        } else {
+            count = socksCache.getQuery(color, from, to, COUNT_QUERY, () -> socksRepository.sumQuantityByColor(color, from, to));
+        }
+        log.debug("Количество носков: {}", count);
+        return count;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                           Integer cottonPart, Integer cottonPartTo, OffsetDateTime asOf) {
+        log.debug("Подсчет носков на момент {}: color={}, minCottonPart={}, maxCottonPart={}, operation={}, cottonPart={}, cottonPartTo={}",
+                asOf, color, minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+
+        SocksCottonPartRange range = SocksCottonPartRange.resolve(minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+        if (range.isEmpty()) {
+            log.debug("Пустой диапазон процента хлопка: {}-{}", range.min(), range.max());
+            return 0;
+        }
+
+        // Прошлые остатки не меняются задним числом, поэтому кэш не нужен: запрос читает только хвост журнала
+        String filterColor = color == null || color.isBlank() ? null : color;
+        long count = socksLedgerRepository.sumQuantityAsOf(filterColor, range.min(), range.max(), asOf.toInstant());
+        log.debug("Количество носков на момент {}: {}", asOf, count);
+        return count;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportSocks(String color, Integer minCottonPart, Integer maxCottonPart, SocksExportFormat format,
+                            OutputStream out) throws IOException {
+        log.debug("Выгрузка носков: color={}, minCottonPart={}, maxCottonPart={}, format={}",
+                color, minCottonPart, maxCottonPart, format);
+
+        int fetchSize = socksProperties.getExport().getFetchSize();
+        SocksExportWriter writer = new SocksExportWriter(objectMapper, format, out, fetchSize);
+        try {
+            socksRepository.forEach(color, minCottonPart, maxCottonPart, fetchSize, socks -> {
+                try {
+                    writer.write(toDto(socks));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.warn("Выгрузка прервана после {} записей: {}", writer.getWritten(), e.getMessage());
+            throw e.getCause();
+        }
+
+        log.debug("Выгружено записей: {}", writer.finish());
+    }
+
+    @Override
     public SocksRsDto updateSocks(Long id, String color, Integer cottonPart, Integer quantity) {
         log.debug("Обновление носков: id={}, color={}, cottonPart={}, quantity={}", id, color, cottonPart, quantity);
 
         validateCottonPart(cottonPart);
         validateQuantity(quantity);
 
+        // Запись меняет и старую, и новую пару, поэтому блокируются обе. Старая пара известна только из записи:
+        // под блокировкой она перепроверяется, и если запись успели перенести, попытка повторяется
+        while (true) {
+            Socks current = findSocks(id);
+            SocksRsDto updated = socksKeyLocks.withLocks(current.getColor(), current.getCottonPart(), color, cottonPart,
+                    () -> transactionTemplate.execute(status ->
+                            applyUpdate(id, current.getColor(), current.getCottonPart(), color, cottonPart, quantity)));
+            if (updated != null) {
+                return updated;
+            }
+            log.debug("Пара записи id={} изменилась во время обновления, повтор", id);
+        }
+    }
+
+    private SocksRsDto applyUpdate(Long id, String lockedColor, Integer lockedCottonPart,
+                                   String color, Integer cottonPart, Integer quantity) {
         // Поиск записи в базе данных
-        Socks existingSocks = socksRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.error("Носки с id={} не найдены", id);
-                    return new SocksNotFoundInWarehouse("Носки с указанным ID не найдены.");
+        Socks existingSocks = findSocks(id);
+        if (!existingSocks.getColor().equals(lockedColor) || !existingSocks.getCottonPart().equals(lockedCottonPart)) {
+            return null;
+        }
+
+        // Пара (цвет, процент хлопка) уникальна, поэтому нельзя перевести запись на уже занятую пару
+        socksRepository.findByColorAndCottonPart(color, cottonPart)
+                .filter(other -> !other.getId().equals(id))
+                .ifPresent(other -> {
+                    log.error("Носки с параметрами color={} и cottonPart={} уже существуют: id={}", color, cottonPart, other.getId());
+                    throw new InvalidDataFormatException("Носки с указанными параметрами уже существуют.");
                 });
 
         // Обновление полей
         log.debug("Старые данные носков: {}", existingSocks);
+        SocksChange removed = new SocksChange(existingSocks.getColor(), existingSocks.getCottonPart(), -existingSocks.getQuantity());
         existingSocks.setColor(color);
         existingSocks.setCottonPart(cottonPart);
         existingSocks.setQuantity(quantity);
         socksRepository.save(existingSocks);
+        eventPublisher.publishEvent(new SocksChangedEvent(List.of(removed, new SocksChange(color, cottonPart, quantity))));
 
         log.debug("Носки обновлены: {}", existingSocks);
 
@@ -173,7 +426,7 @@ public class SocksServiceImpl implements SocksService {
 
     @Override
     @Transactional
-    public void processSocksBatch(MultipartFile file) {
+    public SocksBatchRsDto processSocksBatch(MultipartFile file) {
         log.debug("Обработка файла партии носков: имя файла={}", file.getOriginalFilename());
 
         if (file.isEmpty()) {
@@ -181,49 +434,92 @@ public class SocksServiceImpl implements SocksService {
             throw new FileProcessingException("Файл не может быть пустым.");
         }
 
-        try (CSVReader reader = new CSVReader(new InputStreamReader(file.getInputStream()))) {
-            List<Socks> socksBatch = new ArrayList<>();
-            String[] line;
-
-            while ((line = reader.readNext()) != null) {
-                if (line.length != 3) {
-                    log.error("Некорректный формат строки: {}", (Object) line);
-                    throw new FileProcessingException("Каждая строка должна содержать три значения: цвет, процент хлопка, количество.");
-                }
-
-                String color = line[0];
-                int cottonPart;
-                int quantity;
-
-                try {
-                    cottonPart = Integer.parseInt(line[1]);
-                    quantity = Integer.parseInt(line[2]);
-                } catch (NumberFormatException e) {
-                    log.error("Некорректные числовые значения в строке: {}", (Object) line);
-                    throw new FileProcessingException("Процент хлопка и количество должны быть числами.");
-                }
-
-                validateCottonPart(cottonPart);
-                validateQuantity(quantity);
+        // Порции пишутся через TransactionTemplate и присоединяются к транзакции метода: файл применяется целиком или никак
+        SocksBatchProgress progress = new SocksBatchProgress();
+        Path spoolFile = null;
+        try {
+            // Параллельный разбор читает файл по сегментам, поэтому загрузку сначала сохраняем на диск
+            spoolFile = socksBatchSpool.save(file);
+            socksCsvPipeline.run(spoolFile, progress, aggregate -> writeChunk(aggregate, progress));
+        } catch (Exception e) {
+            socksBatchMetrics.recordFailed(progress, e, false);
+            log.error("Ошибка при обработке файла: {}", e.getMessage(), e);
+            throw new FileProcessingException("Ошибка при обработке файла: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(spoolFile);
+        }
 
-                Socks socks = Socks.builder()
-                        .color(color)
-                        .cottonPart(cottonPart)
-                        .quantity(quantity)
-                        .build();
+        socksBatchMetrics.recordApplied(progress);
+        log.debug("Успешно обработано строк: {}, пар: {}, создано: {}, обновлено: {}",
+                progress.getLinesRead(), progress.getDistinctKeys(), progress.getInserted(), progress.getUpdated());
 
-                socksBatch.add(socks);
-            }
+        return SocksBatchRsDto.builder()
+                .linesRead(progress.getLinesRead())
+                .distinctKeys(progress.getDistinctKeys())
+                .inserted(progress.getInserted())
+                .updated(progress.getUpdated())
+                .build();
+    }
 
-            socksRepository.saveAll(socksBatch);
-            log.debug("Успешно обработано записей: {}", socksBatch.size());
+    @Override
+    public void importSocksBatch(Path file, SocksBatchProgress progress) {
+        log.debug("Загрузка партии носков из файла: {}", file);
 
+        // Внешней транзакции нет, поэтому каждая порция фиксируется отдельно и не держит блокировки на весь файл
+        try {
+            socksCsvPipeline.run(file, progress, aggregate -> writeChunk(aggregate, progress));
         } catch (Exception e) {
+            socksBatchMetrics.recordFailed(progress, e, true);
             log.error("Ошибка при обработке файла: {}", e.getMessage(), e);
             throw new FileProcessingException("Ошибка при обработке файла: " + e.getMessage(), e);
         }
+
+        socksBatchMetrics.recordApplied(progress);
+        log.debug("Успешно обработано строк: {}, пар: {}, создано: {}, обновлено: {}",
+                progress.getLinesRead(), progress.getDistinctKeys(), progress.getInserted(), progress.getUpdated());
     }
 
+    private void writeChunk(SocksBatchAggregate aggregate, SocksBatchProgress progress) {
+        SocksUpsertResult result = transactionTemplate.execute(status -> {
+            SocksUpsertResult written = socksRepository.upsertIncomeBatch(aggregate);
+            eventPublisher.publishEvent(SocksChangedEvent.of(aggregate));
+            return written;
+        });
+        progress.addWritten(aggregate, result);
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}: {}", file, e.getMessage());
+        }
+    }
+
+
+    private static SocksRsDto toDto(Socks socks) {
+        return SocksRsDto.builder()
+                .id(socks.getId())
+                .color(socks.getColor())
+                .cottonPart(socks.getCottonPart())
+                .quantity(socks.getQuantity())
+                .build();
+    }
+
+    private int resolveLimit(Integer limit) {
+        SocksProperties.Page page = socksProperties.getPage();
+        if (limit == null) {
+            return page.getDefaultLimit();
+        }
+        if (limit < 1 || limit > page.getMaxLimit()) {
+            log.error("Недопустимое значение limit: {}", limit);
+            throw new InvalidDataFormatException("Параметр limit должен быть в диапазоне 1-" + page.getMaxLimit() + ".");
+        }
+        return limit;
+    }
 
     private void validateQuantity(Integer quantity) {
         if (quantity <= 0) {
@@ -238,4 +534,13 @@ public class SocksServiceImpl implements SocksService {
             throw new InvalidDataFormatException("Процент хлопка должен быть в диапазоне 0-100.");
         }
     }
+
+    /**
+     * Ключи кэшируемых запросов вдобавок к фильтру по цвету и проценту хлопка.
+     */
+    private record PageQuery(SocksSortOrder order, int limit, String cursor) {
+    }
+
+    private record CountQuery() {
+    }
 }
@@ -0,0 +1,50 @@
+package ru.backspark.SockKeeper.service.batch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.model.SocksBatchProgress;
+
+/**
+ * Счетчики загрузки партий: прочитанные строки CSV, отклоненные строки и записанные строки таблицы
+ * (созданные и обновленные пары). Разбор останавливается на первой некорректной строке, поэтому неудачная
+ * загрузка отклоняет одну строку, а прочитанными считаются строки, разобранные до нее.
+ */
+@Component
+public class SocksBatchMetrics {
+
+    private final Counter linesParsed;
+    private final Counter linesRejected;
+    private final Counter rowsWritten;
+
+    public SocksBatchMetrics(MeterRegistry meterRegistry) {
+        this.linesParsed = Counter.builder("socks.batch.lines.parsed")
+                .description("Прочитанные строки CSV")
+                .register(meterRegistry);
+        this.linesRejected = Counter.builder("socks.batch.lines.rejected")
+                .description("Некорректные строки CSV")
+                .register(meterRegistry);
+        this.rowsWritten = Counter.builder("socks.batch.rows.written")
+                .description("Созданные и обновленные записи склада")
+                .register(meterRegistry);
+    }
+
+    public void recordApplied(SocksBatchProgress progress) {
+        linesParsed.increment(progress.getLinesRead());
+        rowsWritten.increment(progress.getInserted() + progress.getUpdated());
+    }
+
+    /**
+     * committed — уже записанные порции остаются на складе (загрузка без общей транзакции).
+     */
+    public void recordFailed(SocksBatchProgress progress, Exception cause, boolean committed) {
+        linesParsed.increment(progress.getLinesRead());
+        if (cause instanceof InvalidDataFormatException) {
+            linesRejected.increment();
+        }
+        if (committed) {
+            rowsWritten.increment(progress.getInserted() + progress.getUpdated());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.backspark.SockKeeper.service.batch;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import ru.backspark.SockKeeper.config.SocksProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Временные файлы загружаемых партий. Параллельный разбор читает файл по сегментам, поэтому загрузка сначала
+ * сохраняется на диск: в каталог socks.batch.jobs.spool-dir, а если он не задан — в java.io.tmpdir.
+ */
+@Component
+public class SocksBatchSpool {
+
+    private final String spoolDir;
+
+    public SocksBatchSpool(SocksProperties socksProperties) {
+        this.spoolDir = socksProperties.getBatch().getJobs().getSpoolDir();
+    }
+
+    /**
+     * Сохраняет загрузку во временный файл. Удалить файл после обработки должен вызывающий.
+     */
+    public Path save(MultipartFile file) throws IOException {
+        Path dir = spoolDir != null
+                ? Files.createDirectories(Path.of(spoolDir))
+                : Path.of(System.getProperty("java.io.tmpdir"));
+        Path spoolFile = Files.createTempFile(dir, "socks-batch-", ".csv");
+        try {
+            file.transferTo(spoolFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+        return spoolFile;
+    }
+}
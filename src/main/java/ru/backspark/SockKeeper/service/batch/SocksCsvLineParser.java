@@ -0,0 +1,168 @@
+package ru.backspark.SockKeeper.service.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.backspark.SockKeeper.error.exception.FileProcessingException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Разбор строки CSV "цвет,процент хлопка,количество" прямо из байтового буфера.
+ * Числа читаются без промежуточных строк, а строки цветов берутся из небольшого кэша по сырым байтам,
+ * поэтому на повторяющихся цветах разбор почти не выделяет память. Экземпляр не потокобезопасен:
+ * у каждого потока разбора свой парсер.
+ * <p>
+ * Поддерживаются поля в двойных кавычках с экранированием "", но не переводы строк внутри полей.
+ */
+@Slf4j
+class SocksCsvLineParser {
+
+    private static final int FIELDS = 3;
+    private static final int COLOR_CACHE_SIZE = 1024;
+
+    private final int[] fieldStarts = new int[FIELDS];
+    private final int[] fieldEnds = new int[FIELDS];
+
+    private final byte[][] cachedColorBytes = new byte[COLOR_CACHE_SIZE][];
+    private final String[] cachedColors = new String[COLOR_CACHE_SIZE];
+
+    private String color;
+    private int cottonPart;
+    private int quantity;
+
+    /**
+     * Разбирает строку buffer[start, end) без завершающего перевода строки.
+     */
+    void parse(byte[] buffer, int start, int end) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+
+        int fields = split(buffer, start, end);
+        if (fields != FIELDS) {
+            log.error("Некорректный формат строки: {}", new String(buffer, start, end - start, StandardCharsets.UTF_8));
+            throw new FileProcessingException("Каждая строка должна содержать три значения: цвет, процент хлопка, количество.");
+        }
+
+        color = color(buffer, fieldStarts[0], fieldEnds[0]);
+        long parsedCottonPart = parseInt(buffer, fieldStarts[1], fieldEnds[1]);
+        long parsedQuantity = parseInt(buffer, fieldStarts[2], fieldEnds[2]);
+        if (parsedCottonPart == Long.MIN_VALUE || parsedQuantity == Long.MIN_VALUE) {
+            log.error("Некорректные числовые значения в строке: {}", new String(buffer, start, end - start, StandardCharsets.UTF_8));
+            throw new FileProcessingException("Процент хлопка и количество должны быть числами.");
+        }
+        cottonPart = (int) parsedCottonPart;
+        quantity = (int) parsedQuantity;
+
+        if (cottonPart < 0 || cottonPart > 100) {
+            log.error("Процент хлопка должен быть в диапазоне 0-100. Переданное значение: {}", cottonPart);
+            throw new InvalidDataFormatException("Процент хлопка должен быть в диапазоне 0-100.");
+        }
+        if (quantity <= 0) {
+            log.error("Количество должно быть положительным. Переданное значение: {}", quantity);
+            throw new InvalidDataFormatException("Количество должно быть положительным.");
+        }
+    }
+
+    String color() {
+        return color;
+    }
+
+    int cottonPart() {
+        return cottonPart;
+    }
+
+    int quantity() {
+        return quantity;
+    }
+
+    /**
+     * Делит строку по запятым вне кавычек и возвращает число полей. Границы первых трех полей сохраняются.
+     */
+    private int split(byte[] buffer, int start, int end) {
+        int fields = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == ',' && !quoted) {
+                if (fields < FIELDS) {
+                    fieldStarts[fields] = fieldStart;
+                    fieldEnds[fields] = i;
+                }
+                fields++;
+                fieldStart = i + 1;
+            }
+        }
+        if (fields < FIELDS) {
+            fieldStarts[fields] = fieldStart;
+            fieldEnds[fields] = end;
+        }
+        return fields + 1;
+    }
+
+    private String color(byte[] buffer, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (COLOR_CACHE_SIZE - 1);
+
+        byte[] cached = cachedColorBytes[slot];
+        if (cached != null && Arrays.equals(cached, 0, cached.length, buffer, start, end)) {
+            return cachedColors[slot];
+        }
+
+        String value = isQuoted(buffer, start, end)
+                ? new String(buffer, start + 1, end - start - 2, StandardCharsets.UTF_8).replace("\"\"", "\"")
+                : new String(buffer, start, end - start, StandardCharsets.UTF_8);
+        cachedColorBytes[slot] = Arrays.copyOfRange(buffer, start, end);
+        cachedColors[slot] = value;
+        return value;
+    }
+
+    /**
+     * Читает целое число в диапазоне int. Возвращает Long.MIN_VALUE, если поле не является числом,
+     * как и Integer.parseInt: пробелы и пустые значения недопустимы.
+     */
+    private static long parseInt(byte[] buffer, int start, int end) {
+        if (isQuoted(buffer, start, end)) {
+            start++;
+            end--;
+        }
+        if (start >= end) {
+            return Long.MIN_VALUE;
+        }
+
+        boolean negative = false;
+        int i = start;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            if (++i == end) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    private static boolean isQuoted(byte[] buffer, int start, int end) {
+        return end - start >= 2 && buffer[start] == '"' && buffer[end - 1] == '"';
+    }
+}
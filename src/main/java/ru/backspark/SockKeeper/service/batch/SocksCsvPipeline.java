@@ -0,0 +1,334 @@
+package ru.backspark.SockKeeper.service.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.config.SocksThreads;
+import ru.backspark.SockKeeper.error.exception.FileProcessingException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.model.SocksBatchProgress;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Параллельный разбор CSV-файла партии.
+ * <p>
+ * Файл делится на сегменты по границам строк. Каждый сегмент разбирается отдельным потоком со своим парсером,
+ * который суммирует строки в частичные агрегаты и передает их через ограниченную очередь единственному
+ * писателю — вызывающему потоку. Писатель сливает частичные суммы и отдает их на запись, когда число пар
+ * достигает размера порции. Запись остается в потоке вызова, поэтому она участвует в его транзакции.
+ * <p>
+ * При ошибке в данных сообщается ошибка из самого раннего по файлу сегмента, как при последовательном чтении.
+ */
+@Component
+@Slf4j
+public class SocksCsvPipeline {
+
+    private static final long MIN_SEGMENT_BYTES = 1024 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int PARTIAL_LINES = 16 * 1024;
+    private static final long POLL_MILLIS = 100;
+
+    private final SocksProperties.Batch batchProperties;
+    private final int parserThreads;
+    private final ExecutorService parsers;
+
+    public SocksCsvPipeline(SocksProperties socksProperties) {
+        this.batchProperties = socksProperties.getBatch();
+        this.parserThreads = batchProperties.getParserThreads() > 0
+                ? batchProperties.getParserThreads()
+                : Runtime.getRuntime().availableProcessors();
+
+        // Число разборщиков ограничено и в режиме виртуальных потоков: разбор нагружает процессор
+        this.parsers = Executors.newFixedThreadPool(parserThreads,
+                SocksThreads.threadFactory("socks-csv-parser-", socksProperties.getThreads().isVirtual()));
+    }
+
+    /**
+     * Разбирает файл и передает накопленные суммы в writer. Агрегат, переданный в writer, после вызова очищается.
+     */
+    public void run(Path file, SocksBatchProgress progress, Consumer<SocksBatchAggregate> writer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = segmentBounds(channel);
+            int segments = bounds.length - 1;
+            log.debug("Разбор файла {}: размер={} байт, сегментов={}", file, channel.size(), segments);
+
+            Run run = new Run(segments);
+            for (int i = 0; i < segments; i++) {
+                int segment = i;
+                parsers.execute(() -> parseSegment(run, segment, channel, bounds[segment], bounds[segment + 1]));
+            }
+
+            try {
+                write(run, progress, writer);
+            } finally {
+                // Останавливаем разбор при ошибке записи и дожидаемся потоков, пока канал еще открыт
+                run.cancelAll();
+                run.awaitParsers();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsers.shutdownNow();
+    }
+
+    private void write(Run run, SocksBatchProgress progress, Consumer<SocksBatchAggregate> writer) {
+        SocksBatchAggregate aggregate = new SocksBatchAggregate();
+        int chunkSize = batchProperties.getChunkSize();
+        int finished = 0;
+
+        while (finished < run.segments) {
+            Partial partial = poll(run.queue);
+            if (partial == null) {
+                continue;
+            }
+            if (partial.aggregate == null) {
+                finished++;
+                continue;
+            }
+            if (run.hasFailure()) {
+                // После ошибки в данных больше ничего не пишем, только дожидаемся сегментов до ошибочного
+                continue;
+            }
+
+            partial.aggregate.forEach((color, cottonPart, quantity) -> {
+                if (aggregate.add(color, cottonPart, quantity) > Integer.MAX_VALUE) {
+                    log.error("Суммарное количество превышает допустимое значение: color={}, cottonPart={}", color, cottonPart);
+                    throw new InvalidDataFormatException("Суммарное количество носков в партии превышает допустимое значение.");
+                }
+            });
+            progress.addLinesRead(partial.lines);
+
+            if (aggregate.distinctKeys() >= chunkSize) {
+                writer.accept(aggregate);
+                aggregate.clear();
+            }
+        }
+
+        run.throwFirstFailure();
+        if (!aggregate.isEmpty()) {
+            writer.accept(aggregate);
+            aggregate.clear();
+        }
+    }
+
+    private void parseSegment(Run run, int segment, FileChannel channel, long start, long end) {
+        try {
+            SocksCsvLineParser parser = new SocksCsvLineParser();
+            SocksBatchAggregate partial = new SocksBatchAggregate();
+            int partialLines = 0;
+
+            byte[] buffer = new byte[READ_BUFFER_BYTES];
+            int filled = 0;
+            long position = start;
+
+            while (!run.isCancelled(segment)) {
+                if (filled == buffer.length) {
+                    // Строка длиннее буфера
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int toRead = (int) Math.min(buffer.length - filled, end - position);
+                int read = toRead > 0 ? channel.read(ByteBuffer.wrap(buffer, filled, toRead), position) : -1;
+                boolean endOfSegment = read <= 0;
+                if (!endOfSegment) {
+                    position += read;
+                    filled += read;
+                }
+
+                int lineStart = 0;
+                for (int i = 0; i < filled; i++) {
+                    if (buffer[i] == '\n') {
+                        parser.parse(buffer, lineStart, i);
+                        partial.add(parser.color(), parser.cottonPart(), parser.quantity());
+                        partialLines++;
+                        lineStart = i + 1;
+                    }
+                }
+                if (endOfSegment && lineStart < filled) {
+                    // Последняя строка файла без перевода строки
+                    parser.parse(buffer, lineStart, filled);
+                    partial.add(parser.color(), parser.cottonPart(), parser.quantity());
+                    partialLines++;
+                    lineStart = filled;
+                }
+
+                System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                filled -= lineStart;
+
+                if (partialLines >= PARTIAL_LINES || partial.distinctKeys() >= batchProperties.getChunkSize()) {
+                    run.offer(segment, new Partial(partial, partialLines));
+                    partial = new SocksBatchAggregate();
+                    partialLines = 0;
+                }
+                if (endOfSegment) {
+                    break;
+                }
+            }
+
+            if (partialLines > 0) {
+                run.offer(segment, new Partial(partial, partialLines));
+            }
+        } catch (Exception e) {
+            run.fail(segment, e);
+        } finally {
+            run.finish(segment);
+        }
+    }
+
+    /**
+     * Границы сегментов: приблизительно равные части файла, сдвинутые к началу следующей строки.
+     */
+    private long[] segmentBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int segments = (int) Math.max(1, Math.min(parserThreads, size / MIN_SEGMENT_BYTES));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < segments; i++) {
+            long bound = nextLineStart(channel, size * i / segments, probe);
+            if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, ByteBuffer probe) throws IOException {
+        long position = from;
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private static Partial poll(BlockingQueue<Partial> queue) {
+        try {
+            return queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileProcessingException("Обработка файла прервана.", e);
+        }
+    }
+
+    /**
+     * Частичные суммы одного сегмента. Запись без агрегата означает, что сегмент закончил работу.
+     */
+    private record Partial(SocksBatchAggregate aggregate, long lines) {
+        static final Partial DONE = new Partial(null, 0);
+    }
+
+    /**
+     * Общее состояние одного разбора файла.
+     */
+    private static class Run {
+
+        final int segments;
+        final BlockingQueue<Partial> queue;
+        final Exception[] failures;
+        final AtomicInteger firstFailedSegment = new AtomicInteger(Integer.MAX_VALUE);
+        final CountDownLatch parsersDone;
+        volatile boolean cancelled;
+
+        Run(int segments) {
+            this.segments = segments;
+            this.queue = new ArrayBlockingQueue<>(segments * 2);
+            this.failures = new Exception[segments];
+            this.parsersDone = new CountDownLatch(segments);
+        }
+
+        /**
+         * Сегменты после ошибочного можно не дочитывать: их ошибки все равно не будут первыми.
+         */
+        boolean isCancelled(int segment) {
+            return cancelled || segment > firstFailedSegment.get();
+        }
+
+        boolean hasFailure() {
+            return firstFailedSegment.get() != Integer.MAX_VALUE;
+        }
+
+        void fail(int segment, Exception e) {
+            synchronized (failures) {
+                failures[segment] = e;
+            }
+            firstFailedSegment.accumulateAndGet(segment, Math::min);
+        }
+
+        void cancelAll() {
+            cancelled = true;
+        }
+
+        void offer(int segment, Partial partial) throws InterruptedException {
+            while (!isCancelled(segment)) {
+                if (queue.offer(partial, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+
+        void finish(int segment) {
+            try {
+                // Маркер завершения нужен писателю всегда, даже после отмены
+                while (!cancelled && !queue.offer(Partial.DONE, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    log.trace("Очередь частичных сумм заполнена, ждем писателя");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                parsersDone.countDown();
+            }
+        }
+
+        void awaitParsers() {
+            try {
+                parsersDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void throwFirstFailure() {
+            Exception failure;
+            synchronized (failures) {
+                failure = Arrays.stream(failures).filter(Objects::nonNull).findFirst().orElse(null);
+            }
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (failure != null) {
+                throw new FileProcessingException(failure.getMessage(), failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package ru.backspark.SockKeeper.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.service.event.SocksChange;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Кэш остатков по парам (цвет, процент хлопка) и результатов запросов с фильтрами.
+ * <p>
+ * Записи сбрасываются по событию SocksChangedEvent дважды: перед фиксацией транзакции, чтобы после нее
+ * не осталось старых значений, и после ее завершения, чтобы убрать значения, прочитанные читателями в промежутке.
+ * Сбрасываются только затронутые пары и запросы, в фильтр которых попадает хотя бы одна из них.
+ * <p>
+ * Читатель, начавший загрузку из базы до сброса, мог прочитать старое значение. Поэтому каждый сброс
+ * увеличивает эпоху, а загруженное значение удаляется сразу после записи, если эпоха за время загрузки изменилась.
+ * <p>
+ * Версию склада, по которой строится ETag, увеличивает окончательный сброс после завершения транзакции,
+ * когда старых значений в кэше уже нет.
+ */
+@Component
+@Slf4j
+public class SocksCache {
+
+    private final SocksInventoryVersion inventoryVersion;
+    private final boolean enabled;
+    private final Cache<QuantityKey, Long> quantities;
+    private final Cache<QueryKey, Object> queries;
+    private final AtomicLong epoch = new AtomicLong();
+
+    public SocksCache(SocksProperties socksProperties, SocksInventoryVersion inventoryVersion) {
+        this.inventoryVersion = inventoryVersion;
+        SocksProperties.Cache properties = socksProperties.getCache();
+        this.enabled = properties.isEnabled();
+        this.quantities = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxQuantities())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        this.queries = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxQueries())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Количество носков пары; отсутствующая пара кэшируется как 0.
+     */
+    public long getQuantity(String color, int cottonPart, LongSupplier loader) {
+        if (!enabled) {
+            return loader.getAsLong();
+        }
+        QuantityKey key = new QuantityKey(color, cottonPart);
+        Long cached = quantities.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long observed = epoch.get();
+        long value = loader.getAsLong();
+        quantities.put(key, value);
+        if (epoch.get() != observed) {
+            quantities.invalidate(key);
+        }
+        return value;
+    }
+
+    /**
+     * Результат запроса с фильтром по цвету и диапазону процента хлопка. query отличает запросы с одинаковым
+     * фильтром друг от друга и должен корректно реализовывать equals/hashCode.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getQuery(String color, Integer minCottonPart, Integer maxCottonPart, Object query, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        QueryKey key = new QueryKey(
+                color == null || color.isBlank() ? null : color,
+                minCottonPart != null ? minCottonPart : 0,
+                maxCottonPart != null ? maxCottonPart : SocksBatchAggregate.COTTON_PART_VALUES - 1,
+                query);
+        Object cached = queries.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        long observed = epoch.get();
+        T value = loader.get();
+        queries.put(key, value);
+        if (epoch.get() != observed) {
+            queries.invalidate(key);
+        }
+        return value;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onChangedBeforeCommit(SocksChangedEvent event) {
+        drop(event);
+    }
+
+    /**
+     * Срабатывает и при откате: значения, прочитанные внутри откаченной транзакции, не должны остаться в кэше.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onChangedAfterCompletion(SocksChangedEvent event) {
+        invalidate(event);
+    }
+
+    /**
+     * Сбрасывает записи затронутых пар и только затем увеличивает версию склада: читатель, увидевший новую версию,
+     * уже не найдет в кэше значений, прочитанных до изменения, и не выдаст их под новым ETag.
+     */
+    public void invalidate(SocksChangedEvent event) {
+        drop(event);
+        inventoryVersion.increment();
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        quantities.invalidateAll();
+        queries.invalidateAll();
+        inventoryVersion.increment();
+    }
+
+    private void drop(SocksChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        epoch.incrementAndGet();
+
+        // Затронутые проценты хлопка по каждому цвету и по всем цветам сразу
+        Map<String, BitSet> cottonPartsByColor = new HashMap<>();
+        BitSet anyColor = new BitSet(SocksBatchAggregate.COTTON_PART_VALUES);
+        for (SocksChange change : event.changes()) {
+            quantities.invalidate(new QuantityKey(change.color(), change.cottonPart()));
+            cottonPartsByColor.computeIfAbsent(change.color(), c -> new BitSet(SocksBatchAggregate.COTTON_PART_VALUES))
+                    .set(change.cottonPart());
+            anyColor.set(change.cottonPart());
+        }
+        queries.asMap().keySet().removeIf(key ->
+                key.intersects(key.color() == null ? anyColor : cottonPartsByColor.get(key.color())));
+
+        log.debug("Сброшены записи кэша для {} измененных пар", event.changes().size());
+    }
+
+    public CacheStats quantityStats() {
+        return quantities.stats();
+    }
+
+    public CacheStats queryStats() {
+        return queries.stats();
+    }
+
+    private record QuantityKey(String color, int cottonPart) {
+    }
+
+    private record QueryKey(String color, int minCottonPart, int maxCottonPart, Object query) {
+
+        boolean intersects(BitSet cottonParts) {
+            if (cottonParts == null) {
+                return false;
+            }
+            int first = cottonParts.nextSetBit(minCottonPart);
+            return first >= 0 && first <= maxCottonPart;
+        }
+    }
+}
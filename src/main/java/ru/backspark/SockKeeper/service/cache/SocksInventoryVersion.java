@@ -0,0 +1,41 @@
+package ru.backspark.SockKeeper.service.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версия склада на этом экземпляре приложения: растет после каждого изменения остатков. По ней строится ETag
+ * ответов с остатками.
+ * <p>
+ * Версию увеличивает {@link SocksCache}, когда изменение уже видно читателям и затронутые записи кэша сброшены.
+ * Читатель берет версию до чтения данных, поэтому ответ может оказаться новее своей версии, но не старее:
+ * устаревший ETag приводит к лишнему полному ответу, а не к ответу 304 со старыми данными. По той же причине
+ * лишнее увеличение (например, после откаченной транзакции) безопасно.
+ * <p>
+ * Счетчик живет в памяти и начинается заново при перезапуске, поэтому вместе с ним в ETag входит идентификатор
+ * экземпляра. Изменения, сделанные в обход сервиса, версию этого экземпляра не меняют, а изменения других экземпляров
+ * меняют, только если включена согласованность экземпляров (socks.coherence).
+ */
+@Component
+public class SocksInventoryVersion {
+
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Склад в памяти кэш не использует и увеличивает версию сам.
+     */
+    public void increment() {
+        version.incrementAndGet();
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.backspark.SockKeeper.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * При чтении с реплик сбрасывает кэш по каждому изменению еще раз, спустя допустимое отставание реплик.
+ * <p>
+ * Сразу после фиксации читатель может загрузить в кэш значение с реплики, до которой изменение еще не дошло,
+ * и оно продержалось бы до истечения срока записи. Реплики, отстающие больше maxLag, чтение не получают,
+ * поэтому к повторному сбросу (maxLag плюс период измерения отставания) изменение видно на всех читаемых репликах.
+ * Повторный сброс, как и любой сброс, увеличивает версию склада: ETag, выданный вместе с данными отстающей
+ * реплики, перестает совпадать.
+ */
+@Component
+@ConditionalOnProperty(prefix = "socks.read-replicas.pools[0]", name = "url")
+@Slf4j
+public class SocksReplicaCacheInvalidation {
+
+    private final SocksCache socksCache;
+    private final long delayMillis;
+    private ScheduledExecutorService scheduler;
+
+    public SocksReplicaCacheInvalidation(SocksCache socksCache, SocksProperties socksProperties) {
+        this.socksCache = socksCache;
+        SocksProperties.ReadReplicas properties = socksProperties.getReadReplicas();
+        this.delayMillis = properties.getMaxLag().plus(properties.getCheckInterval()).toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "socks-replica-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChanged(SocksChangedEvent event) {
+        scheduler.schedule(() -> {
+            try {
+                socksCache.invalidate(event);
+            } catch (RuntimeException e) {
+                log.error("Не удалось повторно сбросить кэш: {}", e.getMessage(), e);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,292 @@
+package ru.backspark.SockKeeper.service.coalescing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.event.SocksChange;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Собирает приходы и отпуски из параллельных запросов в группы и записывает каждую группу одной транзакцией.
+ * <p>
+ * Один поток забирает из очереди все операции, пришедшие за maxDelay после первой операции группы, но не больше
+ * maxOperations. В транзакции группы затронутые пары блокируются одним запросом, операции проводятся в памяти
+ * в порядке поступления, а итоговые изменения пар записываются одним пакетным запросом. Отпуск, которому не хватило
+ * носков, отклоняется сам по себе и не мешает остальным операциям группы. Вызывающий получает результат после
+ * фиксации своей группы.
+ */
+@Component
+@ConditionalOnProperty(prefix = "socks.coalescing", name = "enabled", havingValue = "true")
+@Slf4j
+public class SocksWriteCoalescer {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final SocksRepository socksRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long maxDelayNanos;
+    private final int maxOperations;
+    private final BlockingQueue<Operation> queue;
+    private final Thread dispatcher;
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong operations = new AtomicLong();
+    private volatile boolean running = true;
+
+    public SocksWriteCoalescer(SocksRepository socksRepository, TransactionTemplate transactionTemplate,
+                               ApplicationEventPublisher eventPublisher, SocksProperties socksProperties) {
+        this.socksRepository = socksRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+
+        SocksProperties.Coalescing coalescing = socksProperties.getCoalescing();
+        this.maxDelayNanos = coalescing.getMaxDelay().toNanos();
+        this.maxOperations = coalescing.getMaxOperations();
+        this.queue = new ArrayBlockingQueue<>(coalescing.getQueueCapacity());
+
+        this.dispatcher = new Thread(this::dispatchLoop, "socks-coalescer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Ставит приход в очередь. Результат завершается после фиксации группы, в которую попала операция.
+     */
+    public CompletableFuture<Void> income(String color, int cottonPart, int quantity) {
+        return submit(new Operation(new Key(color, cottonPart), quantity));
+    }
+
+    /**
+     * Ставит отпуск в очередь. Если носков не хватает или пары нет, результат завершается исключением.
+     */
+    public CompletableFuture<Void> outcome(String color, int cottonPart, int quantity) {
+        return submit(new Operation(new Key(color, cottonPart), -quantity));
+    }
+
+    /**
+     * Количество записанных групп.
+     */
+    public long getGroups() {
+        return groups.get();
+    }
+
+    /**
+     * Количество операций в записанных группах.
+     */
+    public long getOperations() {
+        return operations.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Поток дописывает уже принятые операции и завершается
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(30));
+        failPending();
+    }
+
+    private CompletableFuture<Void> submit(Operation operation) {
+        if (!running) {
+            throw new IllegalStateException("Прием операций остановлен.");
+        }
+        try {
+            // Полная очередь задерживает вызывающих, пока поток записи не освободит место
+            queue.put(operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание места в очереди прервано.", e);
+        }
+        if (!running && queue.remove(operation)) {
+            operation.result.completeExceptionally(new IllegalStateException("Прием операций остановлен."));
+        }
+        return operation.result;
+    }
+
+    private void dispatchLoop() {
+        List<Operation> group = new ArrayList<>(maxOperations);
+        while (running || !queue.isEmpty()) {
+            try {
+                Operation first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collect(group);
+            } catch (InterruptedException e) {
+                log.warn("Сбор группы операций прерван, записываются уже собранные: {}", group.size());
+            }
+            if (!group.isEmpty()) {
+                apply(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void collect(List<Operation> group) throws InterruptedException {
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (group.size() < maxOperations) {
+            queue.drainTo(group, maxOperations - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= maxOperations || remaining <= 0) {
+                return;
+            }
+            Operation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    private void apply(List<Operation> group) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> applyInTransaction(group));
+        } catch (RuntimeException e) {
+            // Группа откатилась целиком, поэтому ошибку получают все ее операции
+            log.error("Не удалось записать группу из {} операций: {}", group.size(), e.getMessage(), e);
+            group.forEach(operation -> operation.result.completeExceptionally(e));
+            return;
+        }
+
+        groups.incrementAndGet();
+        operations.addAndGet(group.size());
+        for (Operation operation : group) {
+            if (operation.rejection != null) {
+                operation.result.completeExceptionally(operation.rejection);
+            } else {
+                operation.result.complete(null);
+            }
+        }
+    }
+
+    private void applyInTransaction(List<Operation> group) {
+        Map<Key, Balance> balances = new LinkedHashMap<>();
+        for (Operation operation : group) {
+            balances.computeIfAbsent(operation.key, key -> new Balance());
+        }
+
+        // Блокируем существующие пары группы до фиксации и читаем их остатки
+        String[] colors = new String[balances.size()];
+        Integer[] cottonParts = new Integer[balances.size()];
+        int i = 0;
+        for (Key key : balances.keySet()) {
+            colors[i] = key.color();
+            cottonParts[i] = key.cottonPart();
+            i++;
+        }
+        for (Socks socks : socksRepository.findAllForUpdate(colors, cottonParts)) {
+            Balance balance = balances.get(new Key(socks.getColor(), socks.getCottonPart()));
+            if (balance != null) {
+                balance.existed = true;
+                balance.exists = true;
+                balance.initial = socks.getQuantity();
+                balance.current = socks.getQuantity();
+            }
+        }
+
+        for (Operation operation : group) {
+            operation.rejection = applyOperation(operation, balances.get(operation.key));
+        }
+
+        // Пишем только изменившиеся пары; пара, созданная в группе, пишется даже с нулевым итогом
+        List<SocksChange> changes = new ArrayList<>();
+        balances.forEach((key, balance) -> {
+            if (balance.current != balance.initial || balance.exists != balance.existed) {
+                changes.add(new SocksChange(key.color(), key.cottonPart(), balance.current - balance.initial));
+            }
+        });
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        String[] changedColors = new String[changes.size()];
+        Integer[] changedCottonParts = new Integer[changes.size()];
+        Integer[] deltas = new Integer[changes.size()];
+        for (int j = 0; j < changes.size(); j++) {
+            SocksChange change = changes.get(j);
+            changedColors[j] = change.color();
+            changedCottonParts[j] = change.cottonPart();
+            deltas[j] = (int) change.delta();
+        }
+        socksRepository.addQuantities(changedColors, changedCottonParts, deltas);
+        eventPublisher.publishEvent(new SocksChangedEvent(changes));
+
+        log.debug("Записана группа: операций={}, пар={}", group.size(), changes.size());
+    }
+
+    private static RuntimeException applyOperation(Operation operation, Balance balance) {
+        Key key = operation.key;
+        if (operation.delta > 0) {
+            if (balance.current + operation.delta > Integer.MAX_VALUE) {
+                log.error("Количество носков превысит допустимое значение: color={}, cottonPart={}, quantity={}",
+                        key.color(), key.cottonPart(), operation.delta);
+                return new InvalidDataFormatException("Количество носков превышает допустимое значение.");
+            }
+            balance.current += operation.delta;
+            balance.exists = true;
+            return null;
+        }
+
+        int quantity = -operation.delta;
+        if (!balance.exists) {
+            log.error("Носки с параметрами color={} и cottonPart={} не найдены", key.color(), key.cottonPart());
+            return new SocksNotFoundInWarehouse("Носки с указанными параметрами не найдены.");
+        }
+        if (balance.current < quantity) {
+            log.error("Недостаточно носков на складе. color={}, cottonPart={}, запрашиваемое количество={}",
+                    key.color(), key.cottonPart(), quantity);
+            return new InsufficientSocksInWarehouseException("Недостаточно носков на складе для выполнения операции.");
+        }
+        balance.current -= quantity;
+        return null;
+    }
+
+    private void failPending() {
+        List<Operation> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(operation ->
+                operation.result.completeExceptionally(new IllegalStateException("Прием операций остановлен.")));
+    }
+
+    private record Key(String color, int cottonPart) {
+    }
+
+    private static final class Operation {
+        private final Key key;
+        private final int delta;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        // Заполняется потоком записи и читается им же после фиксации
+        private RuntimeException rejection;
+
+        private Operation(Key key, int delta) {
+            this.key = key;
+            this.delta = delta;
+        }
+    }
+
+    private static final class Balance {
+        private boolean existed;
+        private boolean exists;
+        private long initial;
+        private long current;
+    }
+}
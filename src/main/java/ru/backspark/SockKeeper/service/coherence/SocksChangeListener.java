@@ -0,0 +1,178 @@
+package ru.backspark.SockKeeper.service.coherence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.repository.SocksColorDictionary;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
+import ru.backspark.SockKeeper.service.event.SocksChange;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+import ru.backspark.SockKeeper.service.index.SocksQuantityIndex;
+
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Применяет к состоянию этого экземпляра изменения остатков, о которых сообщают уведомления PostgreSQL:
+ * устанавливает новые количества в индексе сумм, забывает запомненное отсутствие их цветов в справочнике,
+ * сбрасывает затронутые записи кэша и увеличивает версию склада.
+ * <p>
+ * Уведомления слушаются на отдельном соединении в обход пула: оно держится все время работы приложения.
+ * Уведомления, отправленные, пока соединения нет, теряются, поэтому после каждого подключения кэш сбрасывается
+ * целиком, а индекс перестраивается.
+ * <p>
+ * Собственные уведомления экземпляра пропускаются: его изменения уже применены к индексу приращениями после
+ * фиксации, а уведомление может прийти раньше них, и количество пары учлось бы дважды.
+ */
+@Component
+@ConditionalOnExpression("${socks.coherence.enabled:false} and '${socks.engine:database}' == 'database'")
+@Slf4j
+public class SocksChangeListener {
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+    // Проверка соединения, когда уведомлений долго нет: иначе обрыв заметен только по ошибке
+    private static final long HEARTBEAT_MILLIS = 10_000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final SocksCache socksCache;
+    private final SocksColorDictionary colorDictionary;
+    private final SocksInventoryVersion inventoryVersion;
+    private final Optional<SocksQuantityIndex> quantityIndex;
+    private final String channel;
+    private final long reconnectDelayMillis;
+    private volatile boolean running;
+    private Thread thread;
+
+    public SocksChangeListener(DataSourceProperties dataSourceProperties, SocksProperties socksProperties,
+                               ObjectMapper objectMapper, SocksCache socksCache, SocksColorDictionary colorDictionary,
+                               SocksInventoryVersion inventoryVersion, Optional<SocksQuantityIndex> quantityIndex) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.socksCache = socksCache;
+        this.colorDictionary = colorDictionary;
+        this.inventoryVersion = inventoryVersion;
+        this.quantityIndex = quantityIndex;
+        this.channel = socksProperties.getCoherence().getChannel();
+        this.reconnectDelayMillis = socksProperties.getCoherence().getReconnectDelay().toMillis();
+        // Имя канала подставляется в LISTEN как идентификатор, параметром его не передать
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalStateException("Недопустимое имя канала уведомлений: " + channel);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "socks-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                log.info("Слушаем уведомления об изменении остатков в канале {}", channel);
+                resync();
+                listen(connection);
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Соединение для уведомлений об изменении остатков потеряно: {}", e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log.error("Не удалось применить уведомление об изменении остатков: {}", e.getMessage(), e);
+            }
+            if (running) {
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastCheck = System.currentTimeMillis();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+            long now = System.currentTimeMillis();
+            if (notifications != null && notifications.length > 0) {
+                for (PGNotification notification : notifications) {
+                    apply(notification.getParameter());
+                }
+                lastCheck = now;
+            } else if (now - lastCheck >= HEARTBEAT_MILLIS) {
+                if (!connection.isValid((int) (HEARTBEAT_MILLIS / 1000))) {
+                    throw new SQLException("соединение не отвечает");
+                }
+                lastCheck = now;
+            }
+        }
+    }
+
+    /**
+     * Пропущенные изменения восстановить нельзя, поэтому все, что могло устареть, забывается.
+     */
+    private void resync() {
+        socksCache.invalidateAll();
+        quantityIndex.ifPresent(SocksQuantityIndex::rebuildSoon);
+    }
+
+    private void apply(String payload) {
+        JsonNode notification;
+        try {
+            notification = objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            log.warn("Пропущено уведомление с некорректным содержимым: {}", payload);
+            return;
+        }
+        if (inventoryVersion.instanceId().equals(notification.path("instance").asText())) {
+            return;
+        }
+        JsonNode pairs = notification.path("pairs");
+        List<SocksChange> changes = new ArrayList<>(pairs.size());
+        for (JsonNode pair : pairs) {
+            String color = pair.get(0).asText();
+            int cottonPart = pair.get(1).asInt();
+            // Цвет мог быть создан этим изменением: запомненное отсутствие больше не верно
+            colorDictionary.forgetUnknown(color);
+            quantityIndex.ifPresent(index -> index.set(color, cottonPart, pair.get(2).asLong()));
+            changes.add(new SocksChange(color, cottonPart, 0));
+        }
+        // Как и при локальном изменении: сначала индекс, затем кэш; версию кэш увеличивает после сброса
+        socksCache.invalidate(new SocksChangedEvent(changes));
+    }
+}
@@ -0,0 +1,61 @@
+package ru.backspark.SockKeeper.service.coherence;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.repository.SocksNotificationRepository;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
+import ru.backspark.SockKeeper.service.event.SocksChange;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Сообщает другим экземплярам приложения новые количества измененных пар уведомлениями PostgreSQL,
+ * отправленными в той же транзакции, что и изменение: откаченные изменения не рассылаются.
+ * <p>
+ * Изменения неблокирующего API фиксируются каждое своим запросом без транзакции Spring: для них уведомление
+ * отправляется сразу после изменения отдельным запросом.
+ */
+@Component
+@ConditionalOnExpression("${socks.coherence.enabled:false} and '${socks.engine:database}' == 'database'")
+public class SocksChangeNotifier {
+
+    private final SocksNotificationRepository notificationRepository;
+    private final String instanceId;
+    private final String channel;
+
+    public SocksChangeNotifier(SocksNotificationRepository notificationRepository,
+                               SocksInventoryVersion inventoryVersion, SocksProperties socksProperties) {
+        this.notificationRepository = notificationRepository;
+        this.instanceId = inventoryVersion.instanceId();
+        this.channel = socksProperties.getCoherence().getChannel();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onChanged(SocksChangedEvent event) {
+        Set<Pair> pairs = new LinkedHashSet<>();
+        for (SocksChange change : event.changes()) {
+            pairs.add(new Pair(change.color(), change.cottonPart()));
+        }
+        if (pairs.isEmpty()) {
+            return;
+        }
+
+        String[] colors = new String[pairs.size()];
+        Integer[] cottonParts = new Integer[pairs.size()];
+        int i = 0;
+        for (Pair pair : pairs) {
+            colors[i] = pair.color();
+            cottonParts[i] = pair.cottonPart();
+            i++;
+        }
+        notificationRepository.notifyQuantities(channel, instanceId, colors, cottonParts);
+    }
+
+    private record Pair(String color, int cottonPart) {
+    }
+}
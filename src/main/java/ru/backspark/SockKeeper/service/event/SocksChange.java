@@ -0,0 +1,7 @@
+package ru.backspark.SockKeeper.service.event;
+
+/**
+ * Изменение количества носков одной пары (цвет, процент хлопка) на delta.
+ */
+public record SocksChange(String color, int cottonPart, long delta) {
+}
@@ -0,0 +1,26 @@
+package ru.backspark.SockKeeper.service.event;
+
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Публикуется внутри транзакции, изменившей остатки. Слушатели реагируют на него в нужной фазе транзакции
+ * через @TransactionalEventListener.
+ */
+public record SocksChangedEvent(List<SocksChange> changes) {
+
+    public static SocksChangedEvent of(String color, int cottonPart, long delta) {
+        return new SocksChangedEvent(List.of(new SocksChange(color, cottonPart, delta)));
+    }
+
+    /**
+     * Копирует суммы партии: агрегат переиспользуется для следующей порции до того, как сработают слушатели.
+     */
+    public static SocksChangedEvent of(SocksBatchAggregate aggregate) {
+        List<SocksChange> changes = new ArrayList<>(aggregate.distinctKeys());
+        aggregate.forEach((color, cottonPart, quantity) -> changes.add(new SocksChange(color, cottonPart, quantity)));
+        return new SocksChangedEvent(changes);
+    }
+}
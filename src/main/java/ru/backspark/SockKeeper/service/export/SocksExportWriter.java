@@ -0,0 +1,66 @@
+package ru.backspark.SockKeeper.service.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.model.SocksExportFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Пишет записи выгрузки в поток ответа по одной. Буфер сбрасывается после первой записи и далее
+ * раз в flushEvery записей, чтобы клиент начал получать данные сразу, а не после чтения всего склада.
+ */
+public class SocksExportWriter {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final SocksExportFormat format;
+    private final BufferedOutputStream out;
+    private final int flushEvery;
+    private long written;
+
+    public SocksExportWriter(ObjectMapper objectMapper, SocksExportFormat format, OutputStream out, int flushEvery) {
+        this.objectMapper = objectMapper;
+        this.format = format;
+        this.out = new BufferedOutputStream(out, BUFFER_BYTES);
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    public void write(SocksRsDto socks) throws IOException {
+        out.write(format == SocksExportFormat.NDJSON ? toJsonLine(socks) : toCsvLine(socks));
+        if (++written % flushEvery == 1 || flushEvery == 1) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Сбрасывает остаток буфера и возвращает число записанных записей.
+     */
+    public long finish() throws IOException {
+        out.flush();
+        return written;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    private byte[] toJsonLine(SocksRsDto socks) throws IOException {
+        return (objectMapper.writeValueAsString(socks) + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Строка в том же формате, что принимает загрузка партии: color,cottonPart,quantity.
+     */
+    private static byte[] toCsvLine(SocksRsDto socks) {
+        String color = socks.getColor();
+        if (color.indexOf(',') >= 0 || color.indexOf('"') >= 0) {
+            color = '"' + color.replace("\"", "\"\"") + '"';
+        }
+        return (color + ',' + socks.getCottonPart() + ',' + socks.getQuantity() + '\n').getBytes(StandardCharsets.UTF_8);
+    }
+}
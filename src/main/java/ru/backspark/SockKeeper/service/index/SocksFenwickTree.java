@@ -0,0 +1,39 @@
+package ru.backspark.SockKeeper.service.index;
+
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+
+/**
+ * Дерево Фенвика по проценту хлопка 0..100: изменение количества и сумма по любому диапазону
+ * за O(log 101), то есть не больше семи шагов.
+ * <p>
+ * Не потокобезопасно: доступ согласует {@link SocksQuantityIndex}.
+ */
+final class SocksFenwickTree {
+
+    private static final int SIZE = SocksBatchAggregate.COTTON_PART_VALUES;
+
+    // Ячейка i (с единицы) хранит сумму количеств на отрезке (i - (i & -i), i]
+    private final long[] tree = new long[SIZE + 1];
+
+    void add(int cottonPart, long delta) {
+        for (int i = cottonPart + 1; i <= SIZE; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Сумма количеств с процентом хлопка от minCottonPart до maxCottonPart включительно.
+     */
+    long sum(int minCottonPart, int maxCottonPart) {
+        return prefixSum(maxCottonPart) - prefixSum(minCottonPart - 1);
+    }
+
+    // Сумма количеств с процентом хлопка от 0 до cottonPart включительно; для cottonPart < 0 — 0
+    private long prefixSum(int cottonPart) {
+        long sum = 0;
+        for (int i = cottonPart + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
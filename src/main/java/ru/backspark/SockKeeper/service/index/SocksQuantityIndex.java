@@ -0,0 +1,299 @@
+package ru.backspark.SockKeeper.service.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.repository.SocksSnapshotRepository;
+import ru.backspark.SockKeeper.service.event.SocksChange;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Суммы количеств по проценту хлопка для каждого цвета и для всех цветов сразу: отвечает на подсчет
+ * в диапазоне процента хлопка без запроса к базе.
+ * <p>
+ * Индекс строится из таблицы socks после старта и затем поддерживается изменениями из SocksChangedEvent,
+ * которые применяются после фиксации транзакции — раньше, чем растет версия склада. Изменения других экземпляров
+ * приходят через {@link #set}, если включена согласованность экземпляров; они и сделанные в обход сервиса
+ * подхватываются также повторным построением раз в rebuildInterval.
+ * <p>
+ * Построение читает таблицу, пока другие транзакции продолжают менять остатки. Снимок для чтения берется
+ * под короткой блокировкой таблицы, когда все начатые изменения уже применены к индексу: изменения, примененные
+ * после этого, в снимок не попали, копятся во время чтения и повторяются поверх прочитанного перед заменой индекса.
+ * Неудачное построение повторяется с растущей паузой; пока индекс не построен ни разу, подсчет идет в базу.
+ * <p>
+ * Изменения применяются под общей блокировкой записи целиком, поэтому читатель видит событие либо полностью,
+ * либо никак. Чтение оптимистичное и блокировку не берет, если в это время никто не пишет.
+ */
+@Component
+@ConditionalOnExpression("${socks.quantity-index.enabled:true} and '${socks.engine:database}' == 'database'")
+@Slf4j
+public class SocksQuantityIndex {
+
+    private static final long RETRY_DELAY_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 10_000;
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final SocksSnapshotRepository snapshotRepository;
+    private final SocksProperties socksProperties;
+    private final StampedLock lock = new StampedLock();
+    // Транзакции, опубликовавшие изменения и еще не завершившиеся
+    private final AtomicInteger pending = new AtomicInteger();
+    private Trees trees = new Trees();
+    private boolean built;
+    // Изменения, примененные после снимка текущего построения, в порядке применения
+    private List<Consumer<Trees>> sinceSnapshot;
+    private ScheduledExecutorService maintenance;
+
+    public SocksQuantityIndex(SocksSnapshotRepository snapshotRepository, SocksProperties socksProperties) {
+        this.snapshotRepository = snapshotRepository;
+        this.socksProperties = socksProperties;
+    }
+
+    /**
+     * Строит индекс в фоне после старта, когда схема уже создана миграциями, и затем перестраивает его
+     * раз в rebuildInterval.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "socks-quantity-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.execute(this::buildUntilReady);
+        long intervalMillis = socksProperties.getQuantityIndex().getRebuildInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::rebuildQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+    }
+
+    /**
+     * Количество носков цвета color (null — любого) с процентом хлопка от minCottonPart до maxCottonPart
+     * включительно; пусто, пока индекс не построен.
+     */
+    public OptionalLong sum(String color, int minCottonPart, int maxCottonPart) {
+        long stamp = lock.tryOptimisticRead();
+        boolean ready = built;
+        long sum = trees.sum(color, minCottonPart, maxCottonPart);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                ready = built;
+                sum = trees.sum(color, minCottonPart, maxCottonPart);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return ready ? OptionalLong.of(sum) : OptionalLong.empty();
+    }
+
+    /**
+     * Изменения внутри транзакции применяются после ее фиксации, раньше остальных слушателей.
+     */
+    @EventListener
+    public void onChanged(SocksChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            modify(current -> current.apply(event));
+            return;
+        }
+        pending.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return Ordered.HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCommit() {
+                modify(current -> current.apply(event));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Устанавливает количество пары, зафиксированное другим экземпляром приложения.
+     * <p>
+     * Количества приходят в порядке фиксации транзакций, поэтому более позднее значение пары всегда новее.
+     * Пришедшие во время построения количества повторяются поверх прочитанного: снимок мог их еще не содержать,
+     * а если уже содержал более новые, они придут следующими уведомлениями.
+     */
+    public void set(String color, int cottonPart, long quantity) {
+        modify(current -> current.set(color, cottonPart, quantity));
+    }
+
+    /**
+     * Перестраивает индекс в фоне, повторяя попытки, пока построение не удастся.
+     */
+    public void rebuildSoon() {
+        if (maintenance != null) {
+            maintenance.execute(this::buildUntilReady);
+        }
+    }
+
+    /**
+     * Читает таблицу socks и заменяет индекс прочитанным. Возвращает false, если снимок не удалось взять
+     * без долгой задержки изменений, и индекс оставлен прежним.
+     */
+    public synchronized boolean rebuild() {
+        SocksProperties.QuantityIndex properties = socksProperties.getQuantityIndex();
+        Trees loaded = new Trees();
+        boolean scanned;
+        try {
+            scanned = snapshotRepository.scan(properties.getLockTimeout(), socksProperties.getExport().getFetchSize(),
+                    this::startCollecting, loaded::add);
+        } catch (RuntimeException e) {
+            stopCollecting();
+            throw e;
+        }
+        if (!scanned) {
+            stopCollecting();
+            log.debug("Снимок остатков для индекса сумм не взят, индекс оставлен прежним");
+            return false;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            for (Consumer<Trees> change : sinceSnapshot) {
+                change.accept(loaded);
+            }
+            sinceSnapshot = null;
+            trees = loaded;
+            built = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        log.debug("Индекс сумм построен, цветов: {}", loaded.colorCount());
+        return true;
+    }
+
+    /**
+     * Граница снимка: вызывается, пока таблица socks заблокирована и новые изменения не начинаются.
+     * Дожидается, пока начатые изменения применятся к индексу, и начинает копить следующие.
+     */
+    private boolean startCollecting() {
+        long deadline = System.currentTimeMillis() + socksProperties.getQuantityIndex().getLockTimeout().toMillis();
+        while (pending.get() != 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = lock.writeLock();
+        try {
+            sinceSnapshot = new ArrayList<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return true;
+    }
+
+    private void stopCollecting() {
+        long stamp = lock.writeLock();
+        try {
+            sinceSnapshot = null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void buildUntilReady() {
+        long delay = RETRY_DELAY_MILLIS;
+        try {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                if (rebuildQuietly()) {
+                    log.info("Индекс сумм по проценту хлопка построен");
+                    return;
+                }
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+            log.error("Индекс сумм не построен за {} попыток, следующая попытка через {}", MAX_ATTEMPTS,
+                    socksProperties.getQuantityIndex().getRebuildInterval());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean rebuildQuietly() {
+        try {
+            return rebuild();
+        } catch (RuntimeException e) {
+            log.error("Не удалось построить индекс сумм: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void modify(Consumer<Trees> change) {
+        long stamp = lock.writeLock();
+        try {
+            change.accept(trees);
+            if (sinceSnapshot != null) {
+                sinceSnapshot.add(change);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Деревья по цветам и по всем цветам сразу.
+     */
+    private static final class Trees {
+        private final Map<String, SocksFenwickTree> byColor = new ConcurrentHashMap<>();
+        private final SocksFenwickTree total = new SocksFenwickTree();
+
+        void add(String color, int cottonPart, long delta) {
+            byColor.computeIfAbsent(color, c -> new SocksFenwickTree()).add(cottonPart, delta);
+            total.add(cottonPart, delta);
+        }
+
+        void apply(SocksChangedEvent event) {
+            for (SocksChange change : event.changes()) {
+                add(change.color(), change.cottonPart(), change.delta());
+            }
+        }
+
+        void set(String color, int cottonPart, long quantity) {
+            SocksFenwickTree tree = byColor.get(color);
+            add(color, cottonPart, quantity - (tree != null ? tree.sum(cottonPart, cottonPart) : 0));
+        }
+
+        long sum(String color, int minCottonPart, int maxCottonPart) {
+            SocksFenwickTree tree = color == null ? total : byColor.get(color);
+            return tree != null ? tree.sum(minCottonPart, maxCottonPart) : 0;
+        }
+
+        int colorCount() {
+            return byColor.size();
+        }
+    }
+}
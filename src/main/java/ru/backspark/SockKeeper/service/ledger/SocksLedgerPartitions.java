@@ -0,0 +1,78 @@
+package ru.backspark.SockKeeper.service.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.repository.SocksLedgerRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заранее создает помесячные секции журнала движений: текущий месяц и partitionsAhead следующих.
+ * <p>
+ * Строки, для которых секции нет, попадают в секцию по умолчанию. Секцию за месяц с такими строками создать уже
+ * нельзя, поэтому секции создаются при старте и затем периодически, задолго до начала месяца.
+ */
+@Component
+@Slf4j
+public class SocksLedgerPartitions {
+
+    private final SocksLedgerRepository ledgerRepository;
+    private final SocksProperties.Ledger properties;
+    private ScheduledExecutorService maintenance;
+
+    public SocksLedgerPartitions(SocksLedgerRepository ledgerRepository, SocksProperties socksProperties) {
+        this.ledgerRepository = ledgerRepository;
+        this.properties = socksProperties.getLedger();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!ledgerRepository.isPartitioned()) {
+            log.info("Таблица журнала движений не секционирована, секции не создаются");
+            return;
+        }
+        ensurePartitions();
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "socks-ledger-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.getMaintenanceInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::ensurePartitionsQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+    }
+
+    /**
+     * Создает недостающие секции с текущего месяца по месяц через partitionsAhead.
+     */
+    public void ensurePartitions() {
+        // Границы секций заданы по UTC
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= properties.getPartitionsAhead(); i++) {
+            ledgerRepository.createPartition(current.plusMonths(i));
+        }
+        log.debug("Секции журнала движений созданы по {}", current.plusMonths(properties.getPartitionsAhead()));
+    }
+
+    private void ensurePartitionsQuietly() {
+        try {
+            ensurePartitions();
+        } catch (RuntimeException e) {
+            log.error("Не удалось создать секции журнала движений: {}", e.getMessage(), e);
+        }
+    }
+}
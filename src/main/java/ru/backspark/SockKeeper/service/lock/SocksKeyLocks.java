@@ -0,0 +1,95 @@
+package ru.backspark.SockKeeper.service.lock;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые блокировки по паре (цвет, процент хлопка): пара всегда попадает в одну и ту же полосу,
+ * поэтому изменения одной пары выполняются по очереди, а разные пары почти не мешают друг другу.
+ */
+public class SocksKeyLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Число полос округляется вверх до степени двойки.
+     */
+    public SocksKeyLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public <T> T withLock(String color, int cottonPart, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripe(color, cottonPart)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировками двух пар. Полосы захватываются в порядке номеров,
+     * поэтому встречные вызовы не могут взаимно заблокироваться.
+     */
+    public <T> T withLocks(String color, int cottonPart, String otherColor, int otherCottonPart, Supplier<T> action) {
+        int first = stripe(color, cottonPart);
+        int second = stripe(otherColor, otherCottonPart);
+        if (first == second) {
+            return withLock(color, cottonPart, action);
+        }
+        ReentrantLock lower = stripes[Math.min(first, second)];
+        ReentrantLock upper = stripes[Math.max(first, second)];
+        lower.lock();
+        try {
+            upper.lock();
+            try {
+                return action.get();
+            } finally {
+                upper.unlock();
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировками всех перечисленных пар. Как и в withLocks, полосы захватываются
+     * в порядке номеров. Массивы параллельны.
+     */
+    public <T> T withAllLocks(String[] colors, int[] cottonParts, Supplier<T> action) {
+        int[] indexes = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            indexes[i] = stripe(colors[i], cottonParts[i]);
+        }
+        int[] ordered = Arrays.stream(indexes).sorted().distinct().toArray();
+        int locked = 0;
+        try {
+            for (int index : ordered) {
+                stripes[index].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[ordered[i]].unlock();
+            }
+        }
+    }
+
+    int stripe(String color, int cottonPart) {
+        int hash = color.hashCode() * 31 + cottonPart;
+        // Перемешиваем старшие биты, чтобы соседние проценты хлопка расходились по разным полосам
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash & mask;
+    }
+}
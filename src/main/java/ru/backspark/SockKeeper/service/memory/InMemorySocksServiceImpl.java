@@ -0,0 +1,377 @@
+package ru.backspark.SockKeeper.service.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.error.exception.FileProcessingException;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.model.SocksBatchProgress;
+import ru.backspark.SockKeeper.model.SocksCottonPartRange;
+import ru.backspark.SockKeeper.model.SocksCursor;
+import ru.backspark.SockKeeper.model.SocksExportFormat;
+import ru.backspark.SockKeeper.model.SocksSortOrder;
+import ru.backspark.SockKeeper.model.SocksUpsertResult;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.batch.SocksBatchMetrics;
+import ru.backspark.SockKeeper.service.batch.SocksBatchSpool;
+import ru.backspark.SockKeeper.service.batch.SocksCsvPipeline;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
+import ru.backspark.SockKeeper.service.export.SocksExportWriter;
+import ru.backspark.SockKeeper.service.movement.SocksMovementPlan;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Реализация SocksService поверх склада в памяти (socks.engine=memory). Чтение и запись не обращаются к базе;
+ * цвета при сортировке сравниваются посимвольно, а не по правилам сортировки базы.
+ */
+@Service
+@ConditionalOnProperty(prefix = "socks", name = "engine", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+@Timed("socks.service")
+public class InMemorySocksServiceImpl implements SocksService {
+
+    private static final Comparator<Socks> BY_ID = Comparator.comparing(Socks::getId);
+    private static final Comparator<Socks> BY_COLOR = Comparator.comparing(Socks::getColor)
+            .thenComparing(Socks::getCottonPart)
+            .thenComparing(Socks::getId);
+    private static final Comparator<Socks> BY_COTTON_PART = Comparator.comparing(Socks::getCottonPart)
+            .thenComparing(Socks::getColor)
+            .thenComparing(Socks::getId);
+
+    private final SocksMemoryEngine engine;
+    private final SocksProperties socksProperties;
+    private final SocksCsvPipeline socksCsvPipeline;
+    private final SocksBatchMetrics socksBatchMetrics;
+    private final SocksBatchSpool socksBatchSpool;
+    private final ObjectMapper objectMapper;
+    private final SocksInventoryVersion inventoryVersion;
+
+    @Override
+    public void registerIncome(String color, Integer cottonPart, Integer quantity) {
+        log.debug("Регистрация прихода носков: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+
+        validateQuantity(quantity);
+        validateCottonPart(cottonPart);
+
+        if (engine.add(color, cottonPart, quantity) == SocksMemoryEngine.OVERFLOW) {
+            log.error("Количество носков превысит допустимое значение: color={}, cottonPart={}, quantity={}",
+                    color, cottonPart, quantity);
+            throw new InvalidDataFormatException("Количество носков превышает допустимое значение.");
+        }
+        inventoryVersion.increment();
+        log.debug("Приход зарегистрирован: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+    }
+
+    @Override
+    public void registerOutcome(String color, Integer cottonPart, Integer quantity) {
+        log.debug("Регистрация отпуска носков: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+
+        validateQuantity(quantity);
+        validateCottonPart(cottonPart);
+
+        long previous = engine.subtract(color, cottonPart, quantity);
+        if (previous == SocksMemoryEngine.ABSENT) {
+            log.error("Носки с параметрами color={} и cottonPart={} не найдены", color, cottonPart);
+            throw new SocksNotFoundInWarehouse("Носки с указанными параметрами не найдены.");
+        }
+        if (previous < quantity) {
+            log.error("Недостаточно носков на складе. color={}, cottonPart={}, запрашиваемое количество={}",
+                    color, cottonPart, quantity);
+            throw new InsufficientSocksInWarehouseException("Недостаточно носков на складе для выполнения операции.");
+        }
+        inventoryVersion.increment();
+
+        log.debug("Успешно выполнен отпуск носков. color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+    }
+
+    @Override
+    public SocksMovementsRsDto registerMovements(List<SocksMovementRqDto> movements) {
+        log.debug("Регистрация списка движений носков: строк={}", movements == null ? 0 : movements.size());
+
+        SocksMovementPlan plan = SocksMovementPlan.of(movements, socksProperties.getMovements().getMaxLines());
+        int pairs = plan.pairCount();
+        String[] colors = new String[pairs];
+        int[] cottonParts = new int[pairs];
+        long[] incomes = new long[pairs];
+        long[] outcomes = new long[pairs];
+        for (int pair = 0; pair < pairs; pair++) {
+            colors[pair] = plan.color(pair);
+            cottonParts[pair] = plan.cottonPart(pair);
+            incomes[pair] = plan.income(pair);
+            outcomes[pair] = plan.outcome(pair);
+        }
+
+        long[] before = new long[pairs];
+        if (engine.applyAll(colors, cottonParts, incomes, outcomes, before)) {
+            inventoryVersion.increment();
+            long[] remaining = new long[pairs];
+            for (int pair = 0; pair < pairs; pair++) {
+                remaining[pair] = (before[pair] == SocksMemoryEngine.ABSENT ? 0 : before[pair]) + incomes[pair] - outcomes[pair];
+            }
+            log.debug("Список движений применен: строк={}, пар={}", plan.size(), pairs);
+            return plan.applied(remaining);
+        }
+
+        Long[] available = new Long[pairs];
+        for (int pair = 0; pair < pairs; pair++) {
+            long stock = before[pair] == SocksMemoryEngine.ABSENT ? 0 : before[pair];
+            if (stock + incomes[pair] > Integer.MAX_VALUE) {
+                log.error("Количество носков превысит допустимое значение: color={}, cottonPart={}, quantity={}",
+                        colors[pair], cottonParts[pair], incomes[pair]);
+                throw new InvalidDataFormatException("Количество носков превышает допустимое значение.");
+            }
+            if (before[pair] != SocksMemoryEngine.ABSENT || incomes[pair] > 0) {
+                available[pair] = stock + incomes[pair];
+            }
+        }
+        log.error("Список движений отклонен: строк={}, пар={}", plan.size(), pairs);
+        return plan.rejected(available);
+    }
+
+    @Override
+    public SocksPageRsDto getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy,
+                                   Integer limit, String cursor) {
+        log.debug("Получение списка носков с фильтрами: color={}, minCottonPart={}, maxCottonPart={}, sortBy={}, limit={}, cursor={}",
+                color, minCottonPart, maxCottonPart, sortBy, limit, cursor);
+
+        SocksSortOrder order = SocksSortOrder.fromParam(sortBy);
+        int pageSize = resolveLimit(limit);
+        Comparator<Socks> comparator = switch (order) {
+            case ID -> BY_ID;
+            case COLOR -> BY_COLOR;
+            case COTTON_PART -> BY_COTTON_PART;
+        };
+        Socks after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            SocksCursor decoded = SocksCursor.decode(cursor, order);
+            after = Socks.builder().id(decoded.id()).color(decoded.color()).cottonPart(decoded.cottonPart()).build();
+        }
+
+        Socks position = after;
+        List<Socks> matching = new ArrayList<>();
+        engine.forEach(color, minCottonPart, maxCottonPart, (id, c, cottonPart, quantity) -> {
+            Socks socks = Socks.builder().id(id).color(c).cottonPart(cottonPart).quantity((int) quantity).build();
+            if (position == null || comparator.compare(socks, position) > 0) {
+                matching.add(socks);
+            }
+        });
+        matching.sort(comparator);
+
+        // Одна лишняя запись показывает, есть ли следующая страница
+        boolean hasMore = matching.size() > pageSize;
+        List<Socks> socksList = hasMore ? matching.subList(0, pageSize) : matching;
+        List<SocksRsDto> result = socksList.stream()
+                .map(InMemorySocksServiceImpl::toDto)
+                .toList();
+
+        log.debug("Найдено записей: {}, есть следующая страница: {}", result.size(), hasMore);
+        return SocksPageRsDto.builder()
+                .items(result)
+                .nextCursor(hasMore ? SocksCursor.after(order, socksList.get(socksList.size() - 1)).encode() : null)
+                .build();
+    }
+
+    @Override
+    public long countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                           Integer cottonPart, Integer cottonPartTo) {
+        log.debug("Подсчет носков: color={}, minCottonPart={}, maxCottonPart={}, operation={}, cottonPart={}, cottonPartTo={}",
+                color, minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+
+        SocksCottonPartRange range = SocksCottonPartRange.resolve(minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+        long count = range.isEmpty() ? 0 : engine.sum(color, range.min(), range.max());
+        log.debug("Количество носков: {}", count);
+        return count;
+    }
+
+    @Override
+    public long countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                           Integer cottonPart, Integer cottonPartTo, OffsetDateTime asOf) {
+        // Журнал движений ведется только в транзакциях базы
+        log.error("Запрошено количество носков на момент {} при складе в памяти", asOf);
+        throw new InvalidDataFormatException("Количество на момент времени доступно только при socks.engine: database.");
+    }
+
+    @Override
+    public void exportSocks(String color, Integer minCottonPart, Integer maxCottonPart, SocksExportFormat format,
+                            OutputStream out) throws IOException {
+        log.debug("Выгрузка носков: color={}, minCottonPart={}, maxCottonPart={}, format={}",
+                color, minCottonPart, maxCottonPart, format);
+
+        SocksExportWriter writer = new SocksExportWriter(objectMapper, format, out, socksProperties.getExport().getFetchSize());
+        try {
+            engine.forEach(color, minCottonPart, maxCottonPart, (id, c, cottonPart, quantity) -> {
+                try {
+                    writer.write(new SocksRsDto(id, c, cottonPart, (int) quantity));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.warn("Выгрузка прервана после {} записей: {}", writer.getWritten(), e.getMessage());
+            throw e.getCause();
+        }
+
+        log.debug("Выгружено записей: {}", writer.finish());
+    }
+
+    @Override
+    public SocksRsDto updateSocks(Long id, String color, Integer cottonPart, Integer quantity) {
+        log.debug("Обновление носков: id={}, color={}, cottonPart={}, quantity={}", id, color, cottonPart, quantity);
+
+        validateCottonPart(cottonPart);
+        validateQuantity(quantity);
+
+        long newId = engine.update(id, color, cottonPart, quantity);
+        if (newId == SocksMemoryEngine.NOT_FOUND) {
+            log.error("Носки с id={} не найдены", id);
+            throw new SocksNotFoundInWarehouse("Носки с указанным ID не найдены.");
+        }
+        if (newId == SocksMemoryEngine.CONFLICT) {
+            log.error("Носки с параметрами color={} и cottonPart={} уже существуют", color, cottonPart);
+            throw new InvalidDataFormatException("Носки с указанными параметрами уже существуют.");
+        }
+
+        inventoryVersion.increment();
+        log.debug("Носки обновлены: id={}, новый id={}", id, newId);
+        return SocksRsDto.builder()
+                .id(newId)
+                .color(color)
+                .cottonPart(cottonPart)
+                .quantity(quantity)
+                .build();
+    }
+
+    @Override
+    public SocksBatchRsDto processSocksBatch(MultipartFile file) {
+        log.debug("Обработка файла партии носков: имя файла={}", file.getOriginalFilename());
+
+        if (file.isEmpty()) {
+            log.error("Файл пустой");
+            throw new FileProcessingException("Файл не может быть пустым.");
+        }
+
+        // Весь файл сначала суммируется и применяется целиком: при ошибке разбора или переполнении
+        // склад не меняется, как и при транзакции в базе
+        SocksBatchProgress progress = new SocksBatchProgress();
+        SocksBatchAggregate total = new SocksBatchAggregate();
+        Path spoolFile = null;
+        try {
+            spoolFile = socksBatchSpool.save(file);
+            socksCsvPipeline.run(spoolFile, progress, total::addAll);
+            writeAll(total, progress);
+        } catch (Exception e) {
+            socksBatchMetrics.recordFailed(progress, e, false);
+            log.error("Ошибка при обработке файла: {}", e.getMessage(), e);
+            throw new FileProcessingException("Ошибка при обработке файла: " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(spoolFile);
+        }
+
+        socksBatchMetrics.recordApplied(progress);
+        log.debug("Успешно обработано строк: {}, пар: {}, создано: {}, обновлено: {}",
+                progress.getLinesRead(), progress.getDistinctKeys(), progress.getInserted(), progress.getUpdated());
+
+        return SocksBatchRsDto.builder()
+                .linesRead(progress.getLinesRead())
+                .distinctKeys(progress.getDistinctKeys())
+                .inserted(progress.getInserted())
+                .updated(progress.getUpdated())
+                .build();
+    }
+
+    @Override
+    public void importSocksBatch(Path file, SocksBatchProgress progress) {
+        log.debug("Загрузка партии носков из файла: {}", file);
+
+        try {
+            socksCsvPipeline.run(file, progress, aggregate -> writeAll(aggregate, progress));
+        } catch (Exception e) {
+            socksBatchMetrics.recordFailed(progress, e, true);
+            log.error("Ошибка при обработке файла: {}", e.getMessage(), e);
+            throw new FileProcessingException("Ошибка при обработке файла: " + e.getMessage(), e);
+        }
+
+        socksBatchMetrics.recordApplied(progress);
+        log.debug("Успешно обработано строк: {}, пар: {}, создано: {}, обновлено: {}",
+                progress.getLinesRead(), progress.getDistinctKeys(), progress.getInserted(), progress.getUpdated());
+    }
+
+    private void writeAll(SocksBatchAggregate aggregate, SocksBatchProgress progress) {
+        SocksUpsertResult result = engine.addAll(aggregate);
+        if (result == null) {
+            throw new InvalidDataFormatException("Количество носков превышает допустимое значение.");
+        }
+        progress.addWritten(aggregate, result);
+        inventoryVersion.increment();
+    }
+
+    private static SocksRsDto toDto(Socks socks) {
+        return SocksRsDto.builder()
+                .id(socks.getId())
+                .color(socks.getColor())
+                .cottonPart(socks.getCottonPart())
+                .quantity(socks.getQuantity())
+                .build();
+    }
+
+    private int resolveLimit(Integer limit) {
+        SocksProperties.Page page = socksProperties.getPage();
+        if (limit == null) {
+            return page.getDefaultLimit();
+        }
+        if (limit < 1 || limit > page.getMaxLimit()) {
+            log.error("Недопустимое значение limit: {}", limit);
+            throw new InvalidDataFormatException("Параметр limit должен быть в диапазоне 1-" + page.getMaxLimit() + ".");
+        }
+        return limit;
+    }
+
+    private void validateQuantity(Integer quantity) {
+        if (quantity <= 0) {
+            log.error("Количество должно быть положительным. Переданное значение: {}", quantity);
+            throw new InvalidDataFormatException("Количество должно быть положительным.");
+        }
+    }
+
+    private void validateCottonPart(Integer cottonPart) {
+        if (cottonPart < 0 || cottonPart > 100) {
+            log.error("Процент хлопка должен быть в диапазоне 0-100. Переданное значение: {}", cottonPart);
+            throw new InvalidDataFormatException("Процент хлопка должен быть в диапазоне 0-100.");
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}: {}", file, e.getMessage());
+        }
+    }
+}
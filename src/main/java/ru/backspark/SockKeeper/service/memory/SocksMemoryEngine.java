@@ -0,0 +1,537 @@
+package ru.backspark.SockKeeper.service.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.model.SocksUpsertResult;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.lock.SocksKeyLocks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Склад в памяти: изменения выполняются под полосатой блокировкой пары и записываются в журнал на диске,
+ * таблица socks догоняет состояние в фоне.
+ * <p>
+ * Идентификатор записи вычисляется из номера цвета и процента хлопка, поэтому не хранится и не меняется,
+ * пока пара существует. Номера цветов переживают перезапуск вместе с журналом и снимками.
+ */
+@Component
+@ConditionalOnProperty(prefix = "socks", name = "engine", havingValue = "memory")
+@Slf4j
+public class SocksMemoryEngine {
+
+    /**
+     * Пары не было: add создал ее, subtract ничего не изменил.
+     */
+    public static final long ABSENT = SocksMemoryStore.ABSENT;
+
+    /**
+     * add отклонен: количество не помещается в столбец quantity.
+     */
+    public static final long OVERFLOW = -2;
+
+    /**
+     * update: запись с идентификатором не найдена.
+     */
+    public static final long NOT_FOUND = -1;
+
+    /**
+     * update: целевая пара уже занята другой записью.
+     */
+    public static final long CONFLICT = -2;
+
+    private static final int COTTON_PART_VALUES = SocksBatchAggregate.COTTON_PART_VALUES;
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final Pattern SEGMENT = Pattern.compile("wal-(\\d+)\\.log");
+
+    private final SocksProperties.Memory properties;
+    private final SocksRepository socksRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SocksMemoryStore store = new SocksMemoryStore();
+    private final SocksKeyLocks locks;
+    private final Path dir;
+
+    private SocksWriteAheadLog wal;
+    private ScheduledExecutorService maintenance;
+    private volatile boolean reconcilePending;
+
+    public SocksMemoryEngine(SocksProperties socksProperties, SocksRepository socksRepository,
+                             TransactionTemplate transactionTemplate) {
+        this.properties = socksProperties.getMemory();
+        this.socksRepository = socksRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.locks = new SocksKeyLocks(properties.getLockStripes());
+        this.dir = Path.of(properties.getDir());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(dir);
+        long snapshot = latest(SNAPSHOT);
+        List<Long> segments = numbers(SEGMENT);
+
+        SocksWriteAheadLog.Replayer replayer = new SocksWriteAheadLog.Replayer() {
+            @Override
+            public void color(int colorId, String color) {
+                store.define(colorId, color);
+            }
+
+            @Override
+            public void set(int colorId, int cottonPart, long quantity) {
+                store.set(colorId, cottonPart, quantity);
+            }
+        };
+        // Первый сегмент создается только после первого снимка, поэтому без снимка журнал не содержит изменений:
+        // сегменты без снимка остаются от запуска, оборвавшегося до его записи, и склад заполняется из базы заново
+        boolean fresh = snapshot < 0;
+        if (fresh) {
+            if (!segments.isEmpty()) {
+                log.warn("Найдены сегменты журнала без снимка, склад в памяти заполняется из базы заново");
+            }
+            seedFromDatabase();
+        } else {
+            SocksSnapshots.read(SocksSnapshots.snapshotFile(dir, snapshot), replayer);
+            for (long segment : segments) {
+                if (segment >= snapshot) {
+                    SocksWriteAheadLog.replay(SocksWriteAheadLog.segmentFile(dir, segment), replayer);
+                }
+            }
+        }
+        // Восстановленное состояние переносится в таблицу целиком, отметки отдельных пар не нужны
+        for (int colorId = 0; colorId < store.colorCount(); colorId++) {
+            store.takeDirty(colorId);
+        }
+        reconcilePending = !fresh;
+
+        // Дописывать в сегмент, который мог оборваться при сбое, нельзя: сохраняем снимок и начинаем с него новый
+        long next = Math.max(snapshot, segments.isEmpty() ? -1 : segments.get(segments.size() - 1)) + 1;
+        SocksSnapshots.write(dir, next, store, store.colorCount());
+        wal = new SocksWriteAheadLog(dir, next, true);
+        deleteBefore(next);
+        log.info("Склад в памяти восстановлен: цветов {}, журнал с сегмента {}", store.colorCount(), next);
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "socks-memory-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long syncMillis = properties.getDatabaseSyncInterval().toMillis();
+        long snapshotMillis = properties.getSnapshotInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::syncQuietly, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::snapshotQuietly, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        maintenance.shutdown();
+        maintenance.awaitTermination(1, TimeUnit.MINUTES);
+        syncQuietly();
+        wal.close();
+    }
+
+    public static long id(int colorId, int cottonPart) {
+        return (long) colorId * COTTON_PART_VALUES + cottonPart + 1;
+    }
+
+    /**
+     * Увеличивает количество пары, создавая ее при необходимости. Возвращает прежнее количество, ABSENT или OVERFLOW.
+     */
+    public long add(String color, int cottonPart, long quantity) {
+        int colorId = store.intern(color, newId -> wal.appendColor(newId, color));
+        long[] sequence = {0};
+        long previous = locks.withLock(color, cottonPart, () -> {
+            long current = store.get(colorId, cottonPart);
+            long next = (current == ABSENT ? 0 : current) + quantity;
+            if (next > Integer.MAX_VALUE) {
+                return OVERFLOW;
+            }
+            store.set(colorId, cottonPart, next);
+            sequence[0] = wal.appendSet(colorId, cottonPart, next);
+            return current;
+        });
+        awaitDurable(sequence[0]);
+        return previous;
+    }
+
+    /**
+     * Уменьшает количество пары, если его хватает. Возвращает прежнее количество или ABSENT;
+     * при прежнем количестве меньше quantity ничего не меняется.
+     */
+    public long subtract(String color, int cottonPart, long quantity) {
+        int colorId = store.colorId(color);
+        if (colorId < 0) {
+            return ABSENT;
+        }
+        long[] sequence = {0};
+        long previous = locks.withLock(color, cottonPart, () -> {
+            long current = store.get(colorId, cottonPart);
+            if (current != ABSENT && current >= quantity) {
+                store.set(colorId, cottonPart, current - quantity);
+                sequence[0] = wal.appendSet(colorId, cottonPart, current - quantity);
+            }
+            return current;
+        });
+        awaitDurable(sequence[0]);
+        return previous;
+    }
+
+    /**
+     * Переносит запись на пару (color, cottonPart) с количеством quantity.
+     * Возвращает новый идентификатор записи, NOT_FOUND или CONFLICT.
+     */
+    public long update(long id, String color, int cottonPart, long quantity) {
+        if (id < 1 || (id - 1) / COTTON_PART_VALUES >= store.colorCount()) {
+            return NOT_FOUND;
+        }
+        int sourceColorId = (int) ((id - 1) / COTTON_PART_VALUES);
+        int sourceCottonPart = (int) ((id - 1) % COTTON_PART_VALUES);
+        String sourceColor = store.color(sourceColorId);
+
+        long[] sequence = {0};
+        long result = locks.withLocks(sourceColor, sourceCottonPart, color, cottonPart, () -> {
+            if (store.get(sourceColorId, sourceCottonPart) == ABSENT) {
+                return NOT_FOUND;
+            }
+            // Цвет заводится только для существующей записи
+            int targetColorId = store.intern(color, newId -> wal.appendColor(newId, color));
+            boolean moved = sourceColorId != targetColorId || sourceCottonPart != cottonPart;
+            if (moved && store.get(targetColorId, cottonPart) != ABSENT) {
+                return CONFLICT;
+            }
+            if (moved) {
+                store.set(sourceColorId, sourceCottonPart, ABSENT);
+                wal.appendSet(sourceColorId, sourceCottonPart, ABSENT);
+            }
+            store.set(targetColorId, cottonPart, quantity);
+            sequence[0] = wal.appendSet(targetColorId, cottonPart, quantity);
+            return id(targetColorId, cottonPart);
+        });
+        awaitDurable(sequence[0]);
+        return result;
+    }
+
+    /**
+     * Добавляет суммы партии целиком или никак: под блокировками всех пар проверяет, что ни одно количество
+     * не переполнится, и только потом меняет количества. Возвращает null, если партия отклонена.
+     */
+    public SocksUpsertResult addAll(SocksBatchAggregate aggregate) {
+        int size = aggregate.distinctKeys();
+        String[] colors = new String[size];
+        int[] cottonParts = new int[size];
+        long[] quantities = new long[size];
+        int[] index = {0};
+        aggregate.forEach((color, cottonPart, quantity) -> {
+            colors[index[0]] = color;
+            cottonParts[index[0]] = cottonPart;
+            quantities[index[0]] = quantity;
+            index[0]++;
+        });
+
+        long[] sequence = {0};
+        SocksUpsertResult result = locks.withAllLocks(colors, cottonParts, () -> {
+            long[] before = new long[size];
+            for (int i = 0; i < size; i++) {
+                // Цвета заводятся только после проверки: отклоненная партия не оставляет следов
+                int colorId = store.colorId(colors[i]);
+                before[i] = colorId < 0 ? ABSENT : store.get(colorId, cottonParts[i]);
+                if ((before[i] == ABSENT ? 0 : before[i]) + quantities[i] > Integer.MAX_VALUE) {
+                    return null;
+                }
+            }
+            int inserted = 0;
+            for (int i = 0; i < size; i++) {
+                String color = colors[i];
+                int colorId = store.intern(color, newId -> wal.appendColor(newId, color));
+                long next = (before[i] == ABSENT ? 0 : before[i]) + quantities[i];
+                store.set(colorId, cottonParts[i], next);
+                sequence[0] = Math.max(sequence[0], wal.appendSet(colorId, cottonParts[i], next));
+                if (before[i] == ABSENT) {
+                    inserted++;
+                }
+            }
+            return new SocksUpsertResult(inserted, size - inserted);
+        });
+        // Одно ожидание на всю партию: ее записи фиксируются на диске вместе
+        awaitDurable(sequence[0]);
+        return result;
+    }
+
+    /**
+     * Применяет приходы и отпуски нескольких пар целиком или никак: под блокировками всех пар проверяет, что
+     * каждой паре хватает носков с учетом ее прихода и что количество не переполнится, и только потом меняет
+     * количества. В before возвращаются количества пар до изменения (ABSENT — пары нет). Массивы параллельны.
+     */
+    public boolean applyAll(String[] colors, int[] cottonParts, long[] incomes, long[] outcomes, long[] before) {
+        int[] colorIds = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            String color = colors[i];
+            // Цвет заводится только для прихода: отпуск несуществующего цвета и так будет отклонен
+            colorIds[i] = incomes[i] > 0 ? store.intern(color, newId -> wal.appendColor(newId, color)) : store.colorId(color);
+        }
+
+        long[] sequence = {0};
+        boolean applied = locks.withAllLocks(colors, cottonParts, () -> {
+            boolean accepted = true;
+            for (int i = 0; i < colors.length; i++) {
+                before[i] = colorIds[i] < 0 ? ABSENT : store.get(colorIds[i], cottonParts[i]);
+                if (before[i] == ABSENT && incomes[i] == 0) {
+                    accepted = false;
+                    continue;
+                }
+                long next = (before[i] == ABSENT ? 0 : before[i]) + incomes[i] - outcomes[i];
+                if (next < 0 || next + outcomes[i] > Integer.MAX_VALUE) {
+                    accepted = false;
+                }
+            }
+            if (!accepted) {
+                return false;
+            }
+            for (int i = 0; i < colors.length; i++) {
+                long next = (before[i] == ABSENT ? 0 : before[i]) + incomes[i] - outcomes[i];
+                store.set(colorIds[i], cottonParts[i], next);
+                sequence[0] = Math.max(sequence[0], wal.appendSet(colorIds[i], cottonParts[i], next));
+            }
+            return true;
+        });
+        awaitDurable(sequence[0]);
+        return applied;
+    }
+
+    /**
+     * Обходит существующие пары, подходящие под фильтр, в порядке идентификаторов.
+     */
+    public void forEach(String color, Integer minCottonPart, Integer maxCottonPart, Visitor visitor) {
+        int from = minCottonPart != null ? Math.max(minCottonPart, 0) : 0;
+        int to = maxCottonPart != null ? Math.min(maxCottonPart, COTTON_PART_VALUES - 1) : COTTON_PART_VALUES - 1;
+        if (color != null && !color.isBlank()) {
+            int colorId = store.colorId(color);
+            if (colorId >= 0) {
+                visitColor(colorId, from, to, visitor);
+            }
+            return;
+        }
+        int colorCount = store.colorCount();
+        for (int colorId = 0; colorId < colorCount; colorId++) {
+            visitColor(colorId, from, to, visitor);
+        }
+    }
+
+    /**
+     * Сумма количеств пар, подходящих под фильтр.
+     */
+    public long sum(String color, int minCottonPart, int maxCottonPart) {
+        long[] total = {0};
+        forEach(color, minCottonPart, maxCottonPart, (id, c, cottonPart, quantity) -> total[0] += quantity);
+        return total[0];
+    }
+
+    /**
+     * Сохраняет снимок и удаляет сегменты журнала, полностью вошедшие в него.
+     */
+    public synchronized void snapshot() throws IOException {
+        long[] segment = new long[1];
+        int colorCount = store.withColorsFrozen(() -> {
+            try {
+                // Все цвета из закрываемых сегментов уже зарегистрированы и попадут в снимок
+                segment[0] = wal.rotate();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return store.colorCount();
+        });
+        // Изменения, идущие во время записи снимка, есть в новом сегменте и будут применены поверх него
+        SocksSnapshots.write(dir, segment[0], store, colorCount);
+        deleteBefore(segment[0]);
+        log.info("Сохранен снимок склада в памяти: цветов {}, сегмент {}", colorCount, segment[0]);
+    }
+
+    /**
+     * Переносит в таблицу socks пары, измененные с прошлого переноса.
+     */
+    public synchronized void syncToDatabase() {
+        if (reconcilePending) {
+            reconcile();
+            reconcilePending = false;
+            return;
+        }
+        int colorCount = store.colorCount();
+        long[][] taken = new long[colorCount][];
+        List<String> upsertColors = new ArrayList<>();
+        List<Integer> upsertCottonParts = new ArrayList<>();
+        List<Integer> upsertQuantities = new ArrayList<>();
+        List<String> deleteColors = new ArrayList<>();
+        List<Integer> deleteCottonParts = new ArrayList<>();
+        for (int colorId = 0; colorId < colorCount; colorId++) {
+            // Отметки снимаются до чтения количеств: изменение после чтения снова поставит отметку
+            long[] dirty = store.takeDirty(colorId);
+            if (dirty[0] == 0 && dirty[1] == 0) {
+                continue;
+            }
+            taken[colorId] = dirty;
+            for (int cottonPart = 0; cottonPart < COTTON_PART_VALUES; cottonPart++) {
+                if ((dirty[cottonPart >>> 6] & (1L << cottonPart)) == 0) {
+                    continue;
+                }
+                long quantity = store.get(colorId, cottonPart);
+                if (quantity == ABSENT) {
+                    deleteColors.add(store.color(colorId));
+                    deleteCottonParts.add(cottonPart);
+                } else {
+                    upsertColors.add(store.color(colorId));
+                    upsertCottonParts.add(cottonPart);
+                    upsertQuantities.add((int) quantity);
+                }
+            }
+        }
+        if (upsertColors.isEmpty() && deleteColors.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!deleteColors.isEmpty()) {
+                    socksRepository.deleteByColorAndCottonPart(
+                            deleteColors.toArray(new String[0]), deleteCottonParts.toArray(new Integer[0]));
+                }
+                if (!upsertColors.isEmpty()) {
+                    socksRepository.replaceQuantities(upsertColors.toArray(new String[0]),
+                            upsertCottonParts.toArray(new Integer[0]), upsertQuantities.toArray(new Integer[0]));
+                }
+            });
+        } catch (RuntimeException e) {
+            for (int colorId = 0; colorId < colorCount; colorId++) {
+                if (taken[colorId] != null) {
+                    store.restoreDirty(colorId, taken[colorId]);
+                }
+            }
+            throw e;
+        }
+        log.debug("Перенесено в базу: изменено пар {}, удалено пар {}", upsertColors.size(), deleteColors.size());
+    }
+
+    private void awaitDurable(long sequence) {
+        if (properties.isSyncWrites() && sequence > 0) {
+            wal.awaitDurable(sequence);
+        }
+    }
+
+    private void visitColor(int colorId, int from, int to, Visitor visitor) {
+        String color = store.color(colorId);
+        for (int cottonPart = from; cottonPart <= to; cottonPart++) {
+            long quantity = store.get(colorId, cottonPart);
+            if (quantity != ABSENT) {
+                visitor.visit(id(colorId, cottonPart), color, cottonPart, quantity);
+            }
+        }
+    }
+
+    private void seedFromDatabase() {
+        int[] rows = {0};
+        transactionTemplate.executeWithoutResult(status ->
+                socksRepository.forEach(null, null, null, 1000, socks -> {
+                    int colorId = store.intern(socks.getColor(), newId -> {
+                    });
+                    store.set(colorId, socks.getCottonPart(), socks.getQuantity());
+                    rows[0]++;
+                }));
+        log.info("Склад в памяти заполнен из базы: записей {}", rows[0]);
+    }
+
+    /**
+     * Приводит таблицу socks в точное соответствие с памятью после восстановления из журнала.
+     * <p>
+     * Пустой склад при непустой таблице скорее говорит о потерянном журнале, чем о проданных носках,
+     * поэтому таблица в этом случае не очищается.
+     */
+    private void reconcile() {
+        List<String> colors = new ArrayList<>();
+        List<Integer> cottonParts = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        forEach(null, null, null, (id, color, cottonPart, quantity) -> {
+            colors.add(color);
+            cottonParts.add(cottonPart);
+            quantities.add((int) quantity);
+        });
+        String[] colorArray = colors.toArray(new String[0]);
+        Integer[] cottonPartArray = cottonParts.toArray(new Integer[0]);
+        boolean reconciled = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (colors.isEmpty() && socksRepository.count() > 0) {
+                return false;
+            }
+            socksRepository.deleteAllExcept(colorArray, cottonPartArray);
+            socksRepository.replaceQuantities(colorArray, cottonPartArray, quantities.toArray(new Integer[0]));
+            return true;
+        }));
+        if (!reconciled) {
+            log.error("Склад в памяти пуст, а таблица socks нет: сверка пропущена, таблица оставлена как есть");
+            return;
+        }
+        log.info("Таблица socks сверена со складом в памяти: пар {}", colors.size());
+    }
+
+    private void syncQuietly() {
+        try {
+            syncToDatabase();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось перенести изменения склада в базу, повтор при следующем запуске: {}", e.getMessage());
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось сохранить снимок склада в памяти", e);
+        }
+    }
+
+    private long latest(Pattern pattern) throws IOException {
+        List<Long> numbers = numbers(pattern);
+        return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+    }
+
+    private List<Long> numbers(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void deleteBefore(long segment) throws IOException {
+        for (long number : numbers(SEGMENT)) {
+            if (number < segment) {
+                Files.deleteIfExists(SocksWriteAheadLog.segmentFile(dir, number));
+            }
+        }
+        for (long number : numbers(SNAPSHOT)) {
+            if (number < segment) {
+                Files.deleteIfExists(SocksSnapshots.snapshotFile(dir, number));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(long id, String color, int cottonPart, long quantity);
+    }
+}
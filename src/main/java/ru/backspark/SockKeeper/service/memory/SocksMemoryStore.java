@@ -0,0 +1,141 @@
+package ru.backspark.SockKeeper.service.memory;
+
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Остатки склада в памяти. Цвет заменяется на номер в порядке первого появления, для каждого цвета хранится
+ * массив из 101 количества по проценту хлопка; отсутствующая пара обозначается значением ABSENT.
+ * <p>
+ * Хранилище не упорядочивает записи: изменения одной пары должны выполняться под ее блокировкой.
+ * Чтение без блокировки видит последнее записанное значение каждой пары.
+ */
+class SocksMemoryStore {
+
+    static final long ABSENT = -1;
+
+    private final Map<String, Integer> colorIds = new ConcurrentHashMap<>();
+    private final Object colorLock = new Object();
+    private volatile ColorSlot[] slots = new ColorSlot[16];
+    private volatile int colorCount;
+
+    /**
+     * Номер цвета или -1, если цвет еще не встречался.
+     */
+    int colorId(String color) {
+        Integer id = colorIds.get(color);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Номер цвета; новый цвет регистрируется, и до его публикации вызывается onNewColor,
+     * например чтобы записать цвет в журнал раньше первого изменения его пар.
+     */
+    int intern(String color, IntConsumer onNewColor) {
+        Integer id = colorIds.get(color);
+        if (id != null) {
+            return id;
+        }
+        synchronized (colorLock) {
+            id = colorIds.get(color);
+            if (id != null) {
+                return id;
+            }
+            int newId = colorCount;
+            onNewColor.accept(newId);
+            define(newId, color);
+            return newId;
+        }
+    }
+
+    /**
+     * Регистрирует цвет под заданным номером при восстановлении. Номера идут подряд с нуля.
+     */
+    void define(int id, String color) {
+        synchronized (colorLock) {
+            if (id < colorCount) {
+                return;
+            }
+            if (id != colorCount) {
+                throw new IllegalStateException("Пропущен номер цвета " + colorCount + " перед " + id);
+            }
+            ColorSlot[] current = slots;
+            if (id == current.length) {
+                ColorSlot[] grown = new ColorSlot[current.length * 2];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            current[id] = new ColorSlot(color);
+            slots = current;
+            colorIds.put(color, id);
+            colorCount = id + 1;
+        }
+    }
+
+    /**
+     * Выполняет действие под блокировкой регистрации цветов: пока оно идет, новые цвета не появляются.
+     */
+    <T> T withColorsFrozen(Supplier<T> action) {
+        synchronized (colorLock) {
+            return action.get();
+        }
+    }
+
+    int colorCount() {
+        return colorCount;
+    }
+
+    String color(int colorId) {
+        return slots[colorId].color;
+    }
+
+    long get(int colorId, int cottonPart) {
+        return slots[colorId].quantities.get(cottonPart);
+    }
+
+    /**
+     * Устанавливает количество пары и помечает ее для записи в базу.
+     */
+    void set(int colorId, int cottonPart, long quantity) {
+        ColorSlot slot = slots[colorId];
+        slot.quantities.set(cottonPart, quantity);
+        int word = cottonPart >>> 6;
+        long bit = 1L << cottonPart;
+        slot.dirty.getAndUpdate(word, bits -> bits | bit);
+    }
+
+    /**
+     * Снимает и возвращает отметки измененных пар цвета: два слова по 64 бита на 101 процент хлопка.
+     */
+    long[] takeDirty(int colorId) {
+        ColorSlot slot = slots[colorId];
+        return new long[]{slot.dirty.getAndSet(0, 0), slot.dirty.getAndSet(1, 0)};
+    }
+
+    /**
+     * Возвращает отметки, снятые takeDirty, если записать пары в базу не удалось.
+     */
+    void restoreDirty(int colorId, long[] dirty) {
+        ColorSlot slot = slots[colorId];
+        slot.dirty.getAndUpdate(0, bits -> bits | dirty[0]);
+        slot.dirty.getAndUpdate(1, bits -> bits | dirty[1]);
+    }
+
+    private static final class ColorSlot {
+        private final String color;
+        private final AtomicLongArray quantities = new AtomicLongArray(SocksBatchAggregate.COTTON_PART_VALUES);
+        private final AtomicLongArray dirty = new AtomicLongArray(2);
+
+        private ColorSlot(String color) {
+            this.color = color;
+            for (int cottonPart = 0; cottonPart < SocksBatchAggregate.COTTON_PART_VALUES; cottonPart++) {
+                quantities.set(cottonPart, ABSENT);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.backspark.SockKeeper.service.memory;
+
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимки состояния склада в памяти: список цветов по номерам и 101 количество на каждый цвет.
+ */
+final class SocksSnapshots {
+
+    private static final int MAGIC = 0x534F434B;
+    private static final int VERSION = 1;
+
+    private SocksSnapshots() {
+    }
+
+    static Path snapshotFile(Path dir, long segment) {
+        return dir.resolve(String.format("snapshot-%020d.bin", segment));
+    }
+
+    /**
+     * Пишет первые colorCount цветов хранилища. Файл появляется под своим именем только целиком и после fsync.
+     */
+    static void write(Path dir, long segment, SocksMemoryStore store, int colorCount) throws IOException {
+        Path target = snapshotFile(dir, segment);
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(colorCount);
+            for (int colorId = 0; colorId < colorCount; colorId++) {
+                out.writeUTF(store.color(colorId));
+                for (int cottonPart = 0; cottonPart < SocksBatchAggregate.COTTON_PART_VALUES; cottonPart++) {
+                    out.writeLong(store.get(colorId, cottonPart));
+                }
+            }
+            out.flush();
+            // Контрольная сумма не входит в саму себя, поэтому пишется мимо CheckedOutputStream
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static void read(Path file, SocksWriteAheadLog.Replayer replayer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Неизвестный формат снимка " + file);
+            }
+            int colorCount = in.readInt();
+            for (int colorId = 0; colorId < colorCount; colorId++) {
+                replayer.color(colorId, in.readUTF());
+                for (int cottonPart = 0; cottonPart < SocksBatchAggregate.COTTON_PART_VALUES; cottonPart++) {
+                    long quantity = in.readLong();
+                    if (quantity != SocksMemoryStore.ABSENT) {
+                        replayer.set(colorId, cottonPart, quantity);
+                    }
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Снимок " + file + " поврежден");
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package ru.backspark.SockKeeper.service.memory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений склада в памяти. Записи копятся в буфере, отдельный поток пишет накопившееся одним вызовом
+ * и фиксирует на диске (fsync): все записи, пришедшие за время предыдущей фиксации, фиксируются вместе.
+ * <p>
+ * Журнал делится на сегменты wal-N.log. Снимок snapshot-N.bin содержит состояние на начало сегмента N,
+ * поэтому при восстановлении читается последний снимок и сегменты начиная с его номера.
+ * Запись хранит абсолютное количество пары, так что повторное применение записи ничего не портит.
+ */
+@Slf4j
+class SocksWriteAheadLog implements Closeable {
+
+    static final byte COLOR = 1;
+    static final byte SET = 2;
+
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    private final Path dir;
+    private final boolean fsync;
+    private final Object lock = new Object();
+    private final Thread flusher;
+
+    private ByteBuffer active = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long segment;
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+
+    SocksWriteAheadLog(Path dir, long segment, boolean fsync) throws IOException {
+        this.dir = dir;
+        this.fsync = fsync;
+        this.segment = segment;
+        this.channel = open(segment);
+        this.flusher = new Thread(this::flushLoop, "socks-wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    static Path segmentFile(Path dir, long segment) {
+        return dir.resolve(String.format("wal-%020d.log", segment));
+    }
+
+    /**
+     * Добавляет запись о новом цвете и возвращает ее порядковый номер.
+     */
+    long appendColor(int colorId, String color) {
+        byte[] name = color.getBytes(StandardCharsets.UTF_8);
+        synchronized (lock) {
+            ByteBuffer buffer = reserve(1 + 4 + 4 + name.length + 4);
+            int start = buffer.position();
+            buffer.put(COLOR).putInt(colorId).putInt(name.length).put(name);
+            return commitRecord(buffer, start);
+        }
+    }
+
+    /**
+     * Добавляет запись с новым количеством пары и возвращает ее порядковый номер.
+     */
+    long appendSet(int colorId, int cottonPart, long quantity) {
+        synchronized (lock) {
+            ByteBuffer buffer = reserve(1 + 4 + 1 + 8 + 4);
+            int start = buffer.position();
+            buffer.put(SET).putInt(colorId).put((byte) cottonPart).putLong(quantity);
+            return commitRecord(buffer, start);
+        }
+    }
+
+    /**
+     * Ждет, пока запись с номером sequence и все предыдущие окажутся на диске.
+     */
+    void awaitDurable(long sequence) {
+        synchronized (lock) {
+            while (durable < sequence) {
+                checkFailure();
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание записи журнала прервано", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Дописывает накопленное, закрывает текущий сегмент и начинает следующий. Возвращает номер нового сегмента.
+     */
+    long rotate() throws IOException {
+        synchronized (lock) {
+            awaitIdle();
+            channel.close();
+            segment++;
+            channel = open(segment);
+            return segment;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            awaitIdle();
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Читает записи сегмента по порядку. Оборванная или поврежденная запись в конце сегмента означает сбой
+     * во время записи: она и все после нее отбрасываются.
+     */
+    static void replay(Path file, Replayer replayer) throws IOException {
+        CRC32 crc = new CRC32();
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte[] record;
+                try {
+                    byte type = in.readByte();
+                    if (type == COLOR) {
+                        int colorId = in.readInt();
+                        int length = in.readInt();
+                        if (length < 0 || length > 4096) {
+                            break;
+                        }
+                        record = new byte[1 + 4 + 4 + length];
+                        ByteBuffer.wrap(record).put(type).putInt(colorId).putInt(length);
+                        in.readFully(record, 9, length);
+                    } else if (type == SET) {
+                        record = new byte[1 + 4 + 1 + 8];
+                        record[0] = type;
+                        in.readFully(record, 1, record.length - 1);
+                    } else {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(record);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                ByteBuffer buffer = ByteBuffer.wrap(record, 1, record.length - 1);
+                if (record[0] == COLOR) {
+                    int colorId = buffer.getInt();
+                    int length = buffer.getInt();
+                    replayer.color(colorId, new String(record, 9, length, StandardCharsets.UTF_8));
+                } else {
+                    replayer.set(buffer.getInt(), buffer.get(), buffer.getLong());
+                }
+                records++;
+            }
+        }
+        log.info("Журнал {}: применено записей {}", file.getFileName(), records);
+    }
+
+    private FileChannel open(long segment) throws IOException {
+        return FileChannel.open(segmentFile(dir, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private ByteBuffer reserve(int bytes) {
+        checkFailure();
+        if (closed) {
+            throw new IllegalStateException("Журнал изменений закрыт");
+        }
+        if (active.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + bytes));
+            active.flip();
+            grown.put(active);
+            active = grown;
+        }
+        return active;
+    }
+
+    private long commitRecord(ByteBuffer buffer, int start) {
+        crc.reset();
+        crc.update(buffer.array(), start, buffer.position() - start);
+        buffer.putInt((int) crc.getValue());
+        appended++;
+        lock.notifyAll();
+        return appended;
+    }
+
+    private void awaitIdle() throws IOException {
+        while (durable < appended || flushing) {
+            if (failure != null) {
+                throw failure;
+            }
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Ожидание записи журнала прервано", e);
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Журнал изменений недоступен", failure);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long upTo;
+            FileChannel target;
+            synchronized (lock) {
+                while (appended == durable && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (appended == durable) {
+                    return;
+                }
+                // Меняем буферы местами: новые записи копятся, пока накопленные пишутся на диск
+                batch = active;
+                active = spare;
+                spare = batch;
+                upTo = appended;
+                target = channel;
+                flushing = true;
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                if (fsync) {
+                    target.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                batch.clear();
+            }
+
+            synchronized (lock) {
+                flushing = false;
+                if (error != null) {
+                    log.error("Ошибка записи журнала изменений склада", error);
+                    failure = error;
+                } else {
+                    durable = upTo;
+                }
+                lock.notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    interface Replayer {
+        void color(int colorId, String color);
+
+        void set(int colorId, int cottonPart, long quantity);
+    }
+}
@@ -0,0 +1,227 @@
+package ru.backspark.SockKeeper.service.movement;
+
+import ru.backspark.SockKeeper.dto.SocksMovementLineRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.model.SocksMovementStatus;
+import ru.backspark.SockKeeper.model.SocksMovementType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Проверенный список движений, сведенный к суммам приходов и отпусков по парам (цвет, процент хлопка).
+ * <p>
+ * Список применяется целиком или никак: сначала все приходы, затем все отпуски, поэтому отпуск может
+ * использовать носки, пришедшие в том же списке. Пары упорядочены по цвету и проценту хлопка только для
+ * предсказуемого ответа: строки базы блокируются в порядке (color_id, cotton_part), который задают запросы
+ * репозитория.
+ */
+public final class SocksMovementPlan {
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::color).thenComparingInt(Key::cottonPart);
+
+    private final List<Line> lines;
+    private final List<Key> pairs;
+    private final Map<Key, Integer> pairIndex;
+    private final long[] incomes;
+    private final long[] outcomes;
+
+    private SocksMovementPlan(List<Line> lines, Map<Key, long[]> totals) {
+        this.lines = lines;
+        this.pairs = new ArrayList<>(totals.keySet());
+        this.pairIndex = new HashMap<>();
+        this.incomes = new long[pairs.size()];
+        this.outcomes = new long[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            long[] sums = totals.get(pairs.get(i));
+            pairIndex.put(pairs.get(i), i);
+            incomes[i] = sums[0];
+            outcomes[i] = sums[1];
+        }
+    }
+
+    /**
+     * Проверяет строки и суммирует их по парам. Ошибка в любой строке отклоняет весь список.
+     */
+    public static SocksMovementPlan of(List<SocksMovementRqDto> movements, int maxLines) {
+        if (movements == null || movements.isEmpty()) {
+            throw new InvalidDataFormatException("Список движений не может быть пустым.");
+        }
+        if (movements.size() > maxLines) {
+            throw new InvalidDataFormatException("Список движений не может содержать больше " + maxLines + " строк.");
+        }
+
+        List<Line> lines = new ArrayList<>(movements.size());
+        Map<Key, long[]> totals = new TreeMap<>(KEY_ORDER);
+        for (int i = 0; i < movements.size(); i++) {
+            Line line = parse(i + 1, movements.get(i));
+            long[] sums = totals.computeIfAbsent(line.key(), key -> new long[2]);
+            int slot = line.type() == SocksMovementType.INCOME ? 0 : 1;
+            sums[slot] += line.quantity();
+            if (sums[slot] > Integer.MAX_VALUE) {
+                throw new InvalidDataFormatException("Строка " + line.number() + ": количество носков превышает допустимое значение.");
+            }
+            lines.add(line);
+        }
+        return new SocksMovementPlan(lines, totals);
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public int pairCount() {
+        return pairs.size();
+    }
+
+    public String color(int pair) {
+        return pairs.get(pair).color();
+    }
+
+    public int cottonPart(int pair) {
+        return pairs.get(pair).cottonPart();
+    }
+
+    public long income(int pair) {
+        return incomes[pair];
+    }
+
+    public long outcome(int pair) {
+        return outcomes[pair];
+    }
+
+    /**
+     * Номер пары в плане или -1, если пара в списке не встречается.
+     */
+    public int indexOf(String color, int cottonPart) {
+        Integer index = pairIndex.get(new Key(color, cottonPart));
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Пары с приходами и их суммы в виде параллельных массивов для set-based запроса.
+     */
+    public Batch incomes() {
+        return batch(incomes);
+    }
+
+    /**
+     * Пары с отпусками и их суммы в виде параллельных массивов для set-based запроса.
+     */
+    public Batch outcomes() {
+        return batch(outcomes);
+    }
+
+    /**
+     * Ответ для примененного списка; remaining — количества пар после применения.
+     */
+    public SocksMovementsRsDto applied(long[] remaining) {
+        List<SocksMovementLineRsDto> result = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            result.add(toDto(line, SocksMovementStatus.APPLIED)
+                    .remaining((int) remaining[pairIndex.get(line.key())])
+                    .build());
+        }
+        return SocksMovementsRsDto.builder().applied(true).lines(result).build();
+    }
+
+    /**
+     * Ответ для отклоненного списка. available — сколько носков каждой пары было доступно для отпуска с учетом
+     * приходов списка, null — пары нет; используется только для пар с отпусками.
+     */
+    public SocksMovementsRsDto rejected(Long[] available) {
+        List<SocksMovementLineRsDto> result = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            int pair = pairIndex.get(line.key());
+            SocksMovementStatus status = SocksMovementStatus.NOT_APPLIED;
+            Integer availableQuantity = null;
+            if (line.type() == SocksMovementType.OUTCOME) {
+                if (available[pair] == null) {
+                    status = SocksMovementStatus.NOT_FOUND;
+                } else if (available[pair] < outcomes[pair]) {
+                    status = SocksMovementStatus.INSUFFICIENT;
+                    availableQuantity = available[pair].intValue();
+                }
+            }
+            result.add(toDto(line, status).available(availableQuantity).build());
+        }
+        return SocksMovementsRsDto.builder().applied(false).lines(result).build();
+    }
+
+    private Batch batch(long[] quantities) {
+        int size = 0;
+        for (long quantity : quantities) {
+            if (quantity > 0) {
+                size++;
+            }
+        }
+        int[] indexes = new int[size];
+        String[] colors = new String[size];
+        Integer[] cottonParts = new Integer[size];
+        Integer[] values = new Integer[size];
+        int next = 0;
+        for (int i = 0; i < quantities.length; i++) {
+            if (quantities[i] > 0) {
+                indexes[next] = i;
+                colors[next] = pairs.get(i).color();
+                cottonParts[next] = pairs.get(i).cottonPart();
+                values[next] = (int) quantities[i];
+                next++;
+            }
+        }
+        return new Batch(indexes, colors, cottonParts, values);
+    }
+
+    private static Line parse(int number, SocksMovementRqDto movement) {
+        try {
+            if (movement == null) {
+                throw new InvalidDataFormatException("Движение не указано.");
+            }
+            SocksMovementType type = SocksMovementType.fromParam(movement.getType());
+            if (movement.getColor() == null || movement.getColor().isBlank()) {
+                throw new InvalidDataFormatException("Цвет не может быть пустым.");
+            }
+            if (movement.getCottonPart() == null || movement.getCottonPart() < 0 || movement.getCottonPart() > 100) {
+                throw new InvalidDataFormatException("Процент хлопка должен быть в диапазоне 0-100.");
+            }
+            if (movement.getQuantity() == null || movement.getQuantity() <= 0) {
+                throw new InvalidDataFormatException("Количество должно быть положительным.");
+            }
+            return new Line(number, type, new Key(movement.getColor(), movement.getCottonPart()), movement.getQuantity());
+        } catch (InvalidDataFormatException e) {
+            throw new InvalidDataFormatException("Строка " + number + ": " + e.getMessage());
+        }
+    }
+
+    private static SocksMovementLineRsDto.SocksMovementLineRsDtoBuilder toDto(Line line, SocksMovementStatus status) {
+        return SocksMovementLineRsDto.builder()
+                .line(line.number())
+                .type(line.type() == SocksMovementType.INCOME ? "income" : "outcome")
+                .color(line.key().color())
+                .cottonPart(line.key().cottonPart())
+                .quantity(line.quantity())
+                .status(status);
+    }
+
+    /**
+     * Пары и суммы одного вида движения; pairs — номера пар в плане.
+     */
+    public record Batch(int[] pairs, String[] colors, Integer[] cottonParts, Integer[] quantities) {
+
+        public int size() {
+            return pairs.length;
+        }
+    }
+
+    private record Key(String color, int cottonPart) {
+    }
+
+    private record Line(int number, SocksMovementType type, Key key, int quantity) {
+    }
+}
@@ -0,0 +1,22 @@
+package ru.backspark.SockKeeper.service.reactive;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+
+/**
+ * Неблокирующий вариант {@link ru.backspark.SockKeeper.service.SocksService} для профиля reactive.
+ */
+public interface SocksReactiveService {
+
+    Mono<Void> registerIncome(String color, Integer cottonPart, Integer quantity);
+
+    Mono<Void> registerOutcome(String color, Integer cottonPart, Integer quantity);
+
+    Flux<SocksRsDto> getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy);
+
+    Mono<Long> countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                          Integer cottonPart, Integer cottonPartTo);
+
+    Mono<SocksRsDto> updateSocks(Long id, String color, Integer cottonPart, Integer quantity);
+}
@@ -0,0 +1,173 @@
+package ru.backspark.SockKeeper.service.reactive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksCottonPartRange;
+import ru.backspark.SockKeeper.model.SocksSortOrder;
+import ru.backspark.SockKeeper.repository.reactive.SocksReactiveRepository;
+import ru.backspark.SockKeeper.service.event.SocksChange;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+
+import java.util.List;
+
+/**
+ * Склад поверх R2DBC. Проверки и сообщения об ошибках совпадают с блокирующим сервисом; ошибки передаются
+ * сигналом ошибки, а не исключением в вызывающем потоке.
+ * <p>
+ * Каждое изменение фиксируется своим запросом, и после него публикуется SocksChangedEvent — как после фиксации
+ * транзакции в блокирующем сервисе: сбрасывается кэш, растет версия склада, другим экземплярам уходит уведомление.
+ * Слушатели блокирующие, поэтому событие публикуется на boundedElastic, а не в цикле событий.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class SocksReactiveServiceImpl implements SocksReactiveService {
+
+    private final SocksReactiveRepository socksReactiveRepository;
+    private final SocksProperties socksProperties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public Mono<Void> registerIncome(String color, Integer cottonPart, Integer quantity) {
+        return Mono.defer(() -> {
+            log.debug("Регистрация прихода носков: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+            validateQuantity(quantity);
+            validateCottonPart(cottonPart);
+            return socksReactiveRepository.upsertIncome(color, cottonPart, quantity);
+        }).doOnSuccess(updated ->
+                log.debug("Приход зарегистрирован: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity)
+        ).then(publish(SocksChangedEvent.of(color, cottonPart, quantity)));
+    }
+
+    @Override
+    public Mono<Void> registerOutcome(String color, Integer cottonPart, Integer quantity) {
+        return Mono.defer(() -> {
+            log.debug("Регистрация отпуска носков: color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+            validateQuantity(quantity);
+            validateCottonPart(cottonPart);
+            return socksReactiveRepository.decrementIfSufficient(color, cottonPart, quantity);
+        }).flatMap(updated -> {
+            if (updated > 0) {
+                log.debug("Успешно выполнен отпуск носков. color={}, cottonPart={}, quantity={}", color, cottonPart, quantity);
+                return publish(SocksChangedEvent.of(color, cottonPart, -quantity));
+            }
+            // Разбираемся в причине отказа только на неуспешном пути
+            return socksReactiveRepository.existsByColorAndCottonPart(color, cottonPart)
+                    .flatMap(exists -> Mono.error(exists
+                            ? insufficient(color, cottonPart, quantity)
+                            : notFound(color, cottonPart)));
+        });
+    }
+
+    @Override
+    public Flux<SocksRsDto> getSocks(String color, Integer minCottonPart, Integer maxCottonPart, String sortBy) {
+        return Flux.defer(() -> {
+            log.debug("Потоковая выдача носков: color={}, minCottonPart={}, maxCottonPart={}, sortBy={}",
+                    color, minCottonPart, maxCottonPart, sortBy);
+            SocksSortOrder order = SocksSortOrder.fromParam(sortBy);
+            int fetchSize = socksProperties.getExport().getFetchSize();
+            return socksReactiveRepository.findAll(color, minCottonPart, maxCottonPart, order, fetchSize)
+                    .map(SocksReactiveServiceImpl::toDto);
+        });
+    }
+
+    @Override
+    public Mono<Long> countSocks(String color, Integer minCottonPart, Integer maxCottonPart, String operation,
+                                 Integer cottonPart, Integer cottonPartTo) {
+        return Mono.defer(() -> {
+            log.debug("Подсчет носков: color={}, minCottonPart={}, maxCottonPart={}, operation={}, cottonPart={}, cottonPartTo={}",
+                    color, minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+
+            // Все условия сводятся к одному включающему диапазону процента хлопка
+            SocksCottonPartRange range = SocksCottonPartRange.resolve(minCottonPart, maxCottonPart, operation, cottonPart, cottonPartTo);
+            if (range.isEmpty()) {
+                log.debug("Пустой диапазон процента хлопка: {}-{}", range.min(), range.max());
+                return Mono.just(0L);
+            }
+            String colorFilter = color == null || color.isBlank() ? null : color;
+            return socksReactiveRepository.sumQuantity(colorFilter, range.min(), range.max());
+        });
+    }
+
+    @Override
+    public Mono<SocksRsDto> updateSocks(Long id, String color, Integer cottonPart, Integer quantity) {
+        return Mono.defer(() -> {
+                    log.debug("Обновление носков: id={}, color={}, cottonPart={}, quantity={}", id, color, cottonPart, quantity);
+                    validateCottonPart(cottonPart);
+                    validateQuantity(quantity);
+                    return socksReactiveRepository.update(id, color, cottonPart, quantity);
+                })
+                // Пара (цвет, процент хлопка) уникальна, поэтому нельзя перевести запись на уже занятую пару
+                .onErrorMap(DataIntegrityViolationException.class, e -> {
+                    log.error("Носки с параметрами color={} и cottonPart={} уже существуют", color, cottonPart);
+                    return new InvalidDataFormatException("Носки с указанными параметрами уже существуют.");
+                })
+                .switchIfEmpty(Mono.error(() -> {
+                    log.error("Носки с id={} не найдены", id);
+                    return new SocksNotFoundInWarehouse("Носки с указанным ID не найдены.");
+                }))
+                .flatMap(updated -> {
+                    Socks previous = updated.previous();
+                    Socks current = updated.current();
+                    log.debug("Носки обновлены: {}", current);
+                    return publish(new SocksChangedEvent(List.of(
+                            new SocksChange(previous.getColor(), previous.getCottonPart(), -previous.getQuantity()),
+                            new SocksChange(current.getColor(), current.getCottonPart(), current.getQuantity()))))
+                            .thenReturn(toDto(current));
+                });
+    }
+
+    private Mono<Void> publish(SocksChangedEvent event) {
+        return Mono.fromRunnable(() -> eventPublisher.publishEvent(event))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private static RuntimeException insufficient(String color, Integer cottonPart, Integer quantity) {
+        log.error("Недостаточно носков на складе. color={}, cottonPart={}, запрашиваемое количество={}",
+                color, cottonPart, quantity);
+        return new InsufficientSocksInWarehouseException("Недостаточно носков на складе для выполнения операции.");
+    }
+
+    private static RuntimeException notFound(String color, Integer cottonPart) {
+        log.error("Носки с параметрами color={} и cottonPart={} не найдены", color, cottonPart);
+        return new SocksNotFoundInWarehouse("Носки с указанными параметрами не найдены.");
+    }
+
+    private static SocksRsDto toDto(Socks socks) {
+        return SocksRsDto.builder()
+                .id(socks.getId())
+                .color(socks.getColor())
+                .cottonPart(socks.getCottonPart())
+                .quantity(socks.getQuantity())
+                .build();
+    }
+
+    private void validateQuantity(Integer quantity) {
+        if (quantity <= 0) {
+            log.error("Количество должно быть положительным. Переданное значение: {}", quantity);
+            throw new InvalidDataFormatException("Количество должно быть положительным.");
+        }
+    }
+
+    private void validateCottonPart(Integer cottonPart) {
+        if (cottonPart < 0 || cottonPart > 100) {
+            log.error("Процент хлопка должен быть в диапазоне 0-100. Переданное значение: {}", cottonPart);
+            throw new InvalidDataFormatException("Процент хлопка должен быть в диапазоне 0-100.");
+        }
+    }
+}
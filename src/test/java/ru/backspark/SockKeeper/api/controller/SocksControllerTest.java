@@ -8,21 +8,45 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.backspark.SockKeeper.dto.SocksBatchJobRsDto;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementLineRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
 import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.model.SocksBatchJobStatus;
+import ru.backspark.SockKeeper.model.SocksExportFormat;
+import ru.backspark.SockKeeper.model.SocksMovementStatus;
+import ru.backspark.SockKeeper.service.SocksBatchJobService;
 import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.UUID;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(SocksController.class)
@@ -34,6 +58,12 @@ class SocksControllerTest {
     @MockBean
     private SocksService socksService;
 
+    @MockBean
+    private SocksBatchJobService socksBatchJobService;
+
+    @MockBean
+    private SocksInventoryVersion inventoryVersion;
+
     private SocksRsDto socksRsDto;
 
     @BeforeEach
@@ -68,23 +98,169 @@ class SocksControllerTest {
         verify(socksService, times(1)).registerOutcome("red", 50, 100);
     }
 
+    @Test
+    void registerMovements_shouldReturnLineResults() throws Exception {
+        List<SocksMovementRqDto> movements = List.of(
+                new SocksMovementRqDto("income", "red", 50, 10),
+                new SocksMovementRqDto("outcome", "red", 50, 4));
+        when(socksService.registerMovements(movements)).thenReturn(SocksMovementsRsDto.builder()
+                .applied(true)
+                .lines(List.of(
+                        SocksMovementLineRsDto.builder().line(1).status(SocksMovementStatus.APPLIED).remaining(6).build(),
+                        SocksMovementLineRsDto.builder().line(2).status(SocksMovementStatus.APPLIED).remaining(6).build()))
+                .build());
+
+        mockMvc.perform(post("/api/socks/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"type": "income", "color": "red", "cottonPart": 50, "quantity": 10},
+                                 {"type": "outcome", "color": "red", "cottonPart": 50, "quantity": 4}]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(true)))
+                .andExpect(jsonPath("$.lines", hasSize(2)))
+                .andExpect(jsonPath("$.lines[1].status", is("APPLIED")))
+                .andExpect(jsonPath("$.lines[1].remaining", is(6)));
+
+        verify(socksService, times(1)).registerMovements(movements);
+    }
+
+    @Test
+    void registerMovements_shouldReturnConflictWhenRejected() throws Exception {
+        when(socksService.registerMovements(any())).thenReturn(SocksMovementsRsDto.builder()
+                .applied(false)
+                .lines(List.of(SocksMovementLineRsDto.builder()
+                        .line(1)
+                        .status(SocksMovementStatus.INSUFFICIENT)
+                        .available(3)
+                        .build()))
+                .build());
+
+        mockMvc.perform(post("/api/socks/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"type\": \"outcome\", \"color\": \"red\", \"cottonPart\": 50, \"quantity\": 4}]"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.applied", is(false)))
+                .andExpect(jsonPath("$.lines[0].status", is("INSUFFICIENT")))
+                .andExpect(jsonPath("$.lines[0].available", is(3)));
+    }
+
     @Test
     void getSocks_shouldReturnList() throws Exception {
-        when(socksService.getSocks("red", 30, 70, "color")).thenReturn(List.of(socksRsDto));
+        when(socksService.getSocks("red", 30, 70, "color", 1, null)).thenReturn(SocksPageRsDto.builder()
+                .items(List.of(socksRsDto))
+                .nextCursor("next")
+                .build());
 
         mockMvc.perform(get("/api/socks")
                         .param("color", "red")
                         .param("minCottonPart", "30")
                         .param("maxCottonPart", "70")
-                        .param("sortBy", "color"))
+                        .param("sortBy", "color")
+                        .param("limit", "1"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next"))
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].id", is(1)))
                 .andExpect(jsonPath("$[0].color", is("red")))
                 .andExpect(jsonPath("$[0].cottonPart", is(50)))
                 .andExpect(jsonPath("$[0].quantity", is(100)));
 
-        verify(socksService, times(1)).getSocks("red", 30, 70, "color");
+        verify(socksService, times(1)).getSocks("red", 30, 70, "color", 1, null);
+    }
+
+    @Test
+    void getSocks_shouldReturnNotModifiedWhileVersionIsUnchanged() throws Exception {
+        when(inventoryVersion.instanceId()).thenReturn("node");
+        when(inventoryVersion.current()).thenReturn(7L);
+        when(socksService.getSocks("red", null, null, null, null, null)).thenReturn(SocksPageRsDto.builder()
+                .items(List.of(socksRsDto))
+                .build());
+
+        String eTag = mockMvc.perform(get("/api/socks").param("color", "red"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/socks").param("color", "red").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/socks").param("color", "red").header("If-None-Match", "\"other\", W/" + eTag))
+                .andExpect(status().isNotModified());
+
+        verify(socksService, times(1)).getSocks("red", null, null, null, null, null);
+    }
+
+    @Test
+    void getSocks_shouldReturnListWhenVersionOrFiltersChanged() throws Exception {
+        when(inventoryVersion.instanceId()).thenReturn("node");
+        when(inventoryVersion.current()).thenReturn(7L);
+        when(socksService.getSocks(any(), any(), any(), any(), any(), any())).thenReturn(SocksPageRsDto.builder()
+                .items(List.of(socksRsDto))
+                .build());
+        String eTag = mockMvc.perform(get("/api/socks").param("color", "red"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/socks").param("color", "blue").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        when(inventoryVersion.current()).thenReturn(8L);
+        mockMvc.perform(get("/api/socks").param("color", "red").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        verify(socksService, times(2)).getSocks("red", null, null, null, null, null);
+    }
+
+    @Test
+    void countSocks_shouldReturnNumber() throws Exception {
+        when(socksService.countSocks("red", null, null, "moreThan", 30, null)).thenReturn(150L);
+
+        mockMvc.perform(get("/api/socks/count")
+                        .param("color", "red")
+                        .param("operation", "moreThan")
+                        .param("cottonPart", "30"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("150"));
+
+        verify(socksService, times(1)).countSocks("red", null, null, "moreThan", 30, null);
+    }
+
+    @Test
+    void countSocks_shouldPassMomentToService() throws Exception {
+        OffsetDateTime asOf = OffsetDateTime.parse("2026-10-01T00:00:00Z");
+        when(socksService.countSocks("red", null, null, null, null, null, asOf)).thenReturn(40L);
+
+        mockMvc.perform(get("/api/socks/count")
+                        .param("color", "red")
+                        .param("asOf", "2026-10-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("40"));
+
+        verify(socksService, times(1)).countSocks("red", null, null, null, null, null, asOf);
+        verify(socksService, never()).countSocks("red", null, null, null, null, null);
+    }
+
+    @Test
+    void exportSocks_shouldStreamServiceOutput() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(4);
+            out.write("red,50,100\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(socksService).exportSocks(eq("red"), eq(null), eq(null), eq(SocksExportFormat.CSV), any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/socks/export")
+                        .param("color", "red")
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(content().string("red,50,100\n"));
     }
 
     @Test
@@ -113,10 +289,83 @@ class SocksControllerTest {
                 "color,cottonPart,quantity\nred,50,100".getBytes()
         );
 
+        when(socksService.processSocksBatch(file)).thenReturn(SocksBatchRsDto.builder()
+                .linesRead(2L)
+                .distinctKeys(2L)
+                .inserted(1L)
+                .updated(1L)
+                .build());
+
         mockMvc.perform(multipart("/api/socks/batch")
                         .file(file))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.linesRead", is(2)))
+                .andExpect(jsonPath("$.distinctKeys", is(2)))
+                .andExpect(jsonPath("$.inserted", is(1)))
+                .andExpect(jsonPath("$.updated", is(1)));
 
         verify(socksService, times(1)).processSocksBatch(file);
     }
+
+    @Test
+    void submitSocksBatch_shouldReturnAcceptedJob() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "socks.csv",
+                MediaType.TEXT_PLAIN_VALUE,
+                "red,50,100".getBytes()
+        );
+        UUID jobId = UUID.randomUUID();
+        when(socksBatchJobService.submitBatch(file)).thenReturn(SocksBatchJobRsDto.builder()
+                .jobId(jobId)
+                .status(SocksBatchJobStatus.QUEUED)
+                .build());
+
+        mockMvc.perform(multipart("/api/socks/batch")
+                        .file(file)
+                        .param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId", is(jobId.toString())))
+                .andExpect(jsonPath("$.status", is("QUEUED")));
+
+        verify(socksBatchJobService, times(1)).submitBatch(file);
+        verify(socksService, never()).processSocksBatch(any());
+    }
+
+    @Test
+    void uploadSocksBatch_withAsyncFalse_shouldProcessSynchronously() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "socks.csv",
+                MediaType.TEXT_PLAIN_VALUE,
+                "red,50,100".getBytes()
+        );
+        when(socksService.processSocksBatch(file)).thenReturn(SocksBatchRsDto.builder()
+                .linesRead(1L)
+                .build());
+
+        mockMvc.perform(multipart("/api/socks/batch")
+                        .file(file)
+                        .param("async", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.linesRead", is(1)));
+
+        verify(socksService, times(1)).processSocksBatch(file);
+        verify(socksBatchJobService, never()).submitBatch(any());
+    }
+
+    @Test
+    void getSocksBatchJob_shouldReturnProgress() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        when(socksBatchJobService.getJob(jobId)).thenReturn(SocksBatchJobRsDto.builder()
+                .jobId(jobId)
+                .status(SocksBatchJobStatus.RUNNING)
+                .linesRead(5000L)
+                .build());
+
+        mockMvc.perform(get("/api/socks/batch/{jobId}", jobId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("RUNNING")))
+                .andExpect(jsonPath("$.linesRead", is(5000)));
+    }
 }
@@ -0,0 +1,127 @@
+package ru.backspark.SockKeeper.api.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
+import ru.backspark.SockKeeper.service.reactive.SocksReactiveService;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(SocksReactiveController.class)
+@ActiveProfiles("reactive")
+class SocksReactiveControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private SocksReactiveService socksReactiveService;
+
+    @Test
+    void registerIncome_shouldCallService() {
+        when(socksReactiveService.registerIncome("red", 50, 100)).thenReturn(Mono.empty());
+
+        webTestClient.post()
+                .uri(uri -> uri.path("/api/socks/income")
+                        .queryParam("color", "red")
+                        .queryParam("cottonPart", 50)
+                        .queryParam("quantity", 100)
+                        .build())
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(socksReactiveService, times(1)).registerIncome("red", 50, 100);
+    }
+
+    @Test
+    void registerOutcome_shouldReturnBadRequestWhenInsufficient() {
+        when(socksReactiveService.registerOutcome("red", 50, 100)).thenReturn(
+                Mono.error(new InsufficientSocksInWarehouseException("Недостаточно носков на складе для выполнения операции.")));
+
+        webTestClient.post()
+                .uri(uri -> uri.path("/api/socks/outcome")
+                        .queryParam("color", "red")
+                        .queryParam("cottonPart", 50)
+                        .queryParam("quantity", 100)
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Недостаточно носков на складе для выполнения операции.");
+    }
+
+    @Test
+    void getSocks_shouldStreamNdjson() {
+        when(socksReactiveService.getSocks("red", null, null, "cottonPart")).thenReturn(Flux.just(
+                SocksRsDto.builder().id(1L).color("red").cottonPart(30).quantity(10).build(),
+                SocksRsDto.builder().id(2L).color("red").cottonPart(50).quantity(20).build()));
+
+        webTestClient.get()
+                .uri(uri -> uri.path("/api/socks")
+                        .queryParam("color", "red")
+                        .queryParam("sortBy", "cottonPart")
+                        .build())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(SocksRsDto.class)
+                .hasSize(2)
+                .contains(SocksRsDto.builder().id(2L).color("red").cottonPart(50).quantity(20).build());
+    }
+
+    @Test
+    void getSocks_shouldReturnJsonArrayByDefault() {
+        when(socksReactiveService.getSocks(null, null, null, null)).thenReturn(Flux.just(
+                SocksRsDto.builder().id(1L).color("red").cottonPart(30).quantity(10).build()));
+
+        webTestClient.get()
+                .uri("/api/socks")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].color").isEqualTo("red")
+                .jsonPath("$[0].quantity").isEqualTo(10);
+    }
+
+    @Test
+    void countSocks_shouldReturnCount() {
+        when(socksReactiveService.countSocks("red", null, null, "moreThan", 30, null)).thenReturn(Mono.just(150L));
+
+        webTestClient.get()
+                .uri(uri -> uri.path("/api/socks/count")
+                        .queryParam("color", "red")
+                        .queryParam("operation", "moreThan")
+                        .queryParam("cottonPart", 30)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).isEqualTo(150L);
+    }
+
+    @Test
+    void updateSocks_shouldReturnNotFound() {
+        when(socksReactiveService.updateSocks(7L, "blue", 70, 30)).thenReturn(
+                Mono.error(new SocksNotFoundInWarehouse("Носки с указанным ID не найдены.")));
+
+        webTestClient.put()
+                .uri(uri -> uri.path("/api/socks/7")
+                        .queryParam("color", "blue")
+                        .queryParam("cottonPart", 70)
+                        .queryParam("quantity", 30)
+                        .build())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.backspark.SockKeeper.api.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.FilterChain;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SocksRequestLimitFilterTest {
+
+    private final SocksRequestLimitFilter filter =
+            new SocksRequestLimitFilter(1, Duration.ofMillis(50), new ObjectMapper());
+
+    @Test
+    @DisplayName("Запросы в пределах ограничения проходят, разрешение возвращается после ответа")
+    void doFilter_shouldPassAndReleasePermit() throws Exception {
+        MockHttpServletResponse first = execute("/api/socks", (request, response) -> {
+        });
+        MockHttpServletResponse second = execute("/api/socks", (request, response) -> {
+        });
+
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(second.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Запрос, не дождавшийся очереди, получает 503")
+    void doFilter_shouldRejectWhenQueueTimeoutExpires() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<MockHttpServletResponse> busy = executor.submit(() -> execute("/api/socks", (request, response) -> {
+            started.countDown();
+            await(release);
+        }));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        MockHttpServletResponse rejected = execute("/api/socks/count", (request, response) -> {
+        });
+        MockHttpServletResponse actuator = execute("/actuator/health", (request, response) -> {
+        });
+        release.countDown();
+
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(rejected.getContentAsString()).contains("\"error\"");
+        assertThat(actuator.getStatus()).isEqualTo(200);
+        assertThat(busy.get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Асинхронный запрос держит разрешение до завершения ответа")
+    void doFilter_shouldHoldPermitUntilAsyncCompletes() throws Exception {
+        AsyncContext[] asyncContext = new AsyncContext[1];
+        execute("/api/socks/export", (request, response) -> asyncContext[0] = request.startAsync());
+
+        assertThat(execute("/api/socks", (request, response) -> {
+        }).getStatus()).isEqualTo(503);
+
+        asyncContext[0].complete();
+
+        assertThat(execute("/api/socks", (request, response) -> {
+        }).getStatus()).isEqualTo(200);
+    }
+
+    private MockHttpServletResponse execute(String uri, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.backspark.SockKeeper.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Реплику изображает вторая база PostgreSQL со своими данными (replica-schema.sql): репликации между базами нет,
+ * поэтому ответ показывает, в какую базу ушел запрос.
+ */
+@SpringBootTest(properties = {
+        "socks.read-replicas.pools[0].url=jdbc:tc:postgresql:15.0:///replicadb?TC_INITSCRIPT=replica-schema.sql",
+        "socks.cache.enabled=false"
+})
+@Testcontainers
+@ActiveProfiles("test")
+class SocksReadReplicaTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private SocksRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        // Отставание измеряется в фоне; здесь реплика отмечается доступной, не дожидаясь первого измерения
+        routingDataSource.checkReplicas();
+    }
+
+    @Test
+    @DisplayName("Транзакция только для чтения читает с реплики")
+    void readOnlyTransaction_shouldReadFromReplica() {
+        SocksPageRsDto page = socksService.getSocks("replica-only", null, null, null, null, null);
+
+        assertThat(page.getItems()).extracting(SocksRsDto::getQuantity).containsExactly(7);
+        assertThat(socksRepository.findByColorAndCottonPart("replica-only", 50)).isEmpty();
+        assertThat(routingDataSource.lagSeconds("replica-0")).isZero();
+    }
+
+    @Test
+    @DisplayName("Изменения записываются в основную базу")
+    void changes_shouldBeWrittenToPrimary() {
+        socksService.registerIncome("primary-only", 40, 12);
+
+        assertThat(socksRepository.findByColorAndCottonPart("primary-only", 40))
+                .map(Socks::getQuantity).contains(12);
+        assertThat(socksService.countSocks("primary-only", null, null, "equal", 40, null)).isZero();
+        assertThat(socksService.countSocks("replica-only", null, null, "equal", 50, null)).isEqualTo(7);
+    }
+}
@@ -0,0 +1,127 @@
+package ru.backspark.SockKeeper.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SocksRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstReplicaConnection = mock(Connection.class);
+    private final Connection secondReplicaConnection = mock(Connection.class);
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource firstReplica = mock(DataSource.class);
+    private final DataSource secondReplica = mock(DataSource.class);
+    private SocksRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(firstReplica.getConnection()).thenReturn(firstReplicaConnection);
+        when(secondReplica.getConnection()).thenReturn(secondReplicaConnection);
+        routingDataSource = new SocksRoutingDataSource(primary, List.of(firstReplica, secondReplica),
+                Duration.ofSeconds(5), Duration.ofSeconds(60), Duration.ofSeconds(1));
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    @DisplayName("Запросы вне транзакции только для чтения идут в основную базу")
+    void writes_shouldGoToPrimary() throws SQLException {
+        replicaLag(firstReplicaConnection, 0L);
+        replicaLag(secondReplicaConnection, 0L);
+        routingDataSource.checkReplicas();
+
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    @DisplayName("Чтение распределяется по репликам по кругу")
+    void reads_shouldBeSpreadOverReplicas() throws SQLException {
+        replicaLag(firstReplicaConnection, 0L);
+        replicaLag(secondReplicaConnection, 100L);
+        routingDataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(List.of(routingDataSource.getConnection(), routingDataSource.getConnection(),
+                routingDataSource.getConnection(), routingDataSource.getConnection()))
+                .containsExactly(firstReplicaConnection, secondReplicaConnection,
+                        firstReplicaConnection, secondReplicaConnection);
+        assertThat(routingDataSource.lagSeconds("replica-1")).isEqualTo(0.1);
+    }
+
+    @Test
+    @DisplayName("Отстающая или недоступная реплика пропускается")
+    void laggingReplica_shouldBeSkipped() throws SQLException {
+        replicaLag(firstReplicaConnection, 60_000L);
+        replicaLag(secondReplicaConnection, 0L);
+        routingDataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(secondReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(secondReplicaConnection);
+
+        when(secondReplica.getConnection()).thenThrow(new SQLException("connection refused"));
+        routingDataSource.checkReplicas();
+
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+        assertThat(routingDataSource.lagSeconds("replica-1")).isNaN();
+    }
+
+    @Test
+    @DisplayName("Реплика, не получающая WAL от основной базы, пропускается, хотя применила все полученное")
+    void disconnectedReplica_shouldBeSkipped() throws SQLException {
+        replicaLag(firstReplicaConnection, 0L, true);
+        replicaLag(secondReplicaConnection, 0L);
+        routingDataSource.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(secondReplicaConnection);
+        assertThat(routingDataSource.getConnection()).isSameAs(secondReplicaConnection);
+        assertThat(routingDataSource.lagSeconds("replica-0")).isNaN();
+    }
+
+    @Test
+    @DisplayName("До первого измерения отставания чтение идет в основную базу")
+    void reads_shouldGoToPrimaryBeforeFirstCheck() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    private void replicaLag(Connection connection, long lagMillis) throws SQLException {
+        replicaLag(connection, lagMillis, false);
+    }
+
+    /**
+     * Ответ запроса отставания; unknown — NULL, как у реплики без потока WAL от основной базы.
+     */
+    private void replicaLag(Connection connection, long lagMillis, boolean unknown) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(lagMillis);
+        when(resultSet.wasNull()).thenReturn(unknown);
+    }
+}
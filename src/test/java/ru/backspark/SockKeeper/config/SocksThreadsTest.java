@@ -0,0 +1,53 @@
+package ru.backspark.SockKeeper.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SocksThreadsTest {
+
+    @Test
+    @DisplayName("Платформенные потоки создаются демонами с номером в имени")
+    void threadFactory_shouldCreateNamedDaemonThreads() {
+        ThreadFactory threadFactory = SocksThreads.threadFactory("socks-test-", false);
+
+        Thread first = threadFactory.newThread(() -> {
+        });
+        Thread second = threadFactory.newThread(() -> {
+        });
+
+        assertThat(first.getName()).isEqualTo("socks-test-1");
+        assertThat(second.getName()).isEqualTo("socks-test-2");
+        assertThat(first.isDaemon()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Виртуальные потоки создаются на Java 21")
+    void threadFactory_shouldCreateVirtualThreadsOnJava21() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21);
+        ThreadFactory threadFactory = SocksThreads.threadFactory("socks-virtual-", true);
+        String[] name = new String[1];
+
+        Thread thread = threadFactory.newThread(() -> name[0] = Thread.currentThread().toString());
+        thread.start();
+        thread.join();
+
+        assertThat(name[0]).startsWith("VirtualThread").contains("socks-virtual-1");
+    }
+
+    @Test
+    @DisplayName("До Java 21 включение виртуальных потоков останавливается понятной ошибкой")
+    void threadFactory_shouldFailBeforeJava21() {
+        assumeTrue(Runtime.version().feature() < 21);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> SocksThreads.threadFactory("socks-virtual-", true));
+
+        assertThat(e.getMessage()).contains("Java 21");
+    }
+}
@@ -0,0 +1,165 @@
+package ru.backspark.SockKeeper.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.model.Socks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "socks.colors.unknown-ttl=1m")
+@Testcontainers
+@ActiveProfiles("test")
+class SocksColorDictionaryTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private SocksColorDictionary colorDictionary;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Новый цвет добавляется в справочник один раз")
+    void register_shouldCreateColorOnce() {
+        String color = uniqueColor();
+
+        int id = colorDictionary.register(color);
+
+        assertThat(colorDictionary.register(color)).isEqualTo(id);
+        assertThat(colorDictionary.idOf(color)).isEqualTo(id);
+        assertThat(colorDictionary.nameOf(id)).isEqualTo(color);
+        assertThat(countColors(color)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Цвет создается в транзакции вызывающего и пропадает при ее откате")
+    void register_shouldFollowCallerTransaction() {
+        String color = uniqueColor();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            int id = colorDictionary.register(color);
+            assertThat(colorDictionary.nameOf(id)).isEqualTo(color);
+            assertThat(colorDictionary.idOf(color)).isEqualTo(id);
+            status.setRollbackOnly();
+        });
+
+        assertThat(countColors(color)).isZero();
+        assertThat(colorDictionary.cachedId(color)).isNull();
+
+        Integer id = transactionTemplate.execute(status -> colorDictionary.register(color));
+
+        assertThat(countColors(color)).isEqualTo(1);
+        assertThat(colorDictionary.cachedId(color)).isEqualTo(id);
+    }
+
+    @Test
+    @DisplayName("Поиск неизвестного цвета не создает его")
+    void idOf_shouldNotCreateUnknownColor() {
+        String color = uniqueColor();
+
+        assertThat(colorDictionary.idOf(color)).isEqualTo(SocksColorDictionary.UNKNOWN_ID);
+        assertThat(colorDictionary.idsOf(new String[]{color})).containsExactly(SocksColorDictionary.UNKNOWN_ID);
+        assertThat(countColors(color)).isZero();
+    }
+
+    @Test
+    @DisplayName("Цвет, добавленный в базу в обход приложения, дочитывается при обращении")
+    void idOf_shouldReadColorAddedOutsideApplication() {
+        String color = uniqueColor();
+        int id = jdbcTemplate.queryForObject("INSERT INTO colors (name) VALUES (?) RETURNING id", Integer.class, color);
+
+        assertThat(colorDictionary.cachedId(color)).isNull();
+        assertThat(colorDictionary.idOf(color)).isEqualTo(id);
+        assertThat(colorDictionary.nameOf(id)).isEqualTo(color);
+    }
+
+    @Test
+    @DisplayName("Отсутствие цвета запоминается до добавления цвета через справочник")
+    void idOf_shouldRememberUnknownColorUntilRegistered() {
+        String color = uniqueColor();
+        assertThat(colorDictionary.idOf(color)).isEqualTo(SocksColorDictionary.UNKNOWN_ID);
+        int id = jdbcTemplate.queryForObject("INSERT INTO colors (name) VALUES (?) RETURNING id", Integer.class, color);
+
+        // Повторный поиск не обращается к базе, поэтому цвет, добавленный в обход приложения, пока не виден
+        assertThat(colorDictionary.idOf(color)).isEqualTo(SocksColorDictionary.UNKNOWN_ID);
+        assertThat(colorDictionary.idsOf(new String[]{color})).containsExactly(SocksColorDictionary.UNKNOWN_ID);
+
+        assertThat(colorDictionary.register(color)).isEqualTo(id);
+        assertThat(colorDictionary.idOf(color)).isEqualTo(id);
+        assertThat(countColors(color)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Изменения остатков и уведомления других экземпляров не доверяют запомненному отсутствию цвета")
+    void unknownColor_shouldBeRecheckedByWritesAndForgotten() {
+        String color = uniqueColor();
+        assertThat(colorDictionary.idOf(color)).isEqualTo(SocksColorDictionary.UNKNOWN_ID);
+        int id = jdbcTemplate.queryForObject("INSERT INTO colors (name) VALUES (?) RETURNING id", Integer.class, color);
+        assertThat(colorDictionary.cachedId(color)).isNull();
+
+        assertThat(transactionTemplate.execute(status -> colorDictionary.idOf(color))).isEqualTo(id);
+
+        String other = uniqueColor();
+        assertThat(colorDictionary.idOf(other)).isEqualTo(SocksColorDictionary.UNKNOWN_ID);
+        int otherId = jdbcTemplate.queryForObject("INSERT INTO colors (name) VALUES (?) RETURNING id", Integer.class, other);
+        assertThat(colorDictionary.currentIdOf(other)).isEqualTo(otherId);
+
+        String notified = uniqueColor();
+        assertThat(colorDictionary.idOf(notified)).isEqualTo(SocksColorDictionary.UNKNOWN_ID);
+        int notifiedId = jdbcTemplate.queryForObject("INSERT INTO colors (name) VALUES (?) RETURNING id", Integer.class, notified);
+        colorDictionary.forgetUnknown(notified);
+        assertThat(colorDictionary.idOf(notified)).isEqualTo(notifiedId);
+    }
+
+    @Test
+    @DisplayName("Запись хранит идентификатор цвета и читается с названием")
+    void save_shouldStoreColorId() {
+        String color = uniqueColor();
+
+        Socks saved = socksRepository.save(Socks.builder().color(color).cottonPart(40).quantity(7).build());
+
+        Integer storedId = jdbcTemplate.queryForObject("SELECT color_id FROM socks WHERE id = ?", Integer.class, saved.getId());
+        assertThat(storedId).isEqualTo(colorDictionary.idOf(color));
+        assertThat(socksRepository.findByColorAndCottonPart(color, 40)).get()
+                .extracting(Socks::getColor, Socks::getQuantity)
+                .containsExactly(color, 7);
+        assertThat(socksRepository.existsByColorAndCottonPart(uniqueColor(), 40)).isFalse();
+    }
+
+    private int countColors(String color) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM colors WHERE name = ?", Integer.class, color);
+    }
+
+    private static String uniqueColor() {
+        return "dictionary-" + System.nanoTime() + "-" + SEQUENCE.incrementAndGet();
+    }
+}
@@ -0,0 +1,169 @@
+package ru.backspark.SockKeeper.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+class SocksRepositoryTest {
+
+    private static final int COLORS = 1000;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SqlRecorder sqlRecorder;
+
+    @BeforeEach
+    void setUp() {
+        // TRUNCATE, а не удаление записей: таблица заполняется заново с начала, без мертвых строк
+        jdbcTemplate.execute("TRUNCATE socks");
+        jdbcTemplate.update("""
+                INSERT INTO colors (name)
+                SELECT 'color-' || c FROM generate_series(1, ?) c
+                ON CONFLICT (name) DO NOTHING
+                """, COLORS);
+        // Записи лежат на страницах по возрастанию процента хлопка, как после загрузок партий одного состава:
+        // диапазон процента хлопка занимает немного соседних страниц, а записи одного цвета разбросаны по таблице
+        jdbcTemplate.update("""
+                INSERT INTO socks (color_id, cotton_part, quantity)
+                SELECT c.id, p, 10
+                FROM generate_series(0, 100) p, colors c
+                WHERE c.name LIKE 'color-%'
+                ORDER BY p, c.id
+                """);
+        jdbcTemplate.execute("ANALYZE socks");
+        sqlRecorder.clear();
+    }
+
+    @Test
+    @DisplayName("Поиск по цвету и проценту хлопка использует уникальный индекс")
+    void findByColorAndCottonPart_shouldUseUniqueIndex() {
+        assertThat(socksRepository.findByColorAndCottonPart("color-7", 50)).isPresent();
+
+        List<String> plan = explain(sqlRecorder.last(), colorId("color-7"), 50);
+
+        assertThat(plan).anyMatch(line -> line.contains("Index") && line.contains("uk_socks_color_cotton_part"));
+        assertThat(plan).noneMatch(line -> line.contains("Seq Scan"));
+    }
+
+    @Test
+    @DisplayName("Фильтр по цвету использует уникальный индекс по префиксу")
+    void filterByColor_shouldUseUniqueIndexPrefix() {
+        assertThat(socksRepository.findAll(SocksSpecifications.filter("color-7", null, null))).hasSize(101);
+
+        List<String> plan = explain(sqlRecorder.last(), colorId("color-7"));
+
+        assertThat(plan).anyMatch(line -> line.contains("Index") && line.contains("uk_socks_color_cotton_part"));
+        assertThat(plan).noneMatch(line -> line.contains("Seq Scan"));
+    }
+
+    @Test
+    @DisplayName("Сумма по цвету и диапазону процента хлопка использует уникальный индекс")
+    void sumQuantityByColor_shouldUseUniqueIndex() {
+        assertThat(socksRepository.sumQuantityByColor("color-7", 30, 35)).isEqualTo(60);
+
+        List<String> plan = explain(sqlRecorder.last(), colorId("color-7"), 30, 35);
+
+        assertThat(plan).anyMatch(line -> line.contains("Index") && line.contains("uk_socks_color_cotton_part"));
+        assertThat(plan).noneMatch(line -> line.contains("Seq Scan"));
+    }
+
+    @Test
+    @DisplayName("Сумма по диапазону процента хлопка использует индекс по cotton_part")
+    void sumQuantity_shouldUseCottonPartIndex() {
+        assertThat(socksRepository.sumQuantity(30, 35)).isEqualTo(6L * COLORS * 10);
+
+        List<String> plan = explain(sqlRecorder.last(), 30, 35);
+
+        assertThat(plan).anyMatch(line -> line.contains("Index") && line.contains("idx_socks_cotton_part"));
+        assertThat(plan).noneMatch(line -> line.contains("Seq Scan"));
+    }
+
+    @Test
+    @DisplayName("Сумма количества считается в базе по фильтрам")
+    void sumQuantity_shouldSumInDatabase() {
+        assertThat(socksRepository.sumQuantityByColor("color-7", 30, 35)).isEqualTo(60);
+        assertThat(socksRepository.sumQuantityByColor("unknown", 0, 100)).isZero();
+        assertThat(socksRepository.sumQuantity(0, 100)).isEqualTo(COLORS * 101L * 10);
+        assertThat(socksRepository.sumQuantity(100, 100)).isEqualTo(COLORS * 10L);
+    }
+
+    private int colorId(String color) {
+        return jdbcTemplate.queryForObject("SELECT id FROM colors WHERE name = ?", Integer.class, color);
+    }
+
+    /**
+     * План запроса, который сформировал Hibernate, с теми же значениями параметров.
+     */
+    private List<String> explain(String sql, Object... args) {
+        return jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args);
+    }
+
+    /**
+     * Запоминает SQL запросов к socks, отправленных Hibernate.
+     */
+    static class SqlRecorder implements StatementInspector {
+
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.contains(" from socks ")) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+
+        String last() {
+            assertThat(statements).isNotEmpty();
+            return statements.get(statements.size() - 1);
+        }
+
+        void clear() {
+            statements.clear();
+        }
+    }
+
+    @TestConfiguration
+    static class SqlRecorderConfig {
+
+        @Bean
+        SqlRecorder sqlRecorder() {
+            return new SqlRecorder();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer sqlRecorderCustomizer(SqlRecorder sqlRecorder) {
+            return properties -> properties.put("hibernate.session_factory.statement_inspector", sqlRecorder);
+        }
+    }
+}
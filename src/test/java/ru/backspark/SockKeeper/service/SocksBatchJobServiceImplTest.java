@@ -0,0 +1,102 @@
+package ru.backspark.SockKeeper.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.dto.SocksBatchJobRsDto;
+import ru.backspark.SockKeeper.error.exception.BatchJobNotFoundException;
+import ru.backspark.SockKeeper.model.SocksBatchJobStatus;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+class SocksBatchJobServiceImplTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private SocksBatchJobService socksBatchJobService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Асинхронная загрузка применяет файл и отражает ход в статусе")
+    void submitBatch_shouldCompleteInBackground() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "socks.csv",
+                "text/csv",
+                "red,50,100\nred,50,20\nblue,30,200".getBytes()
+        );
+
+        SocksBatchJobRsDto submitted = socksBatchJobService.submitBatch(file);
+        SocksBatchJobRsDto job = awaitFinished(submitted.getJobId());
+
+        assertThat(job.getStatus()).isEqualTo(SocksBatchJobStatus.COMPLETED);
+        assertThat(job.getLinesRead()).isEqualTo(3);
+        assertThat(job.getDistinctKeys()).isEqualTo(2);
+        assertThat(job.getLinesPerSecond()).isNotNull();
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(120);
+    }
+
+    @Test
+    @DisplayName("Ошибка в файле переводит задачу в статус FAILED")
+    void submitBatch_shouldReportFailure() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "invalid.csv",
+                "text/csv",
+                "red,50\nblue,30,200".getBytes()
+        );
+
+        SocksBatchJobRsDto job = awaitFinished(socksBatchJobService.submitBatch(file).getJobId());
+
+        assertThat(job.getStatus()).isEqualTo(SocksBatchJobStatus.FAILED);
+        assertThat(job.getError()).isEqualTo("Ошибка при обработке файла: Каждая строка должна содержать три значения: цвет, процент хлопка, количество.");
+    }
+
+    @Test
+    @DisplayName("Ошибка: Задача загрузки не найдена")
+    void getJob_shouldThrowExceptionWhenJobNotFound() {
+        BatchJobNotFoundException exception = assertThrows(
+                BatchJobNotFoundException.class,
+                () -> socksBatchJobService.getJob(UUID.randomUUID())
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("Задача загрузки с указанным ID не найдена.");
+    }
+
+    private SocksBatchJobRsDto awaitFinished(UUID jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        SocksBatchJobRsDto job = socksBatchJobService.getJob(jobId);
+        while ((job.getStatus() == SocksBatchJobStatus.QUEUED || job.getStatus() == SocksBatchJobStatus.RUNNING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            job = socksBatchJobService.getJob(jobId);
+        }
+        return job;
+    }
+}
@@ -1,5 +1,6 @@
 package ru.backspark.SockKeeper.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -11,15 +12,37 @@ import org.springframework.transaction.annotation.Transactional;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.dto.SocksBatchRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementLineRsDto;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.dto.SocksMovementsRsDto;
+import ru.backspark.SockKeeper.dto.SocksPageRsDto;
 import ru.backspark.SockKeeper.dto.SocksRsDto;
 import ru.backspark.SockKeeper.error.exception.FileProcessingException;
 import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
 import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
 import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
 import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksExportFormat;
+import ru.backspark.SockKeeper.model.SocksMovementStatus;
 import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -41,10 +64,21 @@ class SocksServiceImplTest {
     @Autowired
     private SocksRepository socksRepository;
 
+    @Autowired
+    private SocksCache socksCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SocksInventoryVersion inventoryVersion;
+
     @BeforeEach
     void setUp() {
         // Очищаем таблицу перед каждым тестом
         socksRepository.deleteAll();
+        // Тесты пишут в таблицу в обход сервиса, поэтому кэш сбрасываем вместе с ней
+        socksCache.invalidateAll();
 
     }
 
@@ -75,6 +109,32 @@ class SocksServiceImplTest {
         assertThat(updatedSocks.getQuantity()).isEqualTo(150);
     }
 
+    @Test
+    @DisplayName("Параллельный приход одной позиции не теряет обновлений")
+    void registerIncome_shouldBeAtomicUnderConcurrency() throws Exception {
+        int writers = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < writers; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                socksService.registerIncome("red", 50, 5);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(socksRepository.findAll()).hasSize(1);
+        Socks socks = socksRepository.findByColorAndCottonPart("red", 50).orElseThrow();
+        assertThat(socks.getQuantity()).isEqualTo(writers * 5);
+    }
+
     @Test
     @DisplayName("Ошибка при отрицательном количестве")
     void registerIncome_shouldThrowExceptionForNegativeQuantity() {
@@ -125,6 +185,105 @@ class SocksServiceImplTest {
         assertThat(updatedSocks.getQuantity()).isEqualTo(70);
     }
 
+    @Test
+    @DisplayName("Версия склада растет после зафиксированного изменения и не меняется при отклоненном")
+    void inventoryVersion_shouldChangeOnlyOnCommittedChanges() {
+        long before = inventoryVersion.current();
+
+        socksService.registerIncome("red", 50, 10);
+        long afterIncome = inventoryVersion.current();
+        assertThrows(InsufficientSocksInWarehouseException.class, () -> socksService.registerOutcome("red", 50, 20));
+
+        assertThat(afterIncome).isGreaterThan(before);
+        assertThat(inventoryVersion.current()).isEqualTo(afterIncome);
+    }
+
+    @Test
+    @DisplayName("Параллельный отпуск не уводит остаток в минус")
+    void registerOutcome_shouldNotOversellUnderConcurrency() throws Exception {
+        socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(100).build());
+
+        int sellers = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < sellers; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    socksService.registerOutcome("red", 50, 3);
+                    succeeded.incrementAndGet();
+                } catch (InsufficientSocksInWarehouseException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(succeeded.get()).isEqualTo(33);
+        assertThat(rejected.get()).isEqualTo(sellers - 33);
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Тысячи параллельных приходов и отпусков по нескольким парам сохраняют точные остатки")
+    void mixedIncomeAndOutcome_shouldKeepExactTotalsUnderConcurrency() throws Exception {
+        String[] colors = {"red", "blue", "green"};
+        int[] cottonParts = {10, 50};
+        int threads = 16;
+        int operationsPerThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<String, AtomicLong> expected = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    String color = colors[random.nextInt(colors.length)];
+                    int cottonPart = cottonParts[random.nextInt(cottonParts.length)];
+                    int quantity = 1 + random.nextInt(5);
+                    AtomicLong total = expected.computeIfAbsent(color + "/" + cottonPart, key -> new AtomicLong());
+                    if (random.nextInt(3) > 0) {
+                        socksService.registerIncome(color, cottonPart, quantity);
+                        total.addAndGet(quantity);
+                    } else {
+                        try {
+                            socksService.registerOutcome(color, cottonPart, quantity);
+                            total.addAndGet(-quantity);
+                        } catch (InsufficientSocksInWarehouseException | SocksNotFoundInWarehouse e) {
+                            // Отказ не меняет остаток
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (Socks socks : socksRepository.findAll()) {
+            String key = socks.getColor() + "/" + socks.getCottonPart();
+            assertThat(socks.getQuantity()).as(key).isEqualTo(expected.get(key).intValue()).isNotNegative();
+        }
+        assertThat(socksRepository.findAll().stream().mapToLong(Socks::getQuantity).sum())
+                .isEqualTo(expected.values().stream().mapToLong(AtomicLong::get).sum());
+    }
+
     @Test
     @DisplayName("Ошибка: Нехватка носков на складе")
     @Transactional
@@ -144,6 +303,100 @@ class SocksServiceImplTest {
         assertThat(exception.getMessage()).isEqualTo("Недостаточно носков на складе для выполнения операции.");
     }
 
+    @Test
+    @DisplayName("Список движений применяется целиком: сначала приходы, затем отпуски")
+    void registerMovements_shouldApplyAllLines() {
+        socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(10).build());
+
+        SocksMovementsRsDto result = socksService.registerMovements(List.of(
+                new SocksMovementRqDto("outcome", "red", 50, 12),
+                new SocksMovementRqDto("income", "red", 50, 5),
+                new SocksMovementRqDto("income", "blue", 30, 7),
+                new SocksMovementRqDto("outcome", "blue", 30, 2)));
+
+        assertThat(result.getApplied()).isTrue();
+        assertThat(result.getLines()).extracting(SocksMovementLineRsDto::getStatus)
+                .containsOnly(SocksMovementStatus.APPLIED);
+        assertThat(result.getLines()).extracting(SocksMovementLineRsDto::getRemaining).containsExactly(3, 3, 5, 5);
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(3);
+        assertThat(socksRepository.findByColorAndCottonPart("blue", 30).orElseThrow().getQuantity()).isEqualTo(5);
+        assertThat(socksService.countSocks("blue", null, null, "equal", 30, null)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Отклоненный список не меняет склад и сообщает результат по каждой строке")
+    void registerMovements_shouldRollBackWhenAnyOutcomeFails() {
+        socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(10).build());
+        socksRepository.save(Socks.builder().color("green").cottonPart(20).quantity(4).build());
+
+        SocksMovementsRsDto result = socksService.registerMovements(List.of(
+                new SocksMovementRqDto("income", "red", 50, 5),
+                new SocksMovementRqDto("outcome", "red", 50, 3),
+                new SocksMovementRqDto("outcome", "green", 20, 6),
+                new SocksMovementRqDto("outcome", "white", 10, 1)));
+
+        assertThat(result.getApplied()).isFalse();
+        assertThat(result.getLines()).extracting(SocksMovementLineRsDto::getStatus).containsExactly(
+                SocksMovementStatus.NOT_APPLIED,
+                SocksMovementStatus.NOT_APPLIED,
+                SocksMovementStatus.INSUFFICIENT,
+                SocksMovementStatus.NOT_FOUND);
+        assertThat(result.getLines().get(2).getAvailable()).isEqualTo(4);
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(10);
+        assertThat(socksRepository.findByColorAndCottonPart("green", 20).orElseThrow().getQuantity()).isEqualTo(4);
+        assertThat(socksRepository.existsByColorAndCottonPart("white", 10)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Встречные списки движений по одним и тем же парам не блокируют друг друга насмерть")
+    void registerMovements_shouldNotDeadlockOnOpposingLists() throws Exception {
+        socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(100_000).build());
+        socksRepository.save(Socks.builder().color("blue").cottonPart(30).quantity(100_000).build());
+        // Каждый список приходует одну пару и отпускает другую, соседние списки — наоборот
+        List<SocksMovementRqDto> redToBlue = List.of(
+                new SocksMovementRqDto("income", "red", 50, 1),
+                new SocksMovementRqDto("outcome", "blue", 30, 1));
+        List<SocksMovementRqDto> blueToRed = List.of(
+                new SocksMovementRqDto("income", "blue", 30, 1),
+                new SocksMovementRqDto("outcome", "red", 50, 1));
+        int lists = 400;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<SocksMovementsRsDto>> futures = new ArrayList<>();
+
+        for (int i = 0; i < lists; i++) {
+            List<SocksMovementRqDto> movements = i % 2 == 0 ? redToBlue : blueToRed;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return socksService.registerMovements(movements);
+            }));
+        }
+        start.countDown();
+        for (Future<SocksMovementsRsDto> future : futures) {
+            assertThat(future.get(60, TimeUnit.SECONDS).getApplied()).isTrue();
+        }
+        executor.shutdown();
+
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(100_000);
+        assertThat(socksRepository.findByColorAndCottonPart("blue", 30).orElseThrow().getQuantity()).isEqualTo(100_000);
+    }
+
+    @Test
+    @DisplayName("Ошибка: Некорректная строка списка движений")
+    void registerMovements_shouldThrowExceptionForInvalidLine() {
+        InvalidDataFormatException exception = assertThrows(
+                InvalidDataFormatException.class,
+                () -> socksService.registerMovements(List.of(
+                        new SocksMovementRqDto("income", "red", 50, 5),
+                        new SocksMovementRqDto("transfer", "red", 50, 3)))
+        );
+
+        assertThat(exception.getMessage())
+                .isEqualTo("Строка 2: Недопустимое значение для параметра type. Доступные значения: income, outcome.");
+        assertThat(socksRepository.existsByColorAndCottonPart("red", 50)).isFalse();
+        assertThrows(InvalidDataFormatException.class, () -> socksService.registerMovements(List.of()));
+    }
+
     @Test
     @DisplayName("Ошибка: Носки с указанными параметрами не найдены")
     void registerOutcome_shouldThrowExceptionWhenSocksNotFound() {
@@ -199,7 +452,7 @@ class SocksServiceImplTest {
                 Socks.builder().color("red").cottonPart(80).quantity(150).build()
         ));
 
-        List<SocksRsDto> result = socksService.getSocks("red", null, null, null);
+        List<SocksRsDto> result = socksService.getSocks("red", null, null, null, null, null).getItems();
 
         assertThat(result).hasSize(2);
         assertThat(result).allMatch(socks -> socks.getColor().equals("red"));
@@ -216,7 +469,7 @@ class SocksServiceImplTest {
                 Socks.builder().color("red").cottonPart(80).quantity(150).build()
         ));
 
-        List<SocksRsDto> result = socksService.getSocks(null, 50, null, null);
+        List<SocksRsDto> result = socksService.getSocks(null, 50, null, null, null, null).getItems();
 
         assertThat(result).hasSize(3);
         assertThat(result).allMatch(socks -> socks.getCottonPart() >= 50);
@@ -233,7 +486,7 @@ class SocksServiceImplTest {
                 Socks.builder().color("red").cottonPart(80).quantity(150).build()
         ));
 
-        List<SocksRsDto> result = socksService.getSocks(null, null, 50, null);
+        List<SocksRsDto> result = socksService.getSocks(null, null, 50, null, null, null).getItems();
 
         assertThat(result).hasSize(2);
         assertThat(result).allMatch(socks -> socks.getCottonPart() <= 50);
@@ -250,7 +503,7 @@ class SocksServiceImplTest {
                 Socks.builder().color("red").cottonPart(80).quantity(150).build()
         ));
 
-        List<SocksRsDto> result = socksService.getSocks(null, 30, 70, null);
+        List<SocksRsDto> result = socksService.getSocks(null, 30, 70, null, null, null).getItems();
 
         assertThat(result).hasSize(3);
         assertThat(result).allMatch(socks -> socks.getCottonPart() >= 30 && socks.getCottonPart() <= 70);
@@ -267,7 +520,7 @@ class SocksServiceImplTest {
                 Socks.builder().color("red").cottonPart(80).quantity(150).build()
         ));
 
-        List<SocksRsDto> result = socksService.getSocks(null, null, null, "color");
+        List<SocksRsDto> result = socksService.getSocks(null, null, null, "color", null, null).getItems();
 
         assertThat(result).hasSize(4);
         assertThat(result).extracting(SocksRsDto::getColor).containsExactly("blue", "green", "red", "red");
@@ -284,18 +537,190 @@ class SocksServiceImplTest {
                 Socks.builder().color("red").cottonPart(80).quantity(150).build()
         ));
 
-        List<SocksRsDto> result = socksService.getSocks(null, null, null, "cottonPart");
+        List<SocksRsDto> result = socksService.getSocks(null, null, null, "cottonPart", null, null).getItems();
 
         assertThat(result).hasSize(4);
         assertThat(result).extracting(SocksRsDto::getCottonPart).containsExactly(30, 50, 70, 80);
     }
 
+    @Test
+    @DisplayName("Постраничная выдача по курсору проходит все записи без пропусков и повторов")
+    @Transactional
+    void getSocks_shouldPageWithCursor() {
+        socksRepository.saveAll(List.of(
+                Socks.builder().color("red").cottonPart(50).quantity(100).build(),
+                Socks.builder().color("blue").cottonPart(30).quantity(200).build(),
+                Socks.builder().color("green").cottonPart(70).quantity(50).build(),
+                Socks.builder().color("red").cottonPart(80).quantity(150).build(),
+                Socks.builder().color("blue").cottonPart(90).quantity(10).build()
+        ));
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SocksPageRsDto page = socksService.getSocks(null, null, null, "color", 2, cursor);
+            page.getItems().forEach(socks -> seen.add(socks.getColor() + "/" + socks.getCottonPart()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).containsExactly("blue/30", "blue/90", "green/70", "red/50", "red/80");
+    }
+
+    @Test
+    @DisplayName("Курсор учитывает фильтры и сортировку по проценту хлопка")
+    @Transactional
+    void getSocks_shouldPageFilteredByCottonPart() {
+        socksRepository.saveAll(List.of(
+                Socks.builder().color("red").cottonPart(50).quantity(100).build(),
+                Socks.builder().color("blue").cottonPart(50).quantity(200).build(),
+                Socks.builder().color("green").cottonPart(70).quantity(50).build(),
+                Socks.builder().color("red").cottonPart(10).quantity(150).build()
+        ));
+
+        SocksPageRsDto first = socksService.getSocks(null, 20, null, "cottonPart", 2, null);
+        SocksPageRsDto second = socksService.getSocks(null, 20, null, "cottonPart", 2, first.getNextCursor());
+
+        assertThat(first.getItems()).extracting(SocksRsDto::getColor).containsExactly("blue", "red");
+        assertThat(second.getItems()).extracting(SocksRsDto::getColor).containsExactly("green");
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Подсчет количества по цвету и операциям сравнения процента хлопка")
+    void countSocks_shouldApplyOperations() {
+        socksRepository.saveAll(List.of(
+                Socks.builder().color("red").cottonPart(50).quantity(100).build(),
+                Socks.builder().color("red").cottonPart(80).quantity(300).build(),
+                Socks.builder().color("blue").cottonPart(30).quantity(200).build(),
+                Socks.builder().color("blue").cottonPart(50).quantity(400).build()
+        ));
+
+        assertThat(socksService.countSocks(null, null, null, null, null, null)).isEqualTo(1000);
+        assertThat(socksService.countSocks("red", null, null, null, null, null)).isEqualTo(400);
+        assertThat(socksService.countSocks(null, null, null, "moreThan", 50, null)).isEqualTo(300);
+        assertThat(socksService.countSocks(null, null, null, "lessThan", 50, null)).isEqualTo(200);
+        assertThat(socksService.countSocks(null, null, null, "equal", 50, null)).isEqualTo(500);
+        assertThat(socksService.countSocks("blue", null, null, "between", 30, 50)).isEqualTo(600);
+        assertThat(socksService.countSocks(null, 60, null, "lessThan", 60, null)).isZero();
+        assertThat(socksService.countSocks("green", null, null, null, null, null)).isZero();
+    }
+
+    @Test
+    @DisplayName("Повторные запросы берутся из кэша, а запись через сервис сразу видна")
+    void getSocks_shouldServeFromCacheAndSeeWrites() {
+        socksService.registerIncome("red", 50, 100);
+        socksService.registerIncome("blue", 30, 200);
+
+        long hits = socksCache.queryStats().hitCount();
+        assertThat(socksService.getSocks("red", null, null, null, null, null).getItems()).hasSize(1);
+        assertThat(socksService.getSocks("red", null, null, null, null, null).getItems()).hasSize(1);
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(100);
+        assertThat(socksService.countSocks(null, null, null, null, null, null)).isEqualTo(300);
+        assertThat(socksCache.queryStats().hitCount()).isEqualTo(hits + 1);
+
+        socksService.registerOutcome("red", 50, 40);
+        socksService.registerIncome("red", 80, 10);
+
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(60);
+        assertThat(socksService.countSocks(null, null, null, null, null, null)).isEqualTo(270);
+        assertThat(socksService.getSocks("red", null, null, null, null, null).getItems())
+                .extracting(SocksRsDto::getQuantity)
+                .containsExactly(60, 10);
+    }
+
+    @Test
+    @DisplayName("Ошибка: Операция подсчета без процента хлопка")
+    void countSocks_shouldThrowExceptionWithoutCottonPart() {
+        InvalidDataFormatException exception = assertThrows(
+                InvalidDataFormatException.class,
+                () -> socksService.countSocks(null, null, null, "moreThan", null, null)
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("Для параметра operation необходимо указать cottonPart.");
+    }
+
+    @Test
+    @DisplayName("Ошибка при некорректном значении операции подсчета")
+    void countSocks_shouldThrowExceptionForInvalidOperation() {
+        InvalidDataFormatException exception = assertThrows(
+                InvalidDataFormatException.class,
+                () -> socksService.countSocks(null, null, null, "notEqual", 50, null)
+        );
+
+        assertThat(exception.getMessage())
+                .isEqualTo("Недопустимое значение для параметра operation. Доступные значения: moreThan, lessThan, equal, between.");
+    }
+
+    @Test
+    @DisplayName("Выгрузка в NDJSON отдает все подходящие записи по одной на строку")
+    void exportSocks_shouldWriteNdjson() throws Exception {
+        socksRepository.saveAll(List.of(
+                Socks.builder().color("red").cottonPart(50).quantity(100).build(),
+                Socks.builder().color("blue").cottonPart(30).quantity(200).build(),
+                Socks.builder().color("red").cottonPart(80).quantity(300).build()
+        ));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        socksService.exportSocks("red", null, null, SocksExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"color\":\"red\"", "\"cottonPart\":50", "\"quantity\":100");
+        assertThat(lines[1]).contains("\"color\":\"red\"", "\"cottonPart\":80", "\"quantity\":300");
+    }
+
+    @Test
+    @DisplayName("Выгрузка в CSV совместима с загрузкой партий")
+    void exportSocks_shouldWriteCsvAcceptedByBatchUpload() throws Exception {
+        socksRepository.saveAll(List.of(
+                Socks.builder().color("red").cottonPart(50).quantity(100).build(),
+                Socks.builder().color("dark, blue").cottonPart(30).quantity(200).build()
+        ));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        socksService.exportSocks(null, null, null, SocksExportFormat.CSV, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("red,50,100\n\"dark, blue\",30,200\n");
+
+        socksRepository.deleteAll();
+        socksService.processSocksBatch(new MockMultipartFile("file", "export.csv", "text/csv", out.toByteArray()));
+
+        assertThat(socksRepository.findByColorAndCottonPart("dark, blue", 30))
+                .hasValueSatisfying(socks -> assertThat(socks.getQuantity()).isEqualTo(200));
+        assertThat(socksRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Ошибка: Некорректный курсор")
+    void getSocks_shouldThrowExceptionForInvalidCursor() {
+        InvalidDataFormatException exception = assertThrows(
+                InvalidDataFormatException.class,
+                () -> socksService.getSocks(null, null, null, null, 10, "not-a-cursor")
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("Некорректное значение параметра cursor.");
+    }
+
+    @Test
+    @DisplayName("Ошибка: Размер страницы вне допустимого диапазона")
+    void getSocks_shouldThrowExceptionForInvalidLimit() {
+        InvalidDataFormatException exception = assertThrows(
+                InvalidDataFormatException.class,
+                () -> socksService.getSocks(null, null, null, null, 5000, null)
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("Параметр limit должен быть в диапазоне 1-1000.");
+    }
+
     @Test
     @DisplayName("Ошибка при некорректном значении параметра сортировки")
     void getSocks_shouldThrowExceptionForInvalidSortBy() {
         InvalidDataFormatException exception = assertThrows(
                 InvalidDataFormatException.class,
-                () -> socksService.getSocks(null, null, null, "invalid")
+                () -> socksService.getSocks(null, null, null, "invalid", null, null).getItems()
         );
 
         assertThat(exception.getMessage()).isEqualTo("Недопустимое значение для параметра sortBy. Доступные значения: color, cottonPart.");
@@ -325,6 +750,21 @@ class SocksServiceImplTest {
         assertThat(socksInDb.getQuantity()).isEqualTo(200);
     }
 
+    @Test
+    @DisplayName("Ошибка: Носки с новыми параметрами уже существуют")
+    @Transactional
+    void updateSocks_shouldThrowExceptionWhenTargetPairExists() {
+        Socks savedSocks = socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(100).build());
+        socksRepository.save(Socks.builder().color("blue").cottonPart(70).quantity(10).build());
+
+        InvalidDataFormatException exception = assertThrows(
+                InvalidDataFormatException.class,
+                () -> socksService.updateSocks(savedSocks.getId(), "blue", 70, 200)
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("Носки с указанными параметрами уже существуют.");
+    }
+
     @Test
     @DisplayName("Ошибка: Носки с указанным ID не найдены")
     void updateSocks_shouldThrowExceptionWhenSocksNotFound() {
@@ -390,6 +830,26 @@ class SocksServiceImplTest {
         assertThat(exception.getMessage()).isEqualTo("Процент хлопка должен быть в диапазоне 0-100.");
     }
 
+    @Test
+    @DisplayName("Загрузка партии и вызовы сервиса попадают в метрики")
+    void processSocksBatch_shouldRecordMetrics() {
+        double parsed = meterRegistry.counter("socks.batch.lines.parsed").count();
+        double written = meterRegistry.counter("socks.batch.rows.written").count();
+        double rejected = meterRegistry.counter("socks.batch.lines.rejected").count();
+
+        socksService.processSocksBatch(new MockMultipartFile("file", "socks.csv", "text/csv",
+                "red,50,100\nblue,30,200\nred,50,5".getBytes()));
+        assertThrows(FileProcessingException.class, () -> socksService.processSocksBatch(
+                new MockMultipartFile("file", "socks.csv", "text/csv", "red,50,100\nred,fifty,1".getBytes())));
+
+        assertThat(meterRegistry.counter("socks.batch.lines.parsed").count() - parsed).isGreaterThanOrEqualTo(3);
+        assertThat(meterRegistry.counter("socks.batch.rows.written").count() - written).isEqualTo(2);
+        assertThat(meterRegistry.counter("socks.batch.lines.rejected").count() - rejected).isEqualTo(1);
+        assertThat(meterRegistry.get("socks.service").tag("method", "processSocksBatch").timers())
+                .extracting(timer -> timer.getId().getTag("exception"))
+                .contains("none", "FileProcessingException");
+    }
+
     @Test
     @DisplayName("Успешная обработка файла партии носков")
     @Transactional
@@ -412,6 +872,52 @@ class SocksServiceImplTest {
         assertThat(savedSocks).extracting(Socks::getQuantity).containsExactlyInAnyOrder(100, 200, 50);
     }
 
+    @Test
+    @DisplayName("Повторяющиеся позиции в файле суммируются с остатками")
+    @Transactional
+    void processSocksBatch_shouldMergeDuplicatePairs() {
+        socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(10).build());
+        String content = "red,50,100\nred,50,20\nblue,30,200";
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "socks.csv",
+                "text/csv",
+                content.getBytes()
+        );
+
+        SocksBatchRsDto result = socksService.processSocksBatch(file);
+
+        assertThat(result.getLinesRead()).isEqualTo(3);
+        assertThat(result.getDistinctKeys()).isEqualTo(2);
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(socksRepository.findAll()).hasSize(2);
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(130);
+        assertThat(socksRepository.findByColorAndCottonPart("blue", 30).orElseThrow().getQuantity()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Файл больше одной порции записывается полностью")
+    @Transactional
+    void processSocksBatch_shouldWriteAllChunks() {
+        StringBuilder content = new StringBuilder();
+        for (int color = 0; color < 25; color++) {
+            for (int cottonPart = 0; cottonPart <= 100; cottonPart++) {
+                content.append("color-").append(color).append(',').append(cottonPart).append(",1\n");
+            }
+        }
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "big.csv",
+                "text/csv",
+                content.toString().getBytes()
+        );
+
+        socksService.processSocksBatch(file);
+
+        assertThat(socksRepository.count()).isEqualTo(25 * 101);
+    }
+
     @Test
     @DisplayName("Ошибка: Пустой файл")
     void processSocksBatch_shouldThrowExceptionForEmptyFile() {
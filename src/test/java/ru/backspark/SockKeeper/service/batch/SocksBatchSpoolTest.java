@@ -0,0 +1,33 @@
+package ru.backspark.SockKeeper.service.batch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.backspark.SockKeeper.config.SocksProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SocksBatchSpoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Загрузка сохраняется в настроенный каталог, который создается при необходимости")
+    void save_shouldUseConfiguredSpoolDir() throws IOException {
+        Path spoolDir = tempDir.resolve("spool");
+        SocksProperties properties = new SocksProperties();
+        properties.getBatch().getJobs().setSpoolDir(spoolDir.toString());
+        SocksBatchSpool spool = new SocksBatchSpool(properties);
+
+        Path file = spool.save(new MockMultipartFile("file", "socks.csv", "text/csv", "red,50,10".getBytes()));
+
+        assertThat(file.getParent()).isEqualTo(spoolDir);
+        assertThat(Files.readString(file)).isEqualTo("red,50,10");
+    }
+}
@@ -0,0 +1,79 @@
+package ru.backspark.SockKeeper.service.batch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.backspark.SockKeeper.error.exception.FileProcessingException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SocksCsvLineParserTest {
+
+    private final SocksCsvLineParser parser = new SocksCsvLineParser();
+
+    @Test
+    @DisplayName("Разбор корректной строки")
+    void parse_shouldReadFields() {
+        parse("red,50,100");
+
+        assertThat(parser.color()).isEqualTo("red");
+        assertThat(parser.cottonPart()).isEqualTo(50);
+        assertThat(parser.quantity()).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("Поля в кавычках и перевод строки Windows")
+    void parse_shouldReadQuotedFields() {
+        parse("\"dark, \"\"navy\"\"\",\"30\",7\r");
+
+        assertThat(parser.color()).isEqualTo("dark, \"navy\"");
+        assertThat(parser.cottonPart()).isEqualTo(30);
+        assertThat(parser.quantity()).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Цвета в кодировке UTF-8 и повторное использование кэша")
+    void parse_shouldDecodeUtf8Colors() {
+        parse("красный,10,1");
+        String first = parser.color();
+        parse("красный,20,2");
+
+        assertThat(parser.color()).isEqualTo("красный").isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("Ошибка: Неверное число полей")
+    void parse_shouldRejectWrongFieldCount() {
+        FileProcessingException exception = assertThrows(FileProcessingException.class, () -> parse("red,50"));
+
+        assertThat(exception.getMessage()).isEqualTo("Каждая строка должна содержать три значения: цвет, процент хлопка, количество.");
+    }
+
+    @Test
+    @DisplayName("Ошибка: Нечисловые значения и переполнение")
+    void parse_shouldRejectNonNumbers() {
+        for (String line : new String[]{"red,abc,100", "red,50, 1", "red,,1", "red,50,-", "red,50,2147483648"}) {
+            FileProcessingException exception = assertThrows(FileProcessingException.class, () -> parse(line));
+
+            assertThat(exception.getMessage()).isEqualTo("Процент хлопка и количество должны быть числами.");
+        }
+    }
+
+    @Test
+    @DisplayName("Ошибка: Значения вне допустимого диапазона")
+    void parse_shouldValidateRanges() {
+        InvalidDataFormatException cotton = assertThrows(InvalidDataFormatException.class, () -> parse("red,-10,1"));
+        InvalidDataFormatException quantity = assertThrows(InvalidDataFormatException.class, () -> parse("red,50,-100"));
+
+        assertThat(cotton.getMessage()).isEqualTo("Процент хлопка должен быть в диапазоне 0-100.");
+        assertThat(quantity.getMessage()).isEqualTo("Количество должно быть положительным.");
+    }
+
+    private void parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        parser.parse(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,129 @@
+package ru.backspark.SockKeeper.service.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.model.SocksBatchProgress;
+import ru.backspark.SockKeeper.model.SocksUpsertResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SocksCsvPipelineTest {
+
+    private static final int COLORS = 40;
+    private static final int LINES = 400_000;
+
+    @TempDir
+    Path tempDir;
+
+    private SocksCsvPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        SocksProperties properties = new SocksProperties();
+        properties.getBatch().setParserThreads(4);
+        properties.getBatch().setChunkSize(500);
+        pipeline = new SocksCsvPipeline(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    @DisplayName("Параллельный разбор многосегментного файла дает те же суммы, что и последовательный")
+    void run_shouldAggregateAllSegments() throws IOException {
+        Path file = tempDir.resolve("big.csv");
+        Map<String, Long> expected = new HashMap<>();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < LINES; i++) {
+                String color = "color-" + (i % COLORS);
+                int cottonPart = (i / COLORS) % 101;
+                int quantity = i % 7 + 1;
+                writer.write(color + "," + cottonPart + "," + quantity + "\n");
+                expected.merge(color + "/" + cottonPart, (long) quantity, Long::sum);
+            }
+        }
+        assertThat(Files.size(file)).isGreaterThan(4L * 1024 * 1024);
+
+        Map<String, Long> actual = new HashMap<>();
+        SocksBatchProgress progress = new SocksBatchProgress();
+        pipeline.run(file, progress, aggregate -> aggregate.forEach((color, cottonPart, quantity) ->
+                actual.merge(color + "/" + cottonPart, quantity, Long::sum)));
+
+        assertThat(progress.getLinesRead()).isEqualTo(LINES);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Пара, записанная несколькими порциями, учитывается в итоге один раз")
+    void run_shouldCountPairsOnceAcrossChunks() throws IOException {
+        Path file = tempDir.resolve("repeated.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < LINES; i++) {
+                writer.write("color-" + (i % COLORS) + "," + (i / COLORS) % 101 + ",1\n");
+            }
+        }
+        // Хранилище создает пару при первой записи и увеличивает при следующих, как групповое добавление
+        Map<String, Long> stored = new HashMap<>();
+        stored.put("color-0/0", 5L);
+        SocksBatchProgress progress = new SocksBatchProgress();
+        long[] writtenKeys = new long[1];
+
+        pipeline.run(file, progress, aggregate -> {
+            int[] inserted = new int[1];
+            aggregate.forEach((color, cottonPart, quantity) -> {
+                if (stored.merge(color + "/" + cottonPart, quantity, Long::sum) == quantity) {
+                    inserted[0]++;
+                }
+            });
+            progress.addWritten(aggregate, new SocksUpsertResult(inserted[0], aggregate.distinctKeys() - inserted[0]));
+            writtenKeys[0] += aggregate.distinctKeys();
+        });
+
+        // Пары повторяются по всему файлу и попадают в несколько порций
+        assertThat(writtenKeys[0]).isGreaterThan(COLORS * 101);
+        assertThat(progress.getDistinctKeys()).isEqualTo(COLORS * 101);
+        assertThat(progress.getInserted()).isEqualTo(COLORS * 101 - 1);
+        assertThat(progress.getUpdated()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Сообщается самая ранняя по файлу ошибка")
+    void run_shouldReportEarliestError() throws IOException {
+        Path file = tempDir.resolve("invalid.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < LINES; i++) {
+                if (i == LINES / 10) {
+                    writer.write("red,150,1\n");
+                } else if (i == LINES - 10) {
+                    writer.write("red,50,-1\n");
+                } else {
+                    writer.write("red,50,1\n");
+                }
+            }
+        }
+
+        InvalidDataFormatException exception = assertThrows(
+                InvalidDataFormatException.class,
+                () -> pipeline.run(file, new SocksBatchProgress(), aggregate -> {
+                })
+        );
+
+        assertThat(exception.getMessage()).isEqualTo("Процент хлопка должен быть в диапазоне 0-100.");
+    }
+}
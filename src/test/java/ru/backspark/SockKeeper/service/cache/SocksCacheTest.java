@@ -0,0 +1,102 @@
+package ru.backspark.SockKeeper.service.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.service.event.SocksChangedEvent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SocksCacheTest {
+
+    private final SocksInventoryVersion inventoryVersion = new SocksInventoryVersion();
+    private final SocksCache cache = new SocksCache(new SocksProperties(), inventoryVersion);
+
+    @Test
+    @DisplayName("Повторное чтение пары берется из кэша")
+    void getQuantity_shouldLoadOnce() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.getQuantity("red", 50, () -> loads.incrementAndGet() * 100L)).isEqualTo(100);
+        assertThat(cache.getQuantity("red", 50, () -> loads.incrementAndGet() * 100L)).isEqualTo(100);
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.quantityStats().hitCount()).isEqualTo(1);
+        assertThat(cache.quantityStats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Изменение пары сбрасывает только ее количество")
+    void invalidate_shouldDropOnlyChangedQuantity() {
+        cache.getQuantity("red", 50, () -> 100);
+        cache.getQuantity("red", 60, () -> 200);
+
+        cache.invalidate(SocksChangedEvent.of("red", 50, 10));
+
+        assertThat(cache.getQuantity("red", 50, () -> 110)).isEqualTo(110);
+        assertThat(cache.getQuantity("red", 60, () -> -1)).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Изменение пары сбрасывает только запросы, в фильтр которых она попадает")
+    void invalidate_shouldDropOnlyMatchingQueries() {
+        cache.getQuery("red", 40, 60, "q", () -> "red 40-60");
+        cache.getQuery("red", 70, 90, "q", () -> "red 70-90");
+        cache.getQuery("blue", null, null, "q", () -> "blue");
+        cache.getQuery(null, 0, 50, "q", () -> "all 0-50");
+        cache.getQuery(" ", 51, null, "q", () -> "all 51-100");
+
+        cache.invalidate(SocksChangedEvent.of("red", 50, 10));
+
+        assertThat(cache.getQuery("red", 40, 60, "q", () -> "reloaded")).isEqualTo("reloaded");
+        assertThat(cache.getQuery(null, 0, 50, "q", () -> "reloaded")).isEqualTo("reloaded");
+        assertThat(cache.getQuery("red", 70, 90, "q", () -> "reloaded")).isEqualTo("red 70-90");
+        assertThat(cache.getQuery("blue", 0, 100, "q", () -> "reloaded")).isEqualTo("blue");
+        assertThat(cache.getQuery(null, 51, 100, "q", () -> "reloaded")).isEqualTo("all 51-100");
+    }
+
+    @Test
+    @DisplayName("Значение, прочитанное до сброса, не остается в кэше")
+    void getQuantity_shouldNotKeepValueLoadedBeforeInvalidation() {
+        // Изменение фиксируется, пока читатель загружает старое значение из базы
+        long stale = cache.getQuantity("red", 50, () -> {
+            cache.invalidate(SocksChangedEvent.of("red", 50, 10));
+            return 100;
+        });
+
+        assertThat(stale).isEqualTo(100);
+        assertThat(cache.getQuantity("red", 50, () -> 110)).isEqualTo(110);
+    }
+
+    @Test
+    @DisplayName("Версия склада растет только после сброса записей")
+    void invalidate_shouldBumpVersionAfterDroppingEntries() {
+        cache.getQuantity("red", 50, () -> 100);
+        long version = inventoryVersion.current();
+
+        // Читатель, увидевший новую версию, не должен найти в кэше старое значение
+        cache.onChangedBeforeCommit(SocksChangedEvent.of("red", 50, 10));
+        assertThat(inventoryVersion.current()).isEqualTo(version);
+        cache.getQuantity("red", 50, () -> 100);
+        cache.onChangedAfterCompletion(SocksChangedEvent.of("red", 50, 10));
+
+        assertThat(inventoryVersion.current()).isEqualTo(version + 1);
+        assertThat(cache.getQuantity("red", 50, () -> 110)).isEqualTo(110);
+    }
+
+    @Test
+    @DisplayName("Отключенный кэш всегда читает из источника")
+    void disabledCache_shouldAlwaysLoad() {
+        SocksProperties properties = new SocksProperties();
+        properties.getCache().setEnabled(false);
+        SocksCache disabled = new SocksCache(properties, inventoryVersion);
+        AtomicInteger loads = new AtomicInteger();
+
+        disabled.getQuery("red", null, null, "q", loads::incrementAndGet);
+        disabled.getQuery("red", null, null, "q", loads::incrementAndGet);
+
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -0,0 +1,169 @@
+package ru.backspark.SockKeeper.service.coalescing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "socks.coalescing.enabled=true",
+        "socks.coalescing.max-delay=20ms"
+})
+@Testcontainers
+@ActiveProfiles("test")
+class SocksWriteCoalescerTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private SocksWriteCoalescer coalescer;
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private SocksCache socksCache;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        socksCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Операции одной группы проводятся по порядку, отказ получает только своя операция")
+    void group_shouldApplyOperationsInOrderAndRejectIndividually() throws Exception {
+        socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(10).build());
+
+        CompletableFuture<Void> income = coalescer.income("blue", 30, 5);
+        CompletableFuture<Void> outcome = coalescer.outcome("blue", 30, 3);
+        CompletableFuture<Void> insufficient = coalescer.outcome("red", 50, 11);
+        CompletableFuture<Void> sufficient = coalescer.outcome("red", 50, 10);
+        CompletableFuture<Void> missing = coalescer.outcome("green", 70, 1);
+
+        income.get(10, TimeUnit.SECONDS);
+        outcome.get(10, TimeUnit.SECONDS);
+        sufficient.get(10, TimeUnit.SECONDS);
+        ExecutionException notEnough = assertThrows(ExecutionException.class, () -> insufficient.get(10, TimeUnit.SECONDS));
+        assertThat(notEnough.getCause()).isInstanceOf(InsufficientSocksInWarehouseException.class);
+        ExecutionException notFound = assertThrows(ExecutionException.class, () -> missing.get(10, TimeUnit.SECONDS));
+        assertThat(notFound.getCause()).isInstanceOf(SocksNotFoundInWarehouse.class);
+
+        assertThat(socksRepository.findByColorAndCottonPart("blue", 30).orElseThrow().getQuantity()).isEqualTo(2);
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isZero();
+        assertThat(socksRepository.existsByColorAndCottonPart("green", 70)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Пара, созданная и опустошенная в одной группе, остается с нулевым количеством")
+    void group_shouldKeepPairCreatedWithinGroup() throws Exception {
+        CompletableFuture<Void> income = coalescer.income("black", 0, 4);
+        CompletableFuture<Void> outcome = coalescer.outcome("black", 0, 4);
+
+        income.get(10, TimeUnit.SECONDS);
+        outcome.get(10, TimeUnit.SECONDS);
+
+        assertThat(socksRepository.findByColorAndCottonPart("black", 0).orElseThrow().getQuantity()).isZero();
+    }
+
+    @Test
+    @DisplayName("Сервис пробрасывает отказ по операции из группы")
+    void registerOutcome_shouldThrowRejectionFromGroup() {
+        socksService.registerIncome("red", 50, 5);
+
+        assertThrows(InsufficientSocksInWarehouseException.class,
+                () -> socksService.registerOutcome("red", 50, 6));
+        assertThrows(SocksNotFoundInWarehouse.class,
+                () -> socksService.registerOutcome("white", 50, 1));
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Параллельные приходы и отпуски записываются группами без потери изменений")
+    void concurrentOperations_shouldBeCoalescedWithExactTotals() throws Exception {
+        String[] colors = {"red", "blue", "green"};
+        int[] cottonParts = {10, 50};
+        int threads = 16;
+        int operationsPerThread = 100;
+        long groupsBefore = coalescer.getGroups();
+        long operationsBefore = coalescer.getOperations();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<String, AtomicLong> expected = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    String color = colors[random.nextInt(colors.length)];
+                    int cottonPart = cottonParts[random.nextInt(cottonParts.length)];
+                    int quantity = 1 + random.nextInt(5);
+                    AtomicLong total = expected.computeIfAbsent(color + "/" + cottonPart, key -> new AtomicLong());
+                    if (random.nextInt(3) > 0) {
+                        socksService.registerIncome(color, cottonPart, quantity);
+                        total.addAndGet(quantity);
+                    } else {
+                        try {
+                            socksService.registerOutcome(color, cottonPart, quantity);
+                            total.addAndGet(-quantity);
+                        } catch (InsufficientSocksInWarehouseException | SocksNotFoundInWarehouse e) {
+                            // Отказ не меняет остаток
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (Socks socks : socksRepository.findAll()) {
+            String key = socks.getColor() + "/" + socks.getCottonPart();
+            assertThat(socks.getQuantity()).as(key).isEqualTo(expected.get(key).intValue()).isNotNegative();
+        }
+        long operations = coalescer.getOperations() - operationsBefore;
+        assertThat(operations).isEqualTo((long) threads * operationsPerThread);
+        assertThat(coalescer.getGroups() - groupsBefore).isLessThan(operations);
+    }
+}
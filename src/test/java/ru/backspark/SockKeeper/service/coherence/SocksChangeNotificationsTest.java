@@ -0,0 +1,213 @@
+package ru.backspark.SockKeeper.service.coherence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.repository.SocksNotificationRepository;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
+import ru.backspark.SockKeeper.service.index.SocksQuantityIndex;
+
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"socks.coherence.enabled=true", "socks.quantity-index.enabled=true",
+        "socks.colors.unknown-ttl=10m"})
+@Testcontainers
+@ActiveProfiles("test")
+class SocksChangeNotificationsTest {
+
+    private static final String CHANNEL = "socks_changes";
+    private static final String REMOTE_INSTANCE = "remote-1";
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private SocksNotificationRepository notificationRepository;
+
+    @Autowired
+    private SocksCache socksCache;
+
+    @Autowired
+    private SocksInventoryVersion inventoryVersion;
+
+    @Autowired
+    private SocksQuantityIndex quantityIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        socksRepository.deleteAll();
+        socksCache.invalidateAll();
+        assertThat(quantityIndex.rebuild()).isTrue();
+        socksService.registerIncome("red", 50, 100);
+        socksService.registerIncome("blue", 30, 10);
+        awaitListening();
+    }
+
+    @Test
+    @DisplayName("Изменение другого экземпляра сбрасывает кэш, обновляет индекс и версию склада")
+    void remoteChange_shouldUpdateLocalState() throws InterruptedException {
+        // Значения попадают в кэш и индекс этого экземпляра
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(100);
+        assertThat(socksService.getSocks("red", null, null, null, null, null).getItems())
+                .extracting(SocksRsDto::getQuantity).containsExactly(100);
+        long version = inventoryVersion.current();
+
+        changeRemotely("red", 50, 40, true);
+
+        assertThat(await(() -> socksService.countSocks("red", null, null, "equal", 50, null) == 40)).isTrue();
+        assertThat(quantityIndex.sum("red", 0, 100)).hasValue(40);
+        assertThat(quantityIndex.sum(null, 0, 100)).hasValue(50);
+        assertThat(socksService.getSocks("red", null, null, null, null, null).getItems())
+                .extracting(SocksRsDto::getQuantity).containsExactly(40);
+        assertThat(inventoryVersion.current()).isGreaterThan(version);
+    }
+
+    @Test
+    @DisplayName("Цвет, созданный другим экземпляром, виден сразу после уведомления, даже если был неизвестен")
+    void remoteNewColor_shouldBeVisibleAfterNotification() throws InterruptedException {
+        // Неизвестный цвет запоминается справочником, а пустой результат — кэшем
+        assertThat(socksService.countSocks("violet", null, null, "equal", 40, null)).isZero();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO colors (name) VALUES ('violet') ON CONFLICT (name) DO NOTHING");
+            jdbcTemplate.update("INSERT INTO socks (color_id, cotton_part, quantity) "
+                    + "SELECT id, 40, 12 FROM colors WHERE name = 'violet'");
+            notificationRepository.notifyQuantities(CHANNEL, REMOTE_INSTANCE, new String[]{"violet"},
+                    new Integer[]{40});
+        });
+
+        assertThat(await(() -> socksService.countSocks("violet", null, null, "equal", 40, null) == 12)).isTrue();
+        assertThat(socksService.getSocks("violet", null, null, null, null, null).getItems())
+                .extracting(SocksRsDto::getQuantity).containsExactly(12);
+        socksService.registerOutcome("violet", 40, 2);
+        assertThat(socksService.countSocks("violet", null, null, "equal", 40, null)).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Откаченное изменение другого экземпляра не рассылается")
+    void rolledBackChange_shouldNotBeNotified() throws InterruptedException {
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(100);
+
+        changeRemotely("red", 50, 1, false);
+        // Уведомления доставляются в порядке фиксации: дошедшее следующее значит, что откаченного не было
+        changeRemotely("blue", 30, 20, true);
+
+        assertThat(await(() -> quantityIndex.sum("blue", 30, 30).orElse(0) == 20)).isTrue();
+        assertThat(quantityIndex.sum("red", 50, 50)).hasValue(100);
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("Собственные уведомления экземпляра не применяются повторно")
+    void ownNotification_shouldBeSkipped() throws InterruptedException {
+        // Количество в уведомлении расходится с индексом, как если бы оно пришло раньше приращения
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE socks SET quantity = 7 "
+                    + "WHERE color_id = (SELECT id FROM colors WHERE name = 'red') AND cotton_part = 50");
+            notificationRepository.notifyQuantities(CHANNEL, inventoryVersion.instanceId(),
+                    new String[]{"red"}, new Integer[]{50});
+        });
+        changeRemotely("blue", 30, 20, true);
+
+        assertThat(await(() -> quantityIndex.sum("blue", 30, 30).orElse(0) == 20)).isTrue();
+        assertThat(quantityIndex.sum("red", 50, 50)).hasValue(100);
+    }
+
+    @Test
+    @DisplayName("Изменение многих пар рассылается несколькими уведомлениями за один запрос")
+    void manyPairs_shouldBeSplitIntoSeveralNotifications() throws InterruptedException {
+        int pairs = 60;
+        String[] colors = new String[pairs];
+        Integer[] cottonParts = new Integer[pairs];
+        for (int i = 0; i < pairs; i++) {
+            socksService.registerIncome("green", i, 1);
+            colors[i] = "green";
+            cottonParts[i] = i;
+        }
+        assertThat(quantityIndex.sum("green", 0, 100)).hasValue(pairs);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE socks SET quantity = 2 "
+                    + "WHERE color_id = (SELECT id FROM colors WHERE name = 'green')");
+            notificationRepository.notifyQuantities(CHANNEL, REMOTE_INSTANCE, colors, cottonParts);
+        });
+
+        assertThat(await(() -> quantityIndex.sum("green", 0, 100).orElse(0) == 2L * pairs)).isTrue();
+    }
+
+    /**
+     * Изменяет пару так, как это сделал бы другой экземпляр: запись в базу и уведомление в одной транзакции.
+     */
+    private void changeRemotely(String color, int cottonPart, int quantity, boolean commit) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE socks SET quantity = ? "
+                    + "WHERE color_id = (SELECT id FROM colors WHERE name = ?) AND cotton_part = ?",
+                    quantity, color, cottonPart);
+            notificationRepository.notifyQuantities(CHANNEL, REMOTE_INSTANCE, new String[]{color},
+                    new Integer[]{cottonPart});
+            if (!commit) {
+                status.setRollbackOnly();
+            }
+        });
+    }
+
+    /**
+     * Слушатель подключается в фоне после старта; уведомления до LISTEN до него не доходят.
+     */
+    private void awaitListening() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            long version = inventoryVersion.current();
+            transactionTemplate.executeWithoutResult(status -> notificationRepository.notifyQuantities(CHANNEL,
+                    REMOTE_INSTANCE, new String[]{"red"}, new Integer[]{50}));
+            if (await(() -> inventoryVersion.current() > version, 200)) {
+                return;
+            }
+        }
+        throw new AssertionError("Слушатель уведомлений не подключился");
+    }
+
+    private boolean await(BooleanSupplier condition) throws InterruptedException {
+        return await(condition, 30_000);
+    }
+
+    private boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
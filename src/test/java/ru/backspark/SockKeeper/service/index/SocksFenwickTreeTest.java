@@ -0,0 +1,35 @@
+package ru.backspark.SockKeeper.service.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SocksFenwickTreeTest {
+
+    @Test
+    @DisplayName("Сумма по любому диапазону совпадает с прямым подсчетом")
+    void sum_shouldMatchDirectSum() {
+        SocksFenwickTree tree = new SocksFenwickTree();
+        long[] quantities = new long[101];
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            int cottonPart = random.nextInt(101);
+            long delta = random.nextInt(200) - 50;
+            tree.add(cottonPart, delta);
+            quantities[cottonPart] += delta;
+        }
+
+        for (int min = 0; min <= 100; min++) {
+            for (int max = min; max <= 100; max++) {
+                long expected = 0;
+                for (int cottonPart = min; cottonPart <= max; cottonPart++) {
+                    expected += quantities[cottonPart];
+                }
+                assertThat(tree.sum(min, max)).isEqualTo(expected);
+            }
+        }
+    }
+}
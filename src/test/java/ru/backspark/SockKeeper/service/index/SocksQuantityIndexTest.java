@@ -0,0 +1,145 @@
+package ru.backspark.SockKeeper.service.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"socks.quantity-index.enabled=true", "socks.quantity-index.lock-timeout=2s"})
+@Testcontainers
+@ActiveProfiles("test")
+class SocksQuantityIndexTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private SocksQuantityIndex quantityIndex;
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private SocksCache socksCache;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        socksCache.invalidateAll();
+        assertThat(quantityIndex.rebuild()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Индекс совпадает с таблицей после изменений через сервис")
+    void changes_shouldKeepIndexInSyncWithTable() {
+        socksService.registerIncome("red", 50, 100);
+        socksService.registerIncome("red", 80, 300);
+        socksService.registerOutcome("red", 50, 30);
+        socksService.registerMovements(List.of(
+                new SocksMovementRqDto("income", "blue", 0, 20),
+                new SocksMovementRqDto("income", "blue", 100, 40),
+                new SocksMovementRqDto("outcome", "red", 80, 10)));
+        Long id = socksRepository.findByColorAndCottonPart("blue", 0).orElseThrow().getId();
+        socksService.updateSocks(id, "green", 35, 15);
+        socksService.processSocksBatch(new MockMultipartFile("file", "socks.csv", "text/csv",
+                "red,50,5\nwhite,70,9".getBytes()));
+
+        for (String color : new String[]{null, "red", "blue", "green", "white", "black"}) {
+            for (int[] range : new int[][]{{0, 100}, {0, 0}, {100, 100}, {0, 49}, {51, 100}, {35, 80}, {50, 50}}) {
+                long expected = color == null
+                        ? socksRepository.sumQuantity(range[0], range[1])
+                        : socksRepository.sumQuantityByColor(color, range[0], range[1]);
+                assertThat(quantityIndex.sum(color, range[0], range[1])).hasValue(expected);
+            }
+        }
+        assertThat(socksService.countSocks("red", null, null, "lessThan", 60, null)).isEqualTo(75);
+        assertThat(socksService.countSocks(null, null, null, "moreThan", 50, null)).isEqualTo(339);
+    }
+
+    @Test
+    @DisplayName("Отклоненная операция не меняет индекс")
+    void rejectedOutcome_shouldNotChangeIndex() {
+        socksService.registerIncome("black", 20, 3);
+
+        assertThrows(InsufficientSocksInWarehouseException.class,
+                () -> socksService.registerOutcome("black", 20, 5));
+
+        assertThat(quantityIndex.sum("black", 20, 20)).hasValue(3);
+        assertThat(quantityIndex.sum(null, 0, 100)).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Перестроение учитывает записи, сделанные в обход сервиса")
+    void rebuild_shouldPickUpRowsWrittenOutsideService() {
+        socksRepository.save(Socks.builder().color("grey").cottonPart(60).quantity(70).build());
+        assertThat(quantityIndex.sum("grey", 0, 100)).hasValue(0);
+
+        assertThat(quantityIndex.rebuild()).isTrue();
+
+        assertThat(quantityIndex.sum("grey", 0, 100)).hasValue(70);
+        assertThat(socksService.countSocks("grey", null, null, "equal", 60, null)).isEqualTo(70);
+    }
+
+    @Test
+    @DisplayName("Построение удается под непрерывной записью и не теряет изменений")
+    void rebuild_shouldSucceedUnderConcurrentWrites() throws Exception {
+        socksService.registerIncome("red", 10, 1_000_000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int cottonPart = 10 + i * 20;
+            futures.add(writers.submit(() -> {
+                while (running.get()) {
+                    socksService.registerIncome("red", cottonPart, 3);
+                    socksService.registerOutcome("red", 10, 1);
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertThat(quantityIndex.rebuild()).isTrue();
+            }
+        } finally {
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            writers.shutdown();
+        }
+
+        for (int[] range : new int[][]{{0, 100}, {10, 10}, {30, 30}, {50, 70}}) {
+            assertThat(quantityIndex.sum("red", range[0], range[1]))
+                    .hasValue(socksRepository.sumQuantityByColor("red", range[0], range[1]));
+        }
+    }
+}
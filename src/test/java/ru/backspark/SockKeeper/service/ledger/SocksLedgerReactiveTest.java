@@ -0,0 +1,91 @@
+package ru.backspark.SockKeeper.service.ledger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.reactive.SocksReactiveService;
+
+import java.time.OffsetDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@Testcontainers
+@ActiveProfiles({"test", "reactive"})
+class SocksLedgerReactiveTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        // Журнал пишет триггер из миграции, поэтому схему создает Liquibase; изменения идут через R2DBC
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://" + postgres.getHost() + ":"
+                + postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgres.getDatabaseName());
+        registry.add("spring.r2dbc.username", postgres::getUsername);
+        registry.add("spring.r2dbc.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private SocksReactiveService socksReactiveService;
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM socks_movements");
+    }
+
+    @Test
+    @DisplayName("Изменения через неблокирующий API попадают в журнал и учитываются на момент времени")
+    void reactiveChanges_shouldBeCountedAsOf() throws InterruptedException {
+        socksReactiveService.registerIncome("red", 50, 10).block();
+        OffsetDateTime afterIncome = now();
+
+        socksReactiveService.registerOutcome("red", 50, 4).block();
+        Long id = socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getId();
+        socksReactiveService.updateSocks(id, "red", 70, 6).block();
+        OffsetDateTime afterUpdate = now();
+
+        socksReactiveService.registerIncome("red", 70, 3).block();
+
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null, afterIncome)).isEqualTo(10);
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null, afterUpdate)).isZero();
+        assertThat(socksService.countSocks("red", null, null, "equal", 70, null, afterUpdate)).isEqualTo(6);
+        assertThat(socksService.countSocks(null, null, null, null, null, null, now())).isEqualTo(9);
+    }
+
+    private OffsetDateTime now() throws InterruptedException {
+        // Время журнала ставит база: берем его оттуда и отделяем от соседних изменений
+        Thread.sleep(5);
+        OffsetDateTime now = jdbcTemplate.queryForObject("SELECT clock_timestamp()", OffsetDateTime.class);
+        Thread.sleep(5);
+        return now;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.backspark.SockKeeper.service.ledger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.dto.SocksMovementRqDto;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+class SocksLedgerTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        // Журнал пишет триггер из миграции, поэтому схему создает Liquibase, а не Hibernate
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.liquibase.enabled", () -> "true");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+    }
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private SocksCache socksCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM socks_movements");
+        socksCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Каждое изменение остатка записывается в журнал, сумма журнала равна остатку")
+    void changes_shouldBeAppendedToLedger() {
+        socksService.registerIncome("red", 50, 10);
+        socksService.registerOutcome("red", 50, 4);
+        socksService.registerMovements(List.of(
+                new SocksMovementRqDto("income", "blue", 30, 7),
+                new SocksMovementRqDto("outcome", "red", 50, 1)));
+
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT m.delta FROM socks_movements m JOIN colors c ON c.id = m.color_id
+                WHERE c.name = 'red' AND m.cotton_part = 50 ORDER BY m.id
+                """, Long.class)).containsExactly(10L, -4L, -1L);
+        assertThat(ledgerSum("red", 50)).isEqualTo(quantity("red", 50)).isEqualTo(5);
+        assertThat(ledgerSum("blue", 30)).isEqualTo(quantity("blue", 30)).isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Перенос записи на другую пару записывается уходом со старой пары и приходом на новую")
+    void update_shouldMoveQuantityInLedger() {
+        socksService.registerIncome("green", 40, 6);
+        Long id = socksRepository.findByColorAndCottonPart("green", 40).orElseThrow().getId();
+
+        socksService.updateSocks(id, "green", 60, 9);
+
+        assertThat(ledgerSum("green", 40)).isZero();
+        assertThat(ledgerSum("green", 60)).isEqualTo(9);
+    }
+
+    @Test
+    @DisplayName("Отклоненный отпуск не оставляет записей в журнале")
+    void rejectedOutcome_shouldNotBeAppended() {
+        socksService.registerIncome("black", 20, 3);
+
+        assertThrows(InsufficientSocksInWarehouseException.class,
+                () -> socksService.registerOutcome("black", 20, 5));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM socks_movements", Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Количество на момент времени восстанавливается по журналу")
+    void countSocksAsOf_shouldReturnPastQuantity() throws InterruptedException {
+        socksService.registerIncome("white", 50, 10);
+        socksService.registerIncome("white", 80, 5);
+        OffsetDateTime afterIncome = now();
+
+        socksService.registerOutcome("white", 50, 4);
+        socksService.registerIncome("white", 80, 1);
+
+        assertThat(socksService.countSocks("white", null, null, "equal", 50, null, afterIncome)).isEqualTo(10);
+        assertThat(socksService.countSocks("white", null, null, null, null, null, afterIncome)).isEqualTo(15);
+        assertThat(socksService.countSocks(null, 60, 100, null, null, null, afterIncome)).isEqualTo(5);
+        assertThat(socksService.countSocks("white", null, null, null, null, null)).isEqualTo(12);
+        assertThat(socksService.countSocks("white", null, null, null, null, null, now())).isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("Изменения в обход сервиса тоже записываются в журнал")
+    void directChanges_shouldBeAppended() {
+        socksService.registerIncome("grey", 10, 8);
+
+        jdbcTemplate.update("UPDATE socks SET quantity = 3 "
+                + "WHERE color_id = (SELECT id FROM colors WHERE name = 'grey') AND cotton_part = 10");
+        assertThat(ledgerSum("grey", 10)).isEqualTo(quantity("grey", 10)).isEqualTo(3);
+
+        jdbcTemplate.update("DELETE FROM socks WHERE color_id = (SELECT id FROM colors WHERE name = 'grey')");
+        assertThat(ledgerSum("grey", 10)).isZero();
+    }
+
+    @Test
+    @DisplayName("Изменение учитывается на момент фиксации транзакции, а не на момент записи")
+    void countSocksAsOf_shouldUseCommitTime() throws InterruptedException {
+        socksService.registerIncome("white", 50, 10);
+
+        OffsetDateTime beforeCommit = transactionTemplate.execute(status -> {
+            socksService.registerIncome("white", 50, 5);
+            try {
+                return now();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(socksService.countSocks("white", null, null, null, null, null, beforeCommit)).isEqualTo(10);
+        assertThat(socksService.countSocks("white", null, null, null, null, null, now())).isEqualTo(15);
+    }
+
+    private OffsetDateTime now() throws InterruptedException {
+        // Время журнала ставит база: берем его оттуда и отделяем от соседних изменений
+        Thread.sleep(5);
+        OffsetDateTime now = jdbcTemplate.queryForObject("SELECT clock_timestamp()", OffsetDateTime.class);
+        Thread.sleep(5);
+        return now;
+    }
+
+    private long ledgerSum(String color, int cottonPart) {
+        return jdbcTemplate.queryForObject("""
+                SELECT COALESCE(SUM(m.delta), 0) FROM socks_movements m JOIN colors c ON c.id = m.color_id
+                WHERE c.name = ? AND m.cotton_part = ?
+                """, Long.class, color, cottonPart);
+    }
+
+    private long quantity(String color, int cottonPart) {
+        return socksRepository.findByColorAndCottonPart(color, cottonPart).map(Socks::getQuantity).orElse(0);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.backspark.SockKeeper.service.lock;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SocksKeyLocksTest {
+
+    @Test
+    @DisplayName("Число полос округляется до степени двойки")
+    void constructor_shouldRoundStripesToPowerOfTwo() {
+        SocksKeyLocks locks = new SocksKeyLocks(100);
+
+        for (int cottonPart = 0; cottonPart <= 100; cottonPart++) {
+            assertThat(locks.stripe("red", cottonPart)).isBetween(0, 127);
+        }
+    }
+
+    @Test
+    @DisplayName("Изменения одной пары выполняются по очереди")
+    void withLock_shouldSerializeSameKey() throws Exception {
+        SocksKeyLocks locks = new SocksKeyLocks(16);
+        long[] counter = {0};
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    locks.withLock("red", 50, () -> counter[0]++);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(counter[0]).isEqualTo(80000);
+    }
+
+    @Test
+    @DisplayName("Встречные блокировки двух пар не приводят к взаимной блокировке")
+    void withLocks_shouldNotDeadlockInOppositeOrder() throws Exception {
+        SocksKeyLocks locks = new SocksKeyLocks(64);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<?> forward = executor.submit(() -> {
+            for (int i = 0; i < 10000; i++) {
+                locks.withLocks("red", i % 101, "blue", (i * 7) % 101, () -> null);
+            }
+        });
+        Future<?> backward = executor.submit(() -> {
+            for (int i = 0; i < 10000; i++) {
+                locks.withLocks("blue", (i * 7) % 101, "red", i % 101, () -> null);
+            }
+        });
+        forward.get(30, TimeUnit.SECONDS);
+        backward.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,262 @@
+package ru.backspark.SockKeeper.service.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.backspark.SockKeeper.config.SocksProperties;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.model.SocksBatchAggregate;
+import ru.backspark.SockKeeper.model.SocksUpsertResult;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SocksMemoryEngineTest {
+
+    @TempDir
+    Path dir;
+
+    private SocksRepository socksRepository;
+    private SocksProperties properties;
+    private SocksMemoryEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        socksRepository = mock(SocksRepository.class);
+        properties = new SocksProperties();
+        properties.getMemory().setDir(dir.toString());
+        // Перенос в базу и снимки в тестах запускаются вручную
+        properties.getMemory().setDatabaseSyncInterval(Duration.ofHours(1));
+        properties.getMemory().setSnapshotInterval(Duration.ofHours(1));
+        engine = start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (engine != null) {
+            engine.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Приход, отпуск и перенос записи в памяти")
+    void mutations_shouldFollowServiceSemantics() {
+        assertThat(engine.add("red", 50, 100)).isEqualTo(SocksMemoryEngine.ABSENT);
+        assertThat(engine.add("red", 50, 20)).isEqualTo(100);
+        assertThat(engine.subtract("red", 50, 200)).isEqualTo(120);
+        assertThat(engine.subtract("red", 50, 120)).isEqualTo(120);
+        assertThat(engine.subtract("blue", 50, 1)).isEqualTo(SocksMemoryEngine.ABSENT);
+        assertThat(engine.add("red", 50, Integer.MAX_VALUE)).isEqualTo(0);
+        assertThat(engine.add("red", 50, 1)).isEqualTo(SocksMemoryEngine.OVERFLOW);
+
+        long redId = SocksMemoryEngine.id(0, 50);
+        engine.add("blue", 30, 5);
+        assertThat(engine.update(redId, "blue", 30, 7)).isEqualTo(SocksMemoryEngine.CONFLICT);
+        long movedId = engine.update(redId, "green", 10, 7);
+        assertThat(movedId).isEqualTo(SocksMemoryEngine.id(2, 10));
+        assertThat(engine.update(redId, "red", 50, 1)).isEqualTo(SocksMemoryEngine.NOT_FOUND);
+
+        assertThat(snapshotOf(engine)).containsExactly("blue/30=5", "green/10=7");
+        assertThat(engine.sum(null, 0, 100)).isEqualTo(12);
+    }
+
+    @Test
+    @DisplayName("Список движений применяется целиком или никак")
+    void applyAll_shouldBeAllOrNothing() {
+        engine.add("red", 50, 10);
+        long[] before = new long[2];
+
+        assertThat(engine.applyAll(new String[]{"red", "blue"}, new int[]{50, 30},
+                new long[]{0, 5}, new long[]{11, 0}, before)).isFalse();
+        assertThat(before).containsExactly(10, SocksMemoryEngine.ABSENT);
+        assertThat(snapshotOf(engine)).containsExactly("red/50=10");
+
+        assertThat(engine.applyAll(new String[]{"red", "blue"}, new int[]{50, 30},
+                new long[]{1, 5}, new long[]{11, 2}, before)).isTrue();
+        assertThat(snapshotOf(engine)).containsExactly("red/50=0", "blue/30=3");
+
+        assertThat(engine.applyAll(new String[]{"green"}, new int[]{10},
+                new long[]{0}, new long[]{1}, before)).isFalse();
+        assertThat(before).startsWith(SocksMemoryEngine.ABSENT);
+    }
+
+    @Test
+    @DisplayName("Партия с переполнением отклоняется целиком и не заводит цвета")
+    void addAll_shouldRejectWholeBatchOnOverflow() {
+        engine.add("red", 50, Integer.MAX_VALUE - 1);
+        SocksBatchAggregate batch = new SocksBatchAggregate();
+        batch.add("blue", 30, 5);
+        batch.add("red", 50, 2);
+
+        assertThat(engine.addAll(batch)).isNull();
+
+        assertThat(snapshotOf(engine)).containsExactly("red/50=" + (Integer.MAX_VALUE - 1));
+        assertThat(engine.subtract("blue", 30, 1)).isEqualTo(SocksMemoryEngine.ABSENT);
+        assertThat(engine.add("green", 10, 1)).isEqualTo(SocksMemoryEngine.ABSENT);
+        assertThat(snapshotOf(engine)).containsExactly("red/50=" + (Integer.MAX_VALUE - 1), "green/10=1");
+    }
+
+    @Test
+    @DisplayName("Перенос несуществующей записи не заводит цвет")
+    void update_shouldNotRegisterColorForMissingRecord() {
+        engine.add("red", 50, 1);
+
+        assertThat(engine.update(SocksMemoryEngine.id(0, 60), "blue", 30, 7)).isEqualTo(SocksMemoryEngine.NOT_FOUND);
+        engine.add("green", 10, 1);
+
+        // Номер 1 достался green: blue не зарегистрирован
+        assertThat(engine.update(SocksMemoryEngine.id(1, 10), "green", 11, 2)).isEqualTo(SocksMemoryEngine.id(1, 11));
+    }
+
+    @Test
+    @DisplayName("Состояние восстанавливается из снимка и журнала после перезапуска")
+    void restart_shouldRecoverFromSnapshotAndLog() throws Exception {
+        engine.add("red", 50, 100);
+        engine.add("blue", 30, 200);
+        engine.snapshot();
+        engine.subtract("red", 50, 40);
+        SocksBatchAggregate batch = new SocksBatchAggregate();
+        batch.add("blue", 30, 1);
+        batch.add("green", 70, 3);
+        assertThat(engine.addAll(batch)).isEqualTo(new SocksUpsertResult(1, 1));
+        engine.update(SocksMemoryEngine.id(1, 30), "blue", 31, 201);
+
+        engine.stop();
+        engine = start();
+
+        assertThat(snapshotOf(engine)).containsExactly("red/50=60", "blue/31=201", "green/70=3");
+        // Таблица заполняется из базы только при самом первом запуске
+        verify(socksRepository).forEach(isNull(), isNull(), isNull(), anyInt(), any());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith("snapshot-"))).hasSize(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Оборванная последняя запись журнала отбрасывается")
+    void restart_shouldIgnoreTornTail() throws Exception {
+        engine.add("red", 50, 100);
+        engine.add("red", 50, 1);
+        engine.stop();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(file -> file.getFileName().toString().startsWith("wal-")).max(Path::compareTo).orElseThrow();
+        }
+        // Запись SET без последних байтов количества и контрольной суммы
+        Files.write(segment, new byte[]{SocksWriteAheadLog.SET, 0, 0, 0, 0, 50, 0, 0}, StandardOpenOption.APPEND);
+
+        engine = start();
+
+        assertThat(snapshotOf(engine)).containsExactly("red/50=101");
+    }
+
+    @Test
+    @DisplayName("Первый запуск заполняет память из таблицы, изменения переносятся в таблицу")
+    void firstStart_shouldSeedFromDatabaseAndSyncChanges() throws Exception {
+        engine.stop();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        doAnswer(invocation -> {
+            Consumer<Socks> consumer = invocation.getArgument(4);
+            consumer.accept(Socks.builder().id(10L).color("red").cottonPart(50).quantity(100).build());
+            return null;
+        }).when(socksRepository).forEach(isNull(), isNull(), isNull(), anyInt(), any());
+        engine = start();
+
+        engine.add("red", 50, 5);
+        engine.update(SocksMemoryEngine.id(0, 50), "red", 60, 10);
+        engine.syncToDatabase();
+
+        ArgumentCaptor<String[]> colors = ArgumentCaptor.forClass(String[].class);
+        ArgumentCaptor<Integer[]> cottonParts = ArgumentCaptor.forClass(Integer[].class);
+        ArgumentCaptor<Integer[]> quantities = ArgumentCaptor.forClass(Integer[].class);
+        verify(socksRepository).replaceQuantities(colors.capture(), cottonParts.capture(), quantities.capture());
+        assertThat(colors.getValue()).containsExactly("red");
+        assertThat(cottonParts.getValue()).containsExactly(60);
+        assertThat(quantities.getValue()).containsExactly(10);
+        verify(socksRepository).deleteByColorAndCottonPart(new String[]{"red"}, new Integer[]{50});
+        verify(socksRepository, never()).deleteAllExcept(any(), any());
+    }
+
+    @Test
+    @DisplayName("Сбой между созданием сегмента и первым снимком не стирает таблицу")
+    void crashBeforeFirstSnapshot_shouldSeedFromDatabaseAgain() throws Exception {
+        engine.stop();
+        engine = null;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        // Первый запуск успел создать сегмент журнала, но не снимок
+        Files.createFile(SocksWriteAheadLog.segmentFile(dir, 0));
+        doAnswer(invocation -> {
+            Consumer<Socks> consumer = invocation.getArgument(4);
+            consumer.accept(Socks.builder().id(10L).color("red").cottonPart(50).quantity(100).build());
+            return null;
+        }).when(socksRepository).forEach(isNull(), isNull(), isNull(), anyInt(), any());
+
+        engine = start();
+        engine.syncToDatabase();
+
+        assertThat(snapshotOf(engine)).containsExactly("red/50=100");
+        verify(socksRepository, never()).deleteAllExcept(any(), any());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .containsExactlyInAnyOrder(SocksSnapshots.snapshotFile(dir, 1).getFileName().toString(),
+                            SocksWriteAheadLog.segmentFile(dir, 1).getFileName().toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Пустой склад после восстановления не очищает непустую таблицу")
+    void reconcile_shouldNotWipeTableWhenStoreIsEmpty() throws Exception {
+        engine.stop();
+        when(socksRepository.count()).thenReturn(3L);
+
+        engine = start();
+        engine.syncToDatabase();
+
+        verify(socksRepository, never()).deleteAllExcept(any(), any());
+        verify(socksRepository, never()).replaceQuantities(any(), any(), any());
+    }
+
+    private SocksMemoryEngine start() throws Exception {
+        SocksMemoryEngine started = new SocksMemoryEngine(properties, socksRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        started.start();
+        return started;
+    }
+
+    private static List<String> snapshotOf(SocksMemoryEngine engine) {
+        List<String> entries = new ArrayList<>();
+        engine.forEach(null, null, null, (id, color, cottonPart, quantity) -> entries.add(color + "/" + cottonPart + "=" + quantity));
+        return entries;
+    }
+}
@@ -0,0 +1,159 @@
+package ru.backspark.SockKeeper.service.reactive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.backspark.SockKeeper.dto.SocksRsDto;
+import ru.backspark.SockKeeper.error.exception.InsufficientSocksInWarehouseException;
+import ru.backspark.SockKeeper.error.exception.InvalidDataFormatException;
+import ru.backspark.SockKeeper.error.exception.SocksNotFoundInWarehouse;
+import ru.backspark.SockKeeper.model.Socks;
+import ru.backspark.SockKeeper.repository.SocksRepository;
+import ru.backspark.SockKeeper.service.SocksService;
+import ru.backspark.SockKeeper.service.cache.SocksCache;
+import ru.backspark.SockKeeper.service.cache.SocksInventoryVersion;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@Testcontainers
+@ActiveProfiles({"test", "reactive"})
+class SocksReactiveServiceImplTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15.0")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        // JDBC и R2DBC должны смотреть в одну базу: схему создает Hibernate, запросы идут через R2DBC
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.r2dbc.url", () -> "r2dbc:postgresql://" + postgres.getHost() + ":"
+                + postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgres.getDatabaseName());
+        registry.add("spring.r2dbc.username", postgres::getUsername);
+        registry.add("spring.r2dbc.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private SocksReactiveService socksReactiveService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksCache socksCache;
+
+    @Autowired
+    private SocksInventoryVersion inventoryVersion;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        socksCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Приход создает пару и увеличивает ее количество")
+    void registerIncome_shouldUpsert() {
+        socksReactiveService.registerIncome("red", 50, 10).block();
+        socksReactiveService.registerIncome("red", 50, 5).block();
+
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(15);
+    }
+
+    @Test
+    @DisplayName("Отпуск уменьшает количество или сообщает причину отказа")
+    void registerOutcome_shouldDecrementOrReject() {
+        socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(10).build());
+
+        socksReactiveService.registerOutcome("red", 50, 4).block();
+
+        assertThat(socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity()).isEqualTo(6);
+        assertThrows(InsufficientSocksInWarehouseException.class,
+                () -> socksReactiveService.registerOutcome("red", 50, 7).block());
+        assertThrows(SocksNotFoundInWarehouse.class,
+                () -> socksReactiveService.registerOutcome("blue", 50, 1).block());
+        assertThrows(InvalidDataFormatException.class,
+                () -> socksReactiveService.registerOutcome("red", 50, 0).block());
+    }
+
+    @Test
+    @DisplayName("Выдача фильтрует и сортирует записи в базе")
+    void getSocks_shouldFilterAndSort() {
+        socksRepository.save(Socks.builder().color("red").cottonPart(70).quantity(1).build());
+        socksRepository.save(Socks.builder().color("blue").cottonPart(40).quantity(2).build());
+        socksRepository.save(Socks.builder().color("red").cottonPart(30).quantity(3).build());
+        socksRepository.save(Socks.builder().color("red").cottonPart(10).quantity(4).build());
+
+        List<SocksRsDto> socks = socksReactiveService.getSocks("red", 20, null, "cottonPart").collectList().block();
+
+        assertThat(socks).extracting(SocksRsDto::getCottonPart).containsExactly(30, 70);
+        assertThrows(InvalidDataFormatException.class,
+                () -> socksReactiveService.getSocks(null, null, null, "quantity").collectList().block());
+    }
+
+    @Test
+    @DisplayName("Подсчет суммирует количество в диапазоне процента хлопка")
+    void countSocks_shouldSumInRange() {
+        socksRepository.save(Socks.builder().color("red").cottonPart(30).quantity(10).build());
+        socksRepository.save(Socks.builder().color("red").cottonPart(60).quantity(20).build());
+        socksRepository.save(Socks.builder().color("blue").cottonPart(60).quantity(40).build());
+
+        assertThat(socksReactiveService.countSocks("red", null, null, "moreThan", 30, null).block()).isEqualTo(20);
+        assertThat(socksReactiveService.countSocks(null, null, null, "between", 30, 60).block()).isEqualTo(70);
+        assertThat(socksReactiveService.countSocks("red", 70, 20, null, null, null).block()).isZero();
+    }
+
+    @Test
+    @DisplayName("Обновление переносит запись на свободную пару и отказывает для занятой")
+    void updateSocks_shouldUpdateOrReject() {
+        Socks red = socksRepository.save(Socks.builder().color("red").cottonPart(50).quantity(10).build());
+        socksRepository.save(Socks.builder().color("blue").cottonPart(30).quantity(5).build());
+
+        SocksRsDto updated = socksReactiveService.updateSocks(red.getId(), "green", 70, 3).block();
+
+        assertThat(updated).isEqualTo(SocksRsDto.builder().id(red.getId()).color("green").cottonPart(70).quantity(3).build());
+        assertThrows(InvalidDataFormatException.class,
+                () -> socksReactiveService.updateSocks(red.getId(), "blue", 30, 1).block());
+        assertThrows(SocksNotFoundInWarehouse.class,
+                () -> socksReactiveService.updateSocks(-1L, "white", 10, 1).block());
+    }
+
+    @Test
+    @DisplayName("Изменения через неблокирующий API сбрасывают кэш и увеличивают версию склада")
+    void changes_shouldInvalidateCacheAndBumpVersion() {
+        socksReactiveService.registerIncome("red", 50, 10).block();
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(10);
+        long version = inventoryVersion.current();
+
+        socksReactiveService.registerIncome("red", 50, 5).block();
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(15);
+
+        socksReactiveService.registerOutcome("red", 50, 3).block();
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isEqualTo(12);
+
+        Long id = socksRepository.findByColorAndCottonPart("red", 50).orElseThrow().getId();
+        socksReactiveService.updateSocks(id, "red", 70, 4).block();
+        assertThat(socksService.countSocks("red", null, null, "equal", 50, null)).isZero();
+        assertThat(socksService.countSocks("red", null, null, "equal", 70, null)).isEqualTo(4);
+
+        assertThat(inventoryVersion.current()).isEqualTo(version + 3);
+    }
+}
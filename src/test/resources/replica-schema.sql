@@ -0,0 +1,17 @@
+-- Схема и данные базы, которая в SocksReadReplicaTest изображает реплику: данные в ней отличаются от основной,
+-- поэтому по ответу видно, куда ушел запрос
+CREATE TABLE colors (
+    id   SERIAL PRIMARY KEY,
+    name VARCHAR(50) NOT NULL CONSTRAINT uk_colors_name UNIQUE
+);
+
+CREATE TABLE socks (
+    id          BIGSERIAL PRIMARY KEY,
+    color_id    INTEGER NOT NULL REFERENCES colors (id),
+    cotton_part INTEGER NOT NULL,
+    quantity    INTEGER NOT NULL,
+    CONSTRAINT uk_socks_color_cotton_part UNIQUE (color_id, cotton_part)
+);
+
+INSERT INTO colors (id, name) VALUES (1000, 'replica-only');
+INSERT INTO socks (color_id, cotton_part, quantity) VALUES (1000, 50, 7);